@@ -36,6 +36,9 @@ import android.view.inputmethod.ExtractedTextRequest;
 import android.view.inputmethod.InputConnection;
 import android.widget.FrameLayout;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+
 import io.sentry.android.core.SentryAndroid;
 import io.sentry.Sentry;
 
@@ -102,6 +105,13 @@ public class SystemKeyboard extends InputMethodService implements OnKeyboardEven
     super.onDestroy();
   }
 
+  // Include the engine metrics in `adb shell dumpsys activity service <this service>`
+  @Override
+  protected void dump(FileDescriptor fd, PrintWriter fout, String[] args) {
+    super.dump(fd, fout, args);
+    KMManager.dumpMetrics(fout);
+  }
+
   /**
    * This is the point where you can do all of your UI initialization. It
    * is called after creation and any configuration change.
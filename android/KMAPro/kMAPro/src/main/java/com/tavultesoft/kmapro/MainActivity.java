@@ -1030,6 +1030,8 @@ public class MainActivity extends BaseActivity implements OnKeyboardEventListene
     String packageID = null;
     String customHelpLink = null;
     KmpInstallMode installMode = KmpInstallMode.Full;
+    Keyboard firstKeyboard = null;
+    ArrayList<Keyboard> keyboardsToAdd = new ArrayList<>();
     for (int i = 0; i < keyboardsInstalled.size(); i++) {
       HashMap<String, String> hashMap = new HashMap<>(keyboardsInstalled.get(i));
       String languageID = hashMap.get(KMManager.KMKey_LanguageID);
@@ -1052,12 +1054,9 @@ public class MainActivity extends BaseActivity implements OnKeyboardEventListene
       if (i == 0) {
         packageID = keyboardInfo.getPackageID();
         customHelpLink = keyboardInfo.getHelpLink();
-        if (KMManager.addKeyboard(this, keyboardInfo)) {
-          KMManager.setKeyboard(keyboardInfo);
-        }
-      } else {
-        KMManager.addKeyboard(this, keyboardInfo);
+        firstKeyboard = keyboardInfo;
       }
+      keyboardsToAdd.add(keyboardInfo);
 
       // Determine if associated lexical model for languageID should be downloaded
       if ((languageID != null) && !languageID.isEmpty()) {
@@ -1068,8 +1067,10 @@ public class MainActivity extends BaseActivity implements OnKeyboardEventListene
           repo = CloudRepository.shared.fetchDataset(context);
         }
 
-        // Check if associated model is not already installed
-        if ((KMManager.getAssociatedLexicalModel(languageID) == null) && KMManager.hasConnection(context)) {
+        // Check if associated model is not already installed, or already being looked up
+        // by the speculative lookup started during the package install
+        if ((KMManager.getAssociatedLexicalModel(languageID) == null) && KMManager.hasConnection(context) &&
+            !CloudLexicalModelMetaDataDownloadCallback.startPrefetchedDownload(context, languageID)) {
           String _downloadid = CloudLexicalModelMetaDataDownloadCallback.createDownloadId(languageID);
           CloudLexicalModelMetaDataDownloadCallback _callback = new CloudLexicalModelMetaDataDownloadCallback();
 
@@ -1085,6 +1086,11 @@ public class MainActivity extends BaseActivity implements OnKeyboardEventListene
       }
     }
 
+    // Commit all the keyboards to the keyboards list at once
+    if (KMManager.addKeyboards(this, keyboardsToAdd) && firstKeyboard != null) {
+      KMManager.setKeyboard(firstKeyboard);
+    }
+
     // Display welcome.htm help file -- if we are not doing a silent install
     if (installMode != KmpInstallMode.Silent &&
         customHelpLink != null && !customHelpLink.isEmpty() &&
@@ -1106,14 +1112,16 @@ public class MainActivity extends BaseActivity implements OnKeyboardEventListene
       KMManager.getCurrentKeyboardInfo(this).getLanguageID() :
       KMManager.KMDefault_LanguageID;
     boolean matchingModel = false;
+    List<HashMap<String, String>> lexicalModelsToAdd = new ArrayList<>();
 
     for(int i=0; i<lexicalModelsInstalled.size(); i++) {
       HashMap<String, String>lexicalModelInfo = new HashMap<>(lexicalModelsInstalled.get(i));
       if(lexicalModelInfo.get(KMManager.KMKey_LanguageID).equals(langId)) {
         matchingModel = true;
       }
-      KMManager.addLexicalModel(this, lexicalModelInfo);
+      lexicalModelsToAdd.add(lexicalModelInfo);
     }
+    KMManager.addLexicalModels(this, lexicalModelsToAdd);
 
     // We're on the main thread, so if the active keyboard's language code matches,
     // let's register the associated lexical model.
@@ -239,9 +239,73 @@ function insertText(dn, s, dr) {
   console_debug('insertText(dn='+dn+',s='+s+',dr='+dr+')');
   dr = dr || 0; // Sets a default value of zero when dr is undefined
   //window.console.log('insertText('+ dn +', ' + s +', ' + dr + ');');
+  if(hardwareEdit && s.charAt(0) != '\n') {
+    mergeHardwareEdit(dn, s, dr);
+    return;
+  }
+  // The host handles ENTER as an editor action, so it isn't merged
+  flushHardwareEdit();
   window.jsInterface.insertText(dn, s, dr, executingHardwareKeystroke);
 }
 
+// While executeHardwareKeystrokes() runs, the text edits of its keystrokes are merged here
+// and sent to the host as one insertText, which it commits in a single batch edit.
+var hardwareEdit = null;
+
+function codePointLength(s) {
+  var length = s.length;
+  for(var i = 0; i < s.length; i++) {
+    var c = s.charCodeAt(i);
+    if(c >= 0xDC00 && c <= 0xDFFF && i > 0) {
+      var p = s.charCodeAt(i-1);
+      if(p >= 0xD800 && p <= 0xDBFF) {
+        length--;
+      }
+    }
+  }
+  return length;
+}
+
+// Remove n code points from the end of s
+function dropCodePoints(s, n) {
+  var end = s.length;
+  while(n > 0 && end > 0) {
+    var c = s.charCodeAt(end-1);
+    end--;
+    if(c >= 0xDC00 && c <= 0xDFFF && end > 0) {
+      var p = s.charCodeAt(end-1);
+      if(p >= 0xD800 && p <= 0xDBFF) {
+        end--;
+      }
+    }
+    n--;
+  }
+  return s.substring(0, end);
+}
+
+function mergeHardwareEdit(dn, s, dr) {
+  // Only left deletions of text inserted earlier in the batch are merged.  Deletions that reach
+  // past it are sent on their own, as the host ignores dn when the field has a selection.
+  // Right deletions aren't affected by insertions, which are made before the caret.
+  var inserted = codePointLength(hardwareEdit.s);
+  if(dn > inserted) {
+    flushHardwareEdit();
+    window.jsInterface.insertText(dn, s, dr, true);
+    return;
+  }
+  hardwareEdit.s = dropCodePoints(hardwareEdit.s, dn) + s;
+  hardwareEdit.dr += dr;
+}
+
+function flushHardwareEdit() {
+  if(hardwareEdit && (hardwareEdit.dn > 0 || hardwareEdit.s.length > 0 || hardwareEdit.dr > 0)) {
+    window.jsInterface.insertText(hardwareEdit.dn, hardwareEdit.s, hardwareEdit.dr, true);
+    hardwareEdit.dn = 0;
+    hardwareEdit.s = '';
+    hardwareEdit.dr = 0;
+  }
+}
+
 function deregisterModel(modelID) {
   keyman.removeModel(modelID);
 }
@@ -411,6 +475,71 @@ function executeHardwareKeystroke(code, shift, lstates, eventModifiers) {
   });
 }
 
+// Keystroke batches waiting for the current batch to finish
+var pendingHardwareKeystrokes = [];
+
+/**
+ * Executes the hardware keystrokes received by the host within one frame, in order.
+ * Batches are executed one at a time.
+ * @param keys  Runs of [code, shift, lstates, eventModifiers, count], flattened.
+ *              count > 1 for key repeats
+ */
+function executeHardwareKeystrokes(keys) {
+  console_debug('executeHardwareKeystrokes(' + keys.length / 5 + ' runs)');
+
+  pendingHardwareKeystrokes.push(keys);
+  if(pendingHardwareKeystrokes.length > 1) {
+    return;
+  }
+
+  executingHardwareKeystroke = true;
+  hardwareEdit = {dn: 0, s: '', dr: 0};
+  var run = 0, repeat = 0;
+
+  function finish() {
+    flushHardwareEdit();
+    pendingHardwareKeystrokes.shift();
+    if(pendingHardwareKeystrokes.length > 0) {
+      keys = pendingHardwareKeystrokes[0];
+      run = 0;
+      repeat = 0;
+      next();
+    } else {
+      hardwareEdit = null;
+      executingHardwareKeystroke = false;
+    }
+  }
+
+  function next() {
+    if(run < keys.length && repeat == keys[run+4]) {
+      run += 5;
+      repeat = 0;
+    }
+    if(run >= keys.length) {
+      finish();
+      return;
+    }
+    repeat++;
+
+    var code = keys[run], eventModifiers = keys[run+3];
+    keyman.hardKeyboard.raiseKeyEvent(code, keys[run+1], keys[run+2]).then(function (result) {
+      if(result) { // false if matched, true if not
+        // Commit the edits so far before the host dispatches the key, to keep them in order
+        flushHardwareEdit();
+        window.jsInterface.dispatchKey(code, eventModifiers);
+      }
+      next();
+    }).catch(function (e) {
+      window.console.log('executeHardwareKeystrokes exception: '+e);
+      // Skip the rest of this batch
+      run = keys.length;
+      finish();
+    });
+  }
+
+  next();
+}
+
 function popupVisible(value) {
   keyman.popupVisible(value);
 }
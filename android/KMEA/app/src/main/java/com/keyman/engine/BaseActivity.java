@@ -8,7 +8,9 @@ import android.content.Context;
 import android.content.ContextWrapper;
 import android.content.SharedPreferences;
 import android.os.Build;
+import android.os.Handler;
 import android.os.LocaleList;
+import android.os.Looper;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.Window;
@@ -45,7 +47,7 @@ public class BaseActivity extends AppCompatActivity {
   public static void makeToast(Context defaultContext, int resID, int duration, Object... args) {
     Context context = (localeUpdatedContext != null) ? localeUpdatedContext : defaultContext;
     String msg = context.getString(resID);
-    Toast.makeText(context, String.format(msg, args), duration).show();
+    showToast(context, String.format(msg, args), duration);
   }
 
   /**
@@ -57,8 +59,24 @@ public class BaseActivity extends AppCompatActivity {
   public static void makeToast(Context defaultContext, String msg, int duration) {
     Context context = (localeUpdatedContext != null) ? localeUpdatedContext : defaultContext;
     if (context != null) {
+      showToast(context, msg, duration);
+    }
+  }
+
+  /**
+   * Show a Toast notification on the main thread, since download callbacks run in the background
+   */
+  private static void showToast(final Context context, final String msg, final int duration) {
+    if (Looper.myLooper() == Looper.getMainLooper()) {
       Toast.makeText(context, msg, duration).show();
+      return;
     }
+    new Handler(Looper.getMainLooper()).post(new Runnable() {
+      @Override
+      public void run() {
+        Toast.makeText(context, msg, duration).show();
+      }
+    });
   }
 
   /**
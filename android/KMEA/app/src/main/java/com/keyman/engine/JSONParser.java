@@ -24,10 +24,14 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import com.keyman.engine.util.Connection;
+import com.keyman.engine.util.DownloadClient;
+import com.keyman.engine.util.EngineMetrics;
 import com.keyman.engine.util.KMLog;
 
 public final class JSONParser {
   private final String TAG = "JSONParser";
+  private static final EngineMetrics.Timer parseTimer = EngineMetrics.timer("json.parse");
+  private static final EngineMetrics.Counter parseFailures = EngineMetrics.counter("json.parse.failed");
 
   public JSONParser() {
   }
@@ -36,6 +40,7 @@ public final class JSONParser {
     String jsonStr = "";
     T obj = null;
     String logTag = "JSONObjectFromReader";
+    long startTime = parseTimer.start();
 
     try {
       StringBuilder strBuilder = new StringBuilder();
@@ -78,6 +83,10 @@ public final class JSONParser {
       System.err.println(e);
     }
 
+    parseTimer.stop(startTime);
+    if (obj == null) {
+      parseFailures.increment();
+    }
     return obj;
   }
 
@@ -125,33 +134,50 @@ public final class JSONParser {
    * @return JSONObject or JSONArray that matches type
    */
   public <T extends Object> T getJSONObjectFromUrl(String urlStr, Class<T> type) {
+    Connection connection = DownloadClient.getDefault().newConnection();
+    try {
+      if (connection.initialize(urlStr)) {
+        return getJSONObjectFromConnection(connection, type);
+      }
+      return null;
+    } finally {
+      connection.close();
+    }
+  }
+
+  /**
+   * Read a JSONObject or JSONArray from the response of an initialized connection.
+   * The caller is responsible for closing the connection.
+   * @param connection Connection - successfully initialized
+   * @param type Class<T> - JSONObject.class or JSONArray.class
+   * @return JSONObject or JSONArray that matches type
+   */
+  public <T extends Object> T getJSONObjectFromConnection(Connection connection, Class<T> type) {
     BufferedReader reader = null;
     T obj = null;
     InputStream inputStream = null;
     String logTag = "JSONObjectFromUrl";
 
     try {
-      if (Connection.initialize(urlStr)) {
-        inputStream = Connection.getInputStream();
-
-        // get charset
-        String charSet = null;
-        String contentType = Connection.getContentType();
-        String[] values = contentType.split(";");
-        for (String value : values) {
-          value = value.trim();
-          if (value.toLowerCase().startsWith("charset=")) {
-            charSet = value.substring("charset=".length());
-          }
+      inputStream = connection.getInputStream();
+
+      // get charset
+      String charSet = null;
+      String contentType = connection.getContentType();
+      String[] values = contentType.split(";");
+      for (String value : values) {
+        value = value.trim();
+        if (value.toLowerCase().startsWith("charset=")) {
+          charSet = value.substring("charset=".length());
         }
+      }
 
-        // if cannot get charset, use utf-8
-        if (charSet == null)
-          charSet = "utf-8";
+      // if cannot get charset, use utf-8
+      if (charSet == null)
+        charSet = "utf-8";
 
-        reader = new BufferedReader(new InputStreamReader(inputStream, charSet), 4096);
-        obj = (T) getJSONObjectFromReader(reader, type);
-      }
+      reader = new BufferedReader(new InputStreamReader(inputStream, charSet), 4096);
+      obj = (T) getJSONObjectFromReader(reader, type);
     } catch (UnsupportedEncodingException e) {
       KMLog.LogException(logTag, "", e);
       obj = null;
@@ -161,8 +187,6 @@ public final class JSONParser {
       obj = null;
       System.err.println(e);
     } finally {
-      Connection.disconnect();
-
       if (reader != null) {
         try {
           reader.close();
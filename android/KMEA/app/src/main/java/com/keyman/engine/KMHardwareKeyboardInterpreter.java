@@ -4,7 +4,6 @@
 
 package com.keyman.engine;
 
-import com.keyman.engine.KMScanCodeMap;
 import android.content.Context;
 import android.view.KeyEvent;
 
@@ -23,37 +22,10 @@ public class KMHardwareKeyboardInterpreter implements KeyEvent.Callback {
   @Override
   public boolean onKeyDown(int keyCode, KeyEvent event) {
 
-    boolean isChiral = KMManager.getKMKeyboard(this.keyboardType).getChirality();
-
     // States of modifier keys
     // KeyEvent.getModifiers() specifically masks out lock keys (KeyEvent.META_CAPS_LOCK_ON,
     // KeyEvent.META_SCROLL_LOCK_ON, KeyEvent.META_NUM_LOCK_ON), so get their states separately
-    int androidModifiers = event.getModifiers(), keymanModifiers = 0;
-    boolean capsOn = event.isCapsLockOn();
-    boolean numOn = event.isNumLockOn();
-    boolean scrollOn = event.isScrollLockOn();
-
-    // By design, SHIFT is non-chiral
-    if ((androidModifiers & KeyEvent.META_SHIFT_ON) != 0) {
-      keymanModifiers |= KMModifierCodes.get("SHIFT");
-    }
-    if ((androidModifiers & KeyEvent.META_CTRL_LEFT_ON) != 0) {
-      keymanModifiers |= isChiral ? KMModifierCodes.get("LCTRL") : KMModifierCodes.get("CTRL");
-    }
-    if ((androidModifiers & KeyEvent.META_CTRL_RIGHT_ON) != 0) {
-      keymanModifiers |= isChiral ? KMModifierCodes.get("RCTRL") : KMModifierCodes.get("CTRL");
-    }
-    if ((androidModifiers & KeyEvent.META_ALT_LEFT_ON) != 0) {
-      keymanModifiers |= isChiral ? KMModifierCodes.get("LALT") : KMModifierCodes.get("ALT");
-    }
-    if ((androidModifiers & KeyEvent.META_ALT_RIGHT_ON) != 0) {
-      keymanModifiers |= isChiral ? KMModifierCodes.get("RALT") : KMModifierCodes.get("ALT");
-    }
-
-    int Lstates = 0;
-    Lstates |= capsOn ? KMModifierCodes.get("CAPS") : KMModifierCodes.get("NO_CAPS");
-    Lstates |= numOn ? KMModifierCodes.get("NUM_LOCK") : KMModifierCodes.get("NO_NUM_LOCK");
-    Lstates |= scrollOn ? KMModifierCodes.get("SCROLL_LOCK") : KMModifierCodes.get("NO_SCROLL_LOCK");
+    int androidModifiers = event.getModifiers();
 
     // CTRL-Tab triggers the Keyman language menu
     if (keyCode == KeyEvent.KEYCODE_TAB && ((androidModifiers & KeyEvent.META_CTRL_ON) != 0)) {
@@ -61,14 +33,21 @@ public class KMHardwareKeyboardInterpreter implements KeyEvent.Callback {
       return false;
     }
 
-    // Range check scanCode. If it's beyond our expected range, just use "0"
-    int scanCode = event.getScanCode();
-    int code = (scanCode >= 0 && scanCode < KMScanCodeMap.scanCodeMap.length) ? KMScanCodeMap.scanCodeMap[scanCode] : 0 ;
+    int code = KMScanCodeMap.getKeymanKeyCode(event.getScanCode(), event.isNumLockOn());
     if (code == 0) {
-      // Not an alphanumeric, punctuation or enter/tab/space key
+      // Not an alphanumeric, punctuation, number pad or enter/tab/space key
       return false;
     }
 
+    // Chirality only matters when CTRL or ALT is held
+    boolean isChiral = false;
+    if (KMModifierCodes.hasChiralModifiers(androidModifiers)) {
+      KMKeyboard keyboard = KMManager.getKMKeyboard(this.keyboardType);
+      isChiral = keyboard != null && keyboard.getChirality();
+    }
+    int keymanModifiers = KMModifierCodes.fromAndroidModifiers(androidModifiers, isChiral);
+    int Lstates = KMModifierCodes.fromLockStates(event.isCapsLockOn(), event.isNumLockOn(), event.isScrollLockOn());
+
     // Send keystroke to KeymanWeb for processing: will return true to swallow the keystroke
     return KMManager.executeHardwareKeystroke(code, keymanModifiers, keyboardType, Lstates, androidModifiers);
   }
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2026 SIL International. All rights reserved.
+ */
+package com.keyman.engine;
+
+import java.util.Arrays;
+
+/**
+ * Hardware keystrokes waiting to be sent to KeymanWeb in a single call.
+ *
+ * Keystrokes are kept in order. Consecutive identical keystrokes, as generated by key repeat,
+ * are stored as one run with a repeat count. Not thread-safe: only used on the main thread.
+ */
+final class KMHardwareKeystrokeQueue {
+  // Each run is code, shift, lstates, eventModifiers, count
+  static final int RUN_SIZE = 5;
+
+  private int[] runs = new int[RUN_SIZE * 8];
+  private int size = 0;
+  private final StringBuilder builder = new StringBuilder(64);
+
+  void add(int code, int shift, int lstates, int eventModifiers) {
+    if (size > 0 && runs[size - 5] == code && runs[size - 4] == shift &&
+        runs[size - 3] == lstates && runs[size - 2] == eventModifiers) {
+      runs[size - 1]++;
+      return;
+    }
+
+    if (size == runs.length) {
+      runs = Arrays.copyOf(runs, size * 2);
+    }
+    runs[size++] = code;
+    runs[size++] = shift;
+    runs[size++] = lstates;
+    runs[size++] = eventModifiers;
+    runs[size++] = 1;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Build the Javascript call that executes the queued keystrokes, and clear the queue
+   * @return String - the Javascript call
+   */
+  String drain() {
+    builder.setLength(0);
+    builder.append("executeHardwareKeystrokes([");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        builder.append(',');
+      }
+      builder.append(runs[i]);
+    }
+    builder.append("])");
+    size = 0;
+    return builder.toString();
+  }
+}
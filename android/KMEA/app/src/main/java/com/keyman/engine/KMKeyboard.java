@@ -7,6 +7,9 @@ package com.keyman.engine;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -20,9 +23,11 @@ import com.keyman.engine.KeyboardEventHandler.OnKeyboardEventListener;
 import com.keyman.engine.util.CharSequenceUtil;
 import com.keyman.engine.util.DependencyUtil;
 import com.keyman.engine.util.DependencyUtil.LibraryType;
+import com.keyman.engine.util.EngineMetrics;
 import com.keyman.engine.util.FileUtils;
 import com.keyman.engine.util.KMLog;
 import com.keyman.engine.util.KMString;
+import com.keyman.engine.util.TypefaceCache;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
@@ -35,6 +40,7 @@ import android.os.Looper;
 import android.util.AndroidRuntimeException;
 import android.util.DisplayMetrics;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.GestureDetector;
 import android.view.Gravity;
 import android.view.LayoutInflater;
@@ -60,6 +66,10 @@ import io.sentry.SentryLevel;
 
 final class KMKeyboard extends WebView {
   private static final String TAG = "KMKeyboard";
+  private static final EngineMetrics.Timer setKeyboardTimer = EngineMetrics.timer("keyboard.set");
+  private static final EngineMetrics.Counter setKeyboardFailures = EngineMetrics.counter("keyboard.set.failed");
+  private static final EngineMetrics.Counter hardwareKeystrokeCount = EngineMetrics.counter("input.hardware_keystrokes");
+  private static final EngineMetrics.Counter hardwareBatchCount = EngineMetrics.counter("input.hardware_batches");
   private final Context context;
   private String packageID;
   private String keyboardID;
@@ -86,6 +96,18 @@ final class KMKeyboard extends WebView {
   private static String txtFont = "";
   private static String oskFont = null;
   private static String keyboardRoot = "";
+  private String dataDir = null;
+
+  // Resolved font descriptors by keyboard root and font spec, so switching keyboards doesn't
+  // re-parse them.  Shared by the in-app and system keyboards.
+  private static final int MAX_RESOLVED_FONTS = 64;
+  private static final Map<String, ResolvedFont> resolvedFonts =
+    new LinkedHashMap<String, ResolvedFont>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, ResolvedFont> eldest) {
+        return size() > MAX_RESOLVED_FONTS;
+      }
+    };
   private final String fontUndefined = "undefined";
   private GestureDetector gestureDetector;
   private static ArrayList<OnKeyboardEventListener> kbEventListeners = null;
@@ -99,6 +121,15 @@ final class KMKeyboard extends WebView {
   private Boolean _shouldShowHelpBubble = null;
   private boolean isChiral = false;
 
+  // Hardware keystrokes received during the current frame, sent to KeymanWeb together
+  private final KMHardwareKeystrokeQueue hardwareKeystrokes = new KMHardwareKeystrokeQueue();
+  private final Choreographer.FrameCallback hardwareKeystrokeFlush = new Choreographer.FrameCallback() {
+    @Override
+    public void doFrame(long frameTimeNanos) {
+      flushHardwareKeystrokes();
+    }
+  };
+
   private int currentKeyboardErrorReports = 0;
 
   protected boolean keyboardSet = false;
@@ -373,6 +404,10 @@ final class KMKeyboard extends WebView {
   }
 
   public void loadJavascript(String func) {
+    // Keep queued hardware keystrokes ahead of later calls
+    if (!hardwareKeystrokes.isEmpty() && Looper.myLooper() == Looper.getMainLooper()) {
+      flushHardwareKeystrokes();
+    }
     this.javascriptAfterLoad.add(func);
 
     if((keyboardType == KeyboardType.KEYBOARD_TYPE_INAPP && KMManager.InAppKeyboardWebViewClient.getKeyboardLoaded()) ||
@@ -425,10 +460,37 @@ final class KMKeyboard extends WebView {
     loadJavascript(jsString);
   }
 
-  public void executeHardwareKeystroke(int code, int shift, int lstates, int eventModifiers) {
-    String jsFormat = "executeHardwareKeystroke(%d,%d, %d, %d)";
-    String jsString = KMString.format(jsFormat, code, shift, lstates, eventModifiers);
-    loadJavascript(jsString);
+  /**
+   * Queue a hardware keystroke for KeymanWeb. Keystrokes received within one frame, including
+   * key repeats, are executed by a single Javascript call, so their text edits are committed
+   * together.
+   */
+  public void executeHardwareKeystroke(final int code, final int shift, final int lstates, final int eventModifiers) {
+    if (Looper.myLooper() != Looper.getMainLooper()) {
+      jsQueuer.post(new Runnable() {
+        @Override
+        public void run() {
+          executeHardwareKeystroke(code, shift, lstates, eventModifiers);
+        }
+      });
+      return;
+    }
+
+    if (hardwareKeystrokes.isEmpty()) {
+      Choreographer.getInstance().postFrameCallback(hardwareKeystrokeFlush);
+    }
+    hardwareKeystrokes.add(code, shift, lstates, eventModifiers);
+    hardwareKeystrokeCount.increment();
+  }
+
+  /**
+   * Send any queued hardware keystrokes to KeymanWeb now
+   */
+  public void flushHardwareKeystrokes() {
+    if (!hardwareKeystrokes.isEmpty()) {
+      hardwareBatchCount.increment();
+      loadJavascript(hardwareKeystrokes.drain());
+    }
   }
 
   @SuppressLint("ClickableViewAccessibility")
@@ -662,6 +724,7 @@ final class KMKeyboard extends WebView {
     if (packageID == null || keyboardID == null || languageID == null || keyboardName == null || languageName == null) {
       return false;
     }
+    long startTime = setKeyboardTimer.start();
 
     // Reset the counter for showing / sending errors related to the selected keybard
     currentKeyboardErrorReports = 0;
@@ -695,11 +758,13 @@ final class KMKeyboard extends WebView {
     if(kOskFont == null || kOskFont.isEmpty())
       kOskFont = kFont;
 
-    JSONObject jDisplayFont = makeFontPaths(kFont);
-    JSONObject jOskFont = makeFontPaths(kOskFont);
+    ResolvedFont displayFont = resolveFont(kFont, keyboardRoot);
+    ResolvedFont resolvedOskFont = resolveFont(kOskFont, keyboardRoot);
+    JSONObject jDisplayFont = displayFont.paths;
+    JSONObject jOskFont = resolvedOskFont.paths;
 
-    txtFont = getFontFilename(jDisplayFont);
-    oskFont = getFontFilename(jOskFont);
+    txtFont = displayFont.filename;
+    oskFont = resolvedOskFont.filename;
 
     String kbKey = KMString.format("%s_%s", languageID, keyboardID);
 
@@ -719,6 +784,7 @@ final class KMKeyboard extends WebView {
       if (displayName != null) reg.put("displayName", displayName);
     } catch(JSONException e) {
       KMLog.LogException(TAG, "", e);
+      setKeyboardFailures.increment();
       return false;
     }
 
@@ -731,7 +797,9 @@ final class KMKeyboard extends WebView {
     this.keyboardVersion = keyboardVersion;
     currentKeyboard = kbKey;
     keyboardSet = true;
-    saveCurrentKeyboardIndex();
+    int keyboardIndex = saveCurrentKeyboardIndex();
+    prewarmFonts(keyboardIndex);
+    KMLog.invalidateDebugInfo();
 
     this.dismissHelpBubble();
     if(this.getShouldShowHelpBubble()) {
@@ -740,6 +808,7 @@ final class KMKeyboard extends WebView {
 
     KeyboardEventHandler.notifyListeners(kbEventListeners, keyboardType, EventType.KEYBOARD_CHANGED, currentKeyboard);
 
+    setKeyboardTimer.stop(startTime);
     return retVal;
   }
 
@@ -798,12 +867,18 @@ final class KMKeyboard extends WebView {
 
   // Set the base path of the keyboard depending on the package ID
   private void setKeyboardRoot(String packageID) {
+    this.keyboardRoot = getKeyboardRoot(packageID);
+  }
+
+  private String getKeyboardRoot(String packageID) {
+    if (dataDir == null) {
+      // getDir() checks (and creates) the directory each call
+      dataDir = context.getDir("data", Context.MODE_PRIVATE).toString();
+    }
     if (packageID.equals(KMManager.KMDefault_UndefinedPackageID)) {
-      this.keyboardRoot = (context.getDir("data", Context.MODE_PRIVATE).toString() +
-        File.separator + KMManager.KMDefault_UndefinedPackageID + File.separator);
+      return (dataDir + File.separator + KMManager.KMDefault_UndefinedPackageID + File.separator);
     } else {
-      this.keyboardRoot = (context.getDir("data", Context.MODE_PRIVATE).toString() +
-        File.separator + KMManager.KMDefault_AssetPackages + File.separator + packageID + File.separator);
+      return (dataDir + File.separator + KMManager.KMDefault_AssetPackages + File.separator + packageID + File.separator);
     }
   }
 
@@ -892,11 +967,79 @@ final class KMKeyboard extends WebView {
     return title;
   }
 
-  private void saveCurrentKeyboardIndex() {
+  private int saveCurrentKeyboardIndex() {
+    int index = KMManager.getCurrentKeyboardIndex(context);
     SharedPreferences prefs = context.getSharedPreferences(context.getString(R.string.kma_prefs_name), Context.MODE_PRIVATE);
     SharedPreferences.Editor editor = prefs.edit();
-    editor.putInt(KMManager.KMKey_UserKeyboardIndex, KMManager.getCurrentKeyboardIndex(context));
+    editor.putInt(KMManager.KMKey_UserKeyboardIndex, index);
     editor.commit();
+    return index;
+  }
+
+  /**
+   * Load the fonts of the current keyboard, and of the next keyboard in switching order,
+   * into the Typeface cache in the background
+   * @param index int - index of the current keyboard in the installed keyboards list
+   */
+  private void prewarmFonts(int index) {
+    List<String> fonts = new ArrayList<>();
+    fonts.add(txtFont);
+    fonts.add(oskFont);
+
+    List<Keyboard> keyboards = (index != KeyboardController.INDEX_NOT_FOUND) ?
+      KeyboardController.getInstance().get() : null;
+    if (keyboards != null && keyboards.size() > 1) {
+      Keyboard next = keyboards.get((index + 1) % keyboards.size());
+      String nextRoot = getKeyboardRoot(next.getPackageID());
+      String nextOskFont = (next.getOSKFont() == null || next.getOSKFont().isEmpty()) ? next.getFont() : next.getOSKFont();
+      fonts.add(resolveFont(next.getFont(), nextRoot).filename);
+      fonts.add(resolveFont(nextOskFont, nextRoot).filename);
+    }
+
+    TypefaceCache.getInstance().prewarm(fonts);
+  }
+
+  /**
+   * A font spec resolved for a keyboard root
+   */
+  private static final class ResolvedFont {
+    // Font JSON object with full paths, or null if the font is invalid.  Shared, so don't modify.
+    final JSONObject paths;
+    // Full path of the font file, or "" if there isn't one
+    final String filename;
+
+    ResolvedFont(JSONObject paths, String filename) {
+      this.paths = paths;
+      this.filename = filename;
+    }
+  }
+
+  /**
+   * Resolve a keyboard's font spec with makeFontPaths and getFontFilename, reusing the result
+   * of an earlier call for the same keyboard root and spec
+   * @param font String - font JSON object as a string, or a font filename
+   * @param root String - keyboard root the font files are relative to
+   * @return ResolvedFont
+   */
+  private ResolvedFont resolveFont(String font, String root) {
+    if (font == null || font.isEmpty()) {
+      return new ResolvedFont(null, "");
+    }
+
+    String key = root + "\n" + font;
+    synchronized (resolvedFonts) {
+      ResolvedFont resolved = resolvedFonts.get(key);
+      if (resolved != null) {
+        return resolved;
+      }
+    }
+
+    JSONObject paths = makeFontPaths(font, root);
+    ResolvedFont resolved = new ResolvedFont(paths, getFontFilename(paths));
+    synchronized (resolvedFonts) {
+      resolvedFonts.put(key, resolved);
+    }
+    return resolved;
   }
 
   /**
@@ -1036,7 +1179,7 @@ final class KMKeyboard extends WebView {
    * @param font String font JSON object as a string
    * @return JSONObject of modified font information with full paths. If font is invalid, return `null`
    */
-  private JSONObject makeFontPaths(String font) {
+  private JSONObject makeFontPaths(String font, String keyboardRoot) {
 
     if(font == null || font.equals("")) {
       return null;
@@ -24,6 +24,7 @@ import com.keyman.engine.KMManager.EnterModeType;
 import com.keyman.engine.KMManager.KeyboardType;
 import com.keyman.engine.data.Keyboard;
 import com.keyman.engine.util.CharSequenceUtil;
+import com.keyman.engine.util.EngineMetrics;
 import com.keyman.engine.util.KMLog;
 import com.keyman.engine.util.KMString;
 
@@ -32,6 +33,7 @@ public class KMKeyboardJSHandler {
   private KMKeyboard k = null;
   private static int KM_VIBRATE_DURATION = 100; // milliseconds
   private static String TAG = "KMKeyboardJSHandler";
+  private static final EngineMetrics.Timer insertTextTimer = EngineMetrics.timer("input.insert_text");
 
   KMKeyboardJSHandler(Context context, KMKeyboard k) {
     this.context = context;
@@ -125,6 +127,7 @@ public class KMKeyboardJSHandler {
           return;
         }
 
+        long startTime = insertTextTimer.start();
         ic.beginBatchEdit();
 
         int deleteLeft = dn;
@@ -146,6 +149,7 @@ public class KMKeyboardJSHandler {
               ic.setSelection(start, start);
               ic.deleteSurroundingText(0, end - start);
               ic.endBatchEdit();
+              insertTextTimer.stop(startTime);
               return;
             } else {
               ic.setSelection(start, start);
@@ -207,6 +211,7 @@ public class KMKeyboardJSHandler {
             keyDownUp(KeyEvent.KEYCODE_ENTER, 0);
           }
           ic.endBatchEdit();
+          insertTextTimer.stop(startTime);
           return;
         }
 
@@ -243,6 +248,7 @@ public class KMKeyboardJSHandler {
         k.setShouldShowHelpBubble(false);
 
         ic.endBatchEdit();
+        insertTextTimer.stop(startTime);
         ViewGroup parent = (ViewGroup) k.getParent();
         if (parent != null && KMManager.getHapticFeedback() && !executingHardwareKeystroke) {
           parent.performHapticFeedback(HapticFeedbackConstants.VIRTUAL_KEY, HapticFeedbackConstants.FLAG_IGNORE_GLOBAL_SETTING);
@@ -5,7 +5,6 @@
 package com.keyman.engine;
 
 import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 
@@ -22,7 +21,6 @@ import android.widget.TextView;
 import com.keyman.engine.data.Dataset;
 import com.keyman.engine.data.Keyboard;
 import com.keyman.engine.data.KeyboardController;
-import com.keyman.engine.data.adapters.AdapterFilter;
 import com.keyman.engine.data.adapters.NestedAdapter;
 import com.keyman.engine.util.FileUtils;
 import com.keyman.engine.util.MapCompat;
@@ -39,16 +37,11 @@ final class KMKeyboardPickerAdapter extends NestedAdapter<Keyboard, Dataset.Keyb
   protected Typeface listFont;
 
   public KMKeyboardPickerAdapter(final Context context, Dataset.Keyboards adapter) {
-    // TODO:  (13.0) Swap the inline AdapterFilter definition out for Dataset.keyboardPickerSorter
+    // TODO:  (13.0) Swap the default filter out for Dataset.keyboardPickerSorter
     //        once KeyboardPickerActivity is sufficiently refactored.  (All references to keyboardList
     //        should instead refer to this adapter.)
-    super(context, KEYBOARD_LAYOUT_RESOURCE, adapter, new AdapterFilter<Keyboard, Dataset.Keyboards, Void>() {
-
-      public List<Keyboard> selectFrom(Dataset.Keyboards adapter, Void dummy) {
-        // Return the keyboards list
-        return adapter.asList();
-      }
-    }, null);
+    // The default filter mirrors the keyboards list, so installs and removals are applied in place.
+    super(context, KEYBOARD_LAYOUT_RESOURCE, adapter);
   }
 
   @Override
@@ -9,6 +9,8 @@ import android.graphics.Bitmap;
 import android.graphics.RectF;
 import android.net.Uri;
 import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
 import android.widget.RelativeLayout;
@@ -22,6 +24,9 @@ import com.keyman.engine.data.Keyboard;
 
 import org.json.JSONObject;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -117,6 +122,55 @@ public final class KMKeyboardWebViewClient extends WebViewClient {
     }
   }
 
+  /**
+   * When KMManager.getLoadEngineAssetsFromApk() is enabled, the KeymanWeb engine files are not
+   * copied to the app data folder. Requests for them are served straight from the APK assets,
+   * while the document URL (and therefore relative paths to installed packages) stays unchanged.
+   */
+  @Override
+  public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+    if (!KMManager.getLoadEngineAssetsFromApk()) {
+      return null;
+    }
+
+    Uri uri = request.getUrl();
+    if (uri == null || !"file".equals(uri.getScheme()) || uri.getPath() == null) {
+      return null;
+    }
+
+    File file = new File(uri.getPath());
+    String filename = file.getName();
+    if (!KMManager.isEngineAsset(filename) ||
+        !new File(KMManager.getResourceRoot()).equals(file.getParentFile())) {
+      // Installed packages are loaded from disk
+      return null;
+    }
+
+    try {
+      InputStream inputStream = context.getAssets().open(filename);
+      String mimeType = getEngineAssetMimeType(filename);
+      String encoding = mimeType.startsWith("font/") ? null : "UTF-8";
+      return new WebResourceResponse(mimeType, encoding, inputStream);
+    } catch (IOException e) {
+      KMLog.LogException(TAG, "Unable to open engine asset " + filename, e);
+      return null;
+    }
+  }
+
+  private static String getEngineAssetMimeType(String filename) {
+    String lowerFilename = filename.toLowerCase();
+    if (lowerFilename.endsWith(".html")) {
+      return "text/html";
+    } else if (lowerFilename.endsWith(".js")) {
+      return "application/javascript";
+    } else if (lowerFilename.endsWith(".css")) {
+      return "text/css";
+    } else if (lowerFilename.endsWith(".ttf")) {
+      return "font/ttf";
+    }
+    return "application/octet-stream";
+  }
+
   @Override
   public boolean shouldOverrideUrlLoading(WebView view, String url) {
     Log.d("KMEA", String.format("shouldOverrideUrlLoading [%s]: %s", keyboardType.toString(), url));
@@ -9,6 +9,7 @@ import java.io.FileFilter;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -62,23 +63,30 @@ import io.sentry.Breadcrumb;
 import io.sentry.Sentry;
 import io.sentry.SentryLevel;
 
+import com.keyman.engine.KeyboardEventHandler.OnBundledPackageEventListener;
 import com.keyman.engine.KeyboardEventHandler.OnKeyboardDownloadEventListener;
 import com.keyman.engine.KeyboardEventHandler.OnKeyboardEventListener;
+import com.keyman.engine.cloud.CloudDataJsonUtil;
 import com.keyman.engine.cloud.CloudDownloadMgr;
 import com.keyman.engine.data.Dataset;
 import com.keyman.engine.data.Keyboard;
 import com.keyman.engine.data.KeyboardController;
 import com.keyman.engine.logic.ResourcesUpdateTool;
+import com.keyman.engine.packages.BundledPackageBootstrap;
+import com.keyman.engine.packages.StorageCompactor;
 import com.keyman.engine.packages.JSONUtils;
 import com.keyman.engine.packages.LexicalModelPackageProcessor;
 import com.keyman.engine.packages.PackageProcessor;
 import com.keyman.engine.util.BCP47;
 import com.keyman.engine.util.DependencyUtil;
 import com.keyman.engine.util.DependencyUtil.LibraryType;
+import com.keyman.engine.util.EngineMetrics;
 import com.keyman.engine.util.FileUtils;
+import com.keyman.engine.util.HttpResponseCache;
 import com.keyman.engine.util.KMLog;
 import com.keyman.engine.util.KMString;
 import com.keyman.engine.util.MapCompat;
+import com.keyman.engine.util.TypefaceCache;
 import com.keyman.engine.util.WebViewUtils;
 import com.keyman.engine.util.WebViewUtils.SystemWebViewStatus;
 
@@ -237,6 +245,10 @@ public final class KMManager {
   private static boolean shouldAllowSetKeyboard = true;
   private static boolean didCopyAssets = false;
 
+  // When true, the KeymanWeb engine files are served directly from the APK assets
+  // by KMKeyboardWebViewClient instead of being copied into the app data folder
+  private static boolean loadEngineAssetsFromApk = false;
+
   private static boolean didLogHardwareKeystrokeException = false;
 
   private static GlobeKeyAction inappKbGlobeKeyAction = GlobeKeyAction.GLOBE_KEY_ACTION_SWITCH_TO_NEXT_KEYBOARD;
@@ -378,6 +390,19 @@ public final class KMManager {
   protected static final String KMFilename_JSPolyfill2 = "other-polyfills.js";
   protected static final String KMFilename_JSPolyfill3 = "map-polyfill.js";
 
+  // Immutable KeymanWeb engine files that ship in the APK assets
+  private static final String[] KMEngineAssets = {
+    KMFilename_KeyboardHtml,
+    KMFilename_JSEngine,
+    KMFilename_JSSentry,
+    KMFilename_AndroidHost,
+    KMFilename_KmwCss,
+    KMFilename_KmwGlobeHintCss,
+    KMFilename_Osk_Ttf_Font,
+    // Needed until our minimum version of Chrome is 61.0+.
+    KMFilename_JSPolyfill2
+  };
+
   // Deprecated by KeyboardController.KMFilename_Installed_KeyboardsList
   public static final String KMFilename_KeyboardsList = "keyboards_list.dat";
 
@@ -490,6 +515,38 @@ public final class KMManager {
     return false;
   }
 
+  /**
+   * Set whether the immutable KeymanWeb engine files (keyboard.html, keymanweb-webview.js,
+   * kmwosk.css, keymanweb-osk.ttf, polyfills) are served directly from the APK assets.
+   * When enabled, the engine files are no longer copied into the app data folder; only
+   * installed packages are loaded from disk. Must be called before initialize().
+   * @param value boolean
+   */
+  public static void setLoadEngineAssetsFromApk(boolean value) {
+    loadEngineAssetsFromApk = value;
+  }
+
+  public static boolean getLoadEngineAssetsFromApk() {
+    return loadEngineAssetsFromApk;
+  }
+
+  /**
+   * Check if a filename is one of the immutable KeymanWeb engine files shipped in the APK assets
+   * @param filename String
+   * @return boolean
+   */
+  public static boolean isEngineAsset(String filename) {
+    if (filename == null) {
+      return false;
+    }
+    for (String engineAsset : KMEngineAssets) {
+      if (engineAsset.equals(filename)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public static void initialize(final Context context, KeyboardType keyboardType) {
     appContext = context.getApplicationContext();
 
@@ -519,6 +576,8 @@ public final class KMManager {
     KeyboardController.getInstance().initialize(appContext);
     migrateCloudKeyboards(appContext);
 
+    HttpResponseCache.initialize(appContext);
+    CloudDataJsonUtil.deleteLegacyLexicalModelCache(appContext);
     CloudDownloadMgr.getInstance().initialize(appContext);
   }
 
@@ -1019,6 +1078,20 @@ public final class KMManager {
     return false;
   }
 
+  /**
+   * Check for a network connection that isn't metered, e.g. Wi-Fi
+   * @param context Context
+   * @return boolean - true if connected to an unmetered network
+   */
+  public static boolean hasUnmeteredConnection(Context context) {
+    if (!hasConnection(context)) {
+      return false;
+    }
+
+    ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    return !cm.isActiveNetworkMetered();
+  }
+
   public static boolean hasInternetPermission(Context context) {
     return hasPermission(context, Manifest.permission.INTERNET);
   }
@@ -1053,17 +1126,17 @@ public final class KMManager {
 
     try {
       // Copy KMW files
-      copyAsset(context, KMFilename_KeyboardHtml, "", true);
-
-      copyAsset(context, KMFilename_JSEngine, "", true);
-      copyAsset(context, KMFilename_JSSentry, "", true);
-      copyAsset(context, KMFilename_AndroidHost, "", true);
-      copyAsset(context, KMFilename_KmwCss, "", true);
-      copyAsset(context, KMFilename_KmwGlobeHintCss, "", true);
-      copyAsset(context, KMFilename_Osk_Ttf_Font, "", true);
-
-      // Needed until our minimum version of Chrome is 61.0+.
-      copyAsset(context, KMFilename_JSPolyfill2, "", true);
+      for (String engineAsset : KMEngineAssets) {
+        if (loadEngineAssetsFromApk) {
+          // Served from the APK by KMKeyboardWebViewClient, so remove copies from earlier versions
+          File engineFile = new File(getResourceRoot(), engineAsset);
+          if (engineFile.exists()) {
+            engineFile.delete();
+          }
+        } else {
+          copyAsset(context, engineAsset, "", true);
+        }
+      }
 
       // Copy default keyboard font
       copyAsset(context, KMDefault_KeyboardFont, "", true);
@@ -1105,57 +1178,10 @@ public final class KMManager {
         }
       }
 
-      File resourceRoot = new File(getResourceRoot());
-      PackageProcessor kmpProcessor = new PackageProcessor(resourceRoot);
-      LexicalModelPackageProcessor lmkmpProcessor = new LexicalModelPackageProcessor(resourceRoot);
-      String assetFiles[] = assetManager.list("");
-      for (String assetFile : assetFiles) {
-        File kmpFile, tempPackagePath;
-        boolean isPackageFile = FileUtils.hasKeymanPackageExtension(assetFile) ||
-          FileUtils.hasLexicalModelPackageExtension(assetFile);
-
-        // Copy asset KMP files
-        if (isPackageFile) {
-          kmpFile = new File(getResourceRoot(), assetFile);
-          if (kmpFile.exists()) {
-            // Skip if kmp file already exists.
-            // Admittedly, we'll miss out on kmp updates with Keyman upgrades
-            continue;
-          }
-          copyAsset(context, assetFile, "", true);
-          tempPackagePath = kmpProcessor.unzipKMP(kmpFile);
-
-          // Determine package info
-          JSONObject pkgInfo = kmpProcessor.loadPackageInfo(tempPackagePath);
-          if (pkgInfo == null) {
-            KMLog.LogError(TAG, "Invalid kmp.json in default asset " + assetFile);
-          }
-          String assetPackageID = kmpProcessor.getPackageID(kmpFile);
-          String assetPackageTarget = kmpProcessor.getPackageTarget(pkgInfo);
-
-          // Only install if asset package is not a downgrade
-          try {
-            if (assetPackageTarget.equals(PackageProcessor.PP_TARGET_KEYBOARDS)) {
-              if (!kmpProcessor.isDowngrade(kmpFile, true)) {
-                // Not using the list of entries returned from processKMP()
-                // because the main App will add the keyboard/lexical model info
-                kmpProcessor.processKMP(kmpFile, tempPackagePath, PackageProcessor.PP_KEYBOARDS_KEY);
-              }
-            } else if (assetPackageTarget.equals(PackageProcessor.PP_TARGET_LEXICAL_MODELS)) {
-              if (!lmkmpProcessor.isDowngrade(kmpFile)) {
-                lmkmpProcessor.processKMP(kmpFile, tempPackagePath, PackageProcessor.PP_LEXICAL_MODELS_KEY);
-              }
-            }
-          } catch (JSONException e) {
-            KMLog.LogException(TAG, "Unable to determine isDowngrade for " + kmpFile.toString(), e);
-          }
-
-          // Cleanup tempPackagePath
-          if (tempPackagePath.exists()) {
-            FileUtils.deleteDirectory(tempPackagePath);
-          }
-        }
-      }
+      // Install bundled kmp packages. The default keyboard and dictionary, and the packages added with
+      // addRequiredBundledPackage() are installed before this returns, and the rest are
+      // installed in the background
+      BundledPackageBootstrap.getInstance(context).start();
     } catch (Exception e) {
       KMLog.LogException(TAG, "Failed to copy assets. Error: ", e);
     }
@@ -1607,16 +1633,10 @@ public final class KMManager {
   public static Typeface getFontTypeface(Context context, String fontFilename) {
     try {
       if ((fontFilename != null) && FileUtils.hasFontExtension(fontFilename)) {
-        // Ignore .woff files if Android 7.0 / 7.1 (Issue #4896)
-        if ((Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) &&
-            (Build.VERSION.SDK_INT <= Build.VERSION_CODES.N_MR1) &&
-            fontFilename.toLowerCase().endsWith(FileUtils.WOFFFONT)) {
-          return null;
-        }
-
+        // TypefaceCache skips fonts this Android version can't load
         File file = new File(fontFilename);
         if (file.exists()) {
-          return Typeface.createFromFile(file);
+          return TypefaceCache.getInstance().get(file);
         }
       }
     } catch (Exception e) {
@@ -1627,6 +1647,24 @@ public final class KMManager {
     return null;
   }
 
+  /**
+   * Get the engine's performance metrics: counters and timings of keyboard switches, package
+   * installs, catalog refreshes, JSON parsing and text insertion
+   * @return EngineMetrics.Snapshot
+   */
+  public static EngineMetrics.Snapshot getMetricsSnapshot() {
+    return EngineMetrics.snapshot();
+  }
+
+  /**
+   * Write the engine's performance metrics as text, e.g. from InputMethodService.dump() so
+   * they're included in dumpsys output
+   * @param pw PrintWriter
+   */
+  public static void dumpMetrics(PrintWriter pw) {
+    EngineMetrics.snapshot().dump(pw);
+  }
+
   public static List<Keyboard> getKeyboardsList(Context context) {
     return KeyboardPickerActivity.getKeyboardsList(context);
   }
@@ -1640,6 +1678,7 @@ public final class KMManager {
   }
 
   public static boolean registerLexicalModel(HashMap<String, String> lexicalModelInfo) {
+    KMLog.invalidateDebugInfo();
     String pkgID = lexicalModelInfo.get(KMKey_PackageID);
     String modelID = lexicalModelInfo.get(KMKey_LexicalModelID);
     String languageID = lexicalModelInfo.get(KMKey_LanguageID);
@@ -1697,6 +1736,7 @@ public final class KMManager {
   }
 
   public static boolean deregisterLexicalModel(String modelID) {
+    KMLog.invalidateDebugInfo();
     // Check if current lexical model needs to be cleared
     if (currentLexicalModel != null && currentLexicalModel.get(KMManager.KMKey_LexicalModelID).equalsIgnoreCase(modelID)) {
       currentLexicalModel = null;
@@ -1831,6 +1871,16 @@ public final class KMManager {
     return KeyboardPickerActivity.addLexicalModel(context, lexicalModelInfo);
   }
 
+  /**
+   * Add several lexical models, saving the installed lexical models list once.
+   * @param context
+   * @param lexicalModelInfoList List of lexical model info to add
+   * @return boolean - true if the lexical models list was saved
+   */
+  public static boolean addLexicalModels(Context context, List<HashMap<String, String>> lexicalModelInfoList) {
+    return KeyboardPickerActivity.addLexicalModels(context, lexicalModelInfoList);
+  }
+
   /**
    * registerAssociatedLexicalModel - Registers a lexical model with the associated language ID.
    *         If a new model gets loaded, returns true.
@@ -1871,6 +1921,27 @@ public final class KMManager {
   }
 
   public static boolean addKeyboard(Context context, Keyboard keyboardInfo) {
+    prepareAddKeyboard(keyboardInfo);
+    return KeyboardPickerActivity.addKeyboard(context, keyboardInfo);
+  }
+
+  /**
+   * Add several keyboards, saving the installed keyboards list and updating the keyboard picker
+   * once instead of once per keyboard. Use when installing multiple packages at once.
+   * @param context
+   * @param keyboardInfoList List<Keyboard> keyboards to add
+   * @return boolean - true if the keyboards list was saved
+   */
+  public static boolean addKeyboards(Context context, List<Keyboard> keyboardInfoList) {
+    if (keyboardInfoList != null) {
+      for (Keyboard keyboardInfo : keyboardInfoList) {
+        prepareAddKeyboard(keyboardInfo);
+      }
+    }
+    return KeyboardPickerActivity.addKeyboards(context, keyboardInfoList);
+  }
+
+  private static void prepareAddKeyboard(Keyboard keyboardInfo) {
     String packageID = keyboardInfo.getPackageID();
     String keyboardID = keyboardInfo.getKeyboardID();
     keyboardInfo.setNewKeyboard(true);
@@ -1894,8 +1965,6 @@ public final class KMManager {
       // For now, not sending a Sentry.captureMessage()
       // This means the breadcrumb won't get sent until a crash happens.
     }
-
-    return KeyboardPickerActivity.addKeyboard(context, keyboardInfo);
   }
 
   public static boolean removeKeyboard(Context context, int position) {
@@ -2265,6 +2334,43 @@ public final class KMManager {
     KMKeyboard.addOnKeyboardEventListener(listener);
   }
 
+  public static void addBundledPackageEventListener(OnBundledPackageEventListener listener) {
+    BundledPackageBootstrap.addBundledPackageEventListener(listener);
+  }
+
+  public static void removeBundledPackageEventListener(OnBundledPackageEventListener listener) {
+    BundledPackageBootstrap.removeBundledPackageEventListener(listener);
+  }
+
+  /**
+   * Install a bundled package before initialize() returns, rather than in the background.
+   * Call before initialize().
+   * @param assetFile String - filename of the .kmp in the assets, e.g. "fv_all.kmp"
+   */
+  public static void addRequiredBundledPackage(String assetFile) {
+    BundledPackageBootstrap.addRequiredPackage(assetFile);
+  }
+
+  /**
+   * Check if all the .kmp packages bundled in the app assets have been installed
+   * @return boolean
+   */
+  public static boolean isBundledPackageBootstrapComplete() {
+    return BundledPackageBootstrap.getInstance(appContext).isComplete();
+  }
+
+  /**
+   * Delete files no longer used by the installed keyboards and lexical models: temporary
+   * package folders from failed installs, old legacy cloud keyboards and fonts, and removed
+   * lexical model packages. This also runs once in the background after the bundled packages
+   * are installed. Avoid calling from the main thread.
+   * @param context
+   * @return long - number of bytes reclaimed
+   */
+  public static long compactStorage(Context context) {
+    return StorageCompactor.compact(context);
+  }
+
   public static void removeKeyboardDownloadEventListener(OnKeyboardDownloadEventListener listener) {
     KMKeyboardDownloaderActivity.removeKeyboardDownloadEventListener(listener);
   }
@@ -1,27 +1,76 @@
 package com.keyman.engine;
 
+import android.view.KeyEvent;
+
 import java.util.HashMap;
 
 public final class KMModifierCodes {
 
-  // Note: Keep this table in sync with web/source/text/codes.ts, Codes.modifierCodes.
+  // Note: Keep these values in sync with web/source/text/codes.ts, Codes.modifierCodes.
+  public static final int LCTRL = 0x0001;
+  public static final int RCTRL = 0x0002;
+  public static final int LALT = 0x0004;
+  public static final int RALT = 0x0008;
+  public static final int SHIFT = 0x0010;
+  public static final int CTRL = 0x0020;
+  public static final int ALT = 0x0040;
+  public static final int CAPS = 0x0100;
+  public static final int NO_CAPS = 0x0200;
+  public static final int NUM_LOCK = 0x0400;
+  public static final int NO_NUM_LOCK = 0x0800;
+  public static final int SCROLL_LOCK = 0x1000;
+  public static final int NO_SCROLL_LOCK = 0x2000;
+  public static final int VIRTUAL_KEY = 0x4000;
+
   final static HashMap<String, Integer> codes = new HashMap<String, Integer>() {{
-    put("LCTRL", 0x0001);
-    put("RCTRL", 0x0002);
-    put("LALT", 0x0004);
-    put("RALT", 0x0008);
-    put("SHIFT", 0x0010);
-    put("CTRL", 0x0020);
-    put("ALT", 0x0040);
-    put("CAPS", 0x0100);
-    put("NO_CAPS", 0x0200);
-    put("NUM_LOCK", 0x0400);
-    put("NO_NUM_LOCK", 0x0800);
-    put("SCROLL_LOCK", 0x1000);
-    put("NO_SCROLL_LOCK", 0x2000);
-    put("VIRTUAL_KEY", 0x4000);
+    put("LCTRL", LCTRL);
+    put("RCTRL", RCTRL);
+    put("LALT", LALT);
+    put("RALT", RALT);
+    put("SHIFT", SHIFT);
+    put("CTRL", CTRL);
+    put("ALT", ALT);
+    put("CAPS", CAPS);
+    put("NO_CAPS", NO_CAPS);
+    put("NUM_LOCK", NUM_LOCK);
+    put("NO_NUM_LOCK", NO_NUM_LOCK);
+    put("SCROLL_LOCK", SCROLL_LOCK);
+    put("NO_SCROLL_LOCK", NO_SCROLL_LOCK);
+    put("VIRTUAL_KEY", VIRTUAL_KEY);
   }};
 
+  // Keyman modifiers for the Android meta state bits SHIFT, CTRL_LEFT, CTRL_RIGHT, ALT_LEFT and
+  // ALT_RIGHT, in that order. By design, SHIFT is non-chiral
+  private static final int[] CHIRAL_MODIFIERS = { SHIFT, LCTRL, RCTRL, LALT, RALT };
+  private static final int[] NON_CHIRAL_MODIFIERS = { SHIFT, CTRL, CTRL, ALT, ALT };
+
+  // Keyman modifiers for each combination of those meta state bits, indexed as packed by
+  // fromAndroidModifiers()
+  private static final int[] chiralTable = buildTable(CHIRAL_MODIFIERS);
+  private static final int[] nonChiralTable = buildTable(NON_CHIRAL_MODIFIERS);
+
+  // Keyman lock states for each combination of caps, num and scroll lock
+  private static final int[] lockStatesTable = new int[8];
+  static {
+    for (int i = 0; i < lockStatesTable.length; i++) {
+      lockStatesTable[i] = (((i & 1) != 0) ? CAPS : NO_CAPS) |
+        (((i & 2) != 0) ? NUM_LOCK : NO_NUM_LOCK) |
+        (((i & 4) != 0) ? SCROLL_LOCK : NO_SCROLL_LOCK);
+    }
+  }
+
+  private static int[] buildTable(int[] modifiers) {
+    int[] table = new int[1 << modifiers.length];
+    for (int i = 0; i < table.length; i++) {
+      for (int bit = 0; bit < modifiers.length; bit++) {
+        if ((i & (1 << bit)) != 0) {
+          table[i] |= modifiers[bit];
+        }
+      }
+    }
+    return table;
+  }
+
   public static Integer get(String key) {
     Integer bitflag = codes.get(key);
     if (bitflag == null) {
@@ -29,4 +78,41 @@ public final class KMModifierCodes {
     }
     return bitflag;
   };
+
+  /**
+   * Translate Android modifier states to Keyman modifiers without allocating
+   * @param androidModifiers int - KeyEvent.getModifiers()
+   * @param isChiral boolean - whether the keyboard distinguishes left and right CTRL / ALT
+   * @return int - Keyman modifier bitflags
+   */
+  public static int fromAndroidModifiers(int androidModifiers, boolean isChiral) {
+    // Pack the meta state bits in table order: SHIFT (0x1) stays at bit 0,
+    // CTRL_LEFT / CTRL_RIGHT (0x2000 / 0x4000) move to bits 1-2, ALT_LEFT / ALT_RIGHT (0x10 / 0x20)
+    // move to bits 3-4
+    int index = (androidModifiers & KeyEvent.META_SHIFT_ON) |
+      ((androidModifiers >> 12) & 0x6) |
+      ((androidModifiers >> 1) & 0x18);
+    return isChiral ? chiralTable[index] : nonChiralTable[index];
+  }
+
+  /**
+   * @param androidModifiers int - KeyEvent.getModifiers()
+   * @return boolean - whether translating the modifiers depends on the keyboard's chirality
+   */
+  public static boolean hasChiralModifiers(int androidModifiers) {
+    return (androidModifiers & (KeyEvent.META_CTRL_ON | KeyEvent.META_ALT_ON |
+      KeyEvent.META_CTRL_LEFT_ON | KeyEvent.META_CTRL_RIGHT_ON |
+      KeyEvent.META_ALT_LEFT_ON | KeyEvent.META_ALT_RIGHT_ON)) != 0;
+  }
+
+  /**
+   * Translate Android lock key states to Keyman lock states without allocating
+   * @param capsOn boolean
+   * @param numOn boolean
+   * @param scrollOn boolean
+   * @return int - Keyman lock state bitflags
+   */
+  public static int fromLockStates(boolean capsOn, boolean numOn, boolean scrollOn) {
+    return lockStatesTable[(capsOn ? 1 : 0) | (numOn ? 2 : 0) | (scrollOn ? 4 : 0)];
+  }
 }
@@ -16,7 +16,9 @@ public final class KMScanCodeMap {
    * Maps relevant Linux key code (LKC) to the standard key codes used by Keyman keyboards
    * Table: https://source.android.com/devices/input/keyboard-devices
    *
-   * Limitations: Intentionally not assigning number pad keys
+   * Function, navigation, IME and media keys are intentionally not assigned, so Android handles
+   * them. Number pad digits and decimal point are only assigned while num lock is on; see
+   * getKeymanKeyCode()
    */
   final static int scanCodeMap[] = {
     0,      //        padding = 0x00;
@@ -74,7 +76,7 @@ public final class KMScanCodeMap {
     190,    //        public static final int KEY_DOT = 0x34;
     191,    //        public static final int KEY_SLASH = 0x35;
     0,      //        public static final int KEY_RIGHTSHIFT = 0x36;
-    0,      //        public static final int KEY_KPASTERISK = 0x37;
+    106,    //        public static final int KEY_KPASTERISK = 0x37;
     0,      //        public static final int KEY_LEFTALT = 0x38;
     32,     //        public static final int KEY_SPACE = 0x39;
     0,      //        public static final int KEY_CAPSLOCK = 0x3A;
@@ -90,26 +92,86 @@ public final class KMScanCodeMap {
     0,      //        public static final int KEY_F10 = 0x44;
     0,      //        public static final int KEY_NUMLOCK = 0x45;
     0,      //        public static final int KEY_SCROLLLOCK = 0x46;
-    0,      //        public static final int KEY_KP7 = 0x47;
-    0,      //        public static final int KEY_KP8 = 0x48;
-    0,      //        public static final int KEY_KP9 = 0x49;
-    0,      //        public static final int KEY_KPMINUS = 0x4A;
-    0,      //        public static final int KEY_KP4 = 0x4B;
-    0,      //        public static final int KEY_KP5 = 0x4C;
-    0,      //        public static final int KEY_KP6 = 0x4D;
-    0,      //        public static final int KEY_KPPLUS = 0x4E;
-    0,      //        public static final int KEY_KP1 = 0x4F;
-    0,      //        public static final int KEY_KP2 = 0x50;
-    0,      //        public static final int KEY_KP3 = 0x51;
-    0,      //        public static final int KEY_KP0 = 0x52;
-    0,      //        public static final int KEY_KPDOT = 0x53;
+    103,    //        public static final int KEY_KP7 = 0x47;
+    104,    //        public static final int KEY_KP8 = 0x48;
+    105,    //        public static final int KEY_KP9 = 0x49;
+    109,    //        public static final int KEY_KPMINUS = 0x4A;
+    100,    //        public static final int KEY_KP4 = 0x4B;
+    101,    //        public static final int KEY_KP5 = 0x4C;
+    102,    //        public static final int KEY_KP6 = 0x4D;
+    107,    //        public static final int KEY_KPPLUS = 0x4E;
+    97,     //        public static final int KEY_KP1 = 0x4F;
+    98,     //        public static final int KEY_KP2 = 0x50;
+    99,     //        public static final int KEY_KP3 = 0x51;
+    96,     //        public static final int KEY_KP0 = 0x52;
+    110,    //        public static final int KEY_KPDOT = 0x53;
     0,      //        padding 0x54;
     0,      //        public static final int KEY_ZENKAKUHANKAKU = 0x55;
-    226     //        public static final int KEY_102ND = 0x56;
+    226,    //        public static final int KEY_102ND = 0x56;
+    0,      //        public static final int KEY_F11 = 0x57;
+    0,      //        public static final int KEY_F12 = 0x58;
+    193,    //        public static final int KEY_RO = 0x59;
+    0,      //        public static final int KEY_KATAKANA = 0x5A;
+    0,      //        public static final int KEY_HIRAGANA = 0x5B;
+    0,      //        public static final int KEY_HENKAN = 0x5C;
+    0,      //        public static final int KEY_KATAKANAHIRAGANA = 0x5D;
+    0,      //        public static final int KEY_MUHENKAN = 0x5E;
+    0,      //        public static final int KEY_KPJPCOMMA = 0x5F;
+    13,     //        public static final int KEY_KPENTER = 0x60;
+    0,      //        public static final int KEY_RIGHTCTRL = 0x61;
+    111,    //        public static final int KEY_KPSLASH = 0x62;
+    0,      //        public static final int KEY_SYSRQ = 0x63;
+    0,      //        public static final int KEY_RIGHTALT = 0x64;
+    0,      //        public static final int KEY_LINEFEED = 0x65;
+    0,      //        public static final int KEY_HOME = 0x66;
+    0,      //        public static final int KEY_UP = 0x67;
+    0,      //        public static final int KEY_PAGEUP = 0x68;
+    0,      //        public static final int KEY_LEFT = 0x69;
+    0,      //        public static final int KEY_RIGHT = 0x6A;
+    0,      //        public static final int KEY_END = 0x6B;
+    0,      //        public static final int KEY_DOWN = 0x6C;
+    0,      //        public static final int KEY_PAGEDOWN = 0x6D;
+    0,      //        public static final int KEY_INSERT = 0x6E;
+    0,      //        public static final int KEY_DELETE = 0x6F;
+    0,      //        public static final int KEY_MACRO = 0x70;
+    0,      //        public static final int KEY_MUTE = 0x71;
+    0,      //        public static final int KEY_VOLUMEDOWN = 0x72;
+    0,      //        public static final int KEY_VOLUMEUP = 0x73;
+    0,      //        public static final int KEY_POWER = 0x74;
+    0,      //        public static final int KEY_KPEQUAL = 0x75;
+    0,      //        public static final int KEY_KPPLUSMINUS = 0x76;
+    0,      //        public static final int KEY_PAUSE = 0x77;
+    0,      //        public static final int KEY_SCALE = 0x78;
+    0,      //        public static final int KEY_KPCOMMA = 0x79;
+    0,      //        public static final int KEY_HANGEUL = 0x7A;
+    0,      //        public static final int KEY_HANJA = 0x7B;
+    226     //        public static final int KEY_YEN = 0x7C;
 
-    // Many more KEYS currently not used by KMW...
+    // Higher key codes are media and system keys, which are left to Android
   };
 
   final static int KEY_TAB = 0x0F;
   final static int KEY_ENTER = 0x1C;
+  final static int KEY_KP7 = 0x47;
+  final static int KEY_KPDOT = 0x53;
+  final static int KEY_KPMINUS = 0x4A;
+  final static int KEY_KPPLUS = 0x4E;
+
+  /**
+   * Map a Linux key code to the Keyman key code
+   * @param scanCode int - the Linux key code, from KeyEvent.getScanCode()
+   * @param numLockOn boolean - whether num lock is on
+   * @return int - the Keyman key code, or 0 if the key isn't handled by Keyman
+   */
+  static int getKeymanKeyCode(int scanCode, boolean numLockOn) {
+    if (scanCode < 0 || scanCode >= scanCodeMap.length) {
+      return 0;
+    }
+    // Without num lock, the number pad digits and decimal point are navigation keys
+    if (!numLockOn && scanCode >= KEY_KP7 && scanCode <= KEY_KPDOT &&
+        scanCode != KEY_KPMINUS && scanCode != KEY_KPPLUS) {
+      return 0;
+    }
+    return scanCodeMap[scanCode];
+  }
 }
\ No newline at end of file
@@ -21,7 +21,9 @@ public final class KeyboardEventHandler {
     KEYBOARD_DOWNLOAD_STARTED,
     KEYBOARD_DOWNLOAD_FINISHED,
     PACKAGE_INSTALLED,
-    LEXICAL_MODEL_INSTALLED;
+    LEXICAL_MODEL_INSTALLED,
+    BUNDLED_PACKAGE_PROGRESS,
+    BUNDLED_PACKAGES_COMPLETED;
   }
 
   public static void notifyListeners(ArrayList<OnKeyboardEventListener> listeners, KeyboardType keyboardType, EventType event, String newValue) {
@@ -82,6 +84,24 @@ public final class KeyboardEventHandler {
     }
   }
 
+  public static void notifyListeners(ArrayList<OnBundledPackageEventListener> listeners,
+                                     EventType event, String packageFilename, int completed, int total) {
+    if (listeners != null) {
+      @SuppressWarnings("unchecked")
+      // make a copy of the list to avoid concurrent modification while iterating
+      ArrayList<OnBundledPackageEventListener> _listeners =
+        (ArrayList<OnBundledPackageEventListener>) listeners.clone();
+      if (event == EventType.BUNDLED_PACKAGE_PROGRESS) {
+        for (OnBundledPackageEventListener listener : _listeners) {
+          listener.onBundledPackageProgress(packageFilename, completed, total);
+        }
+      } else if (event == EventType.BUNDLED_PACKAGES_COMPLETED) {
+        for (OnBundledPackageEventListener listener : _listeners) {
+          listener.onBundledPackagesCompleted(total);
+        }
+      }
+    }
+  }
 
   public interface OnKeyboardEventListener {
     void onKeyboardLoaded(KeyboardType keyboardType);
@@ -102,4 +122,10 @@ public final class KeyboardEventHandler {
 
     void onLexicalModelInstalled(List<Map<String, String>> lexicalModelsInstalled);
   }
+
+  public interface OnBundledPackageEventListener {
+    void onBundledPackageProgress(String packageFilename, int completed, int total); // packageFilename of the .kmp asset processed
+
+    void onBundledPackagesCompleted(int total);
+  }
 }
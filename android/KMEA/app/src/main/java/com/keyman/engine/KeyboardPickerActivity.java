@@ -375,31 +375,38 @@ public final class KeyboardPickerActivity extends BaseActivity {
 
   protected static boolean addKeyboard(Context context, Keyboard keyboardInfo) {
     boolean result = false;
-    List<Keyboard> keyboardsList = KeyboardController.getInstance().get();
 
     if (keyboardInfo != null) {
-      String languageID = keyboardInfo.getLanguageID();
-      if (CloudRepository.shared.getAssociatedLexicalModel(context, languageID) == null) {
-        // Only invalidate the lexical cache if there's no associated lexical model
-        CloudRepository.shared.invalidateLexicalModelCache(context, true);
+      addKeyboardToList(context, keyboardInfo);
+      result = KeyboardController.getInstance().save(context);
+      if (!result) {
+        KMLog.LogError(TAG, "addKeyboard failed to save");
       }
+    }
+    notifyKeyboardsUpdate(context);
 
-      keyboardInfo.setNewKeyboard(true);
-      KeyboardController.getInstance().add(keyboardInfo);
-      // Check if "other" keyboards of the same packageID and keyboardID also need to update version
-      // Don't use forEach because we might be updating entries
-      for (int i=0; i<KeyboardController.getInstance().get().size(); i++) {
-        Keyboard otherKeyboard = KeyboardController.getInstance().getKeyboardInfo(i);
-        if (otherKeyboard.getPackageID().equals(keyboardInfo.getPackageID())
-            && otherKeyboard.getKeyboardID().equals(keyboardInfo.getKeyboardID())
-            && !otherKeyboard.getLanguageID().equals(keyboardInfo.getLanguageID())) {
-          otherKeyboard.setVersion(keyboardInfo.getVersion());
-          KeyboardController.getInstance().set(i, otherKeyboard);
+    return result;
+  }
+
+  /**
+   * Add several keyboards with a single save of the installed keyboards list and a single
+   * update of the installed dataset.
+   * @param context
+   * @param keyboardInfoList List<Keyboard> keyboards to add
+   * @return boolean - true if the keyboards list was saved
+   */
+  protected static boolean addKeyboards(Context context, List<Keyboard> keyboardInfoList) {
+    boolean result = false;
+
+    if (keyboardInfoList != null && !keyboardInfoList.isEmpty()) {
+      for (Keyboard keyboardInfo : keyboardInfoList) {
+        if (keyboardInfo != null) {
+          addKeyboardToList(context, keyboardInfo);
         }
       }
       result = KeyboardController.getInstance().save(context);
       if (!result) {
-        KMLog.LogError(TAG, "addKeyboard failed to save");
+        KMLog.LogError(TAG, "addKeyboards failed to save");
       }
     }
     notifyKeyboardsUpdate(context);
@@ -407,9 +414,52 @@ public final class KeyboardPickerActivity extends BaseActivity {
     return result;
   }
 
+  private static void addKeyboardToList(Context context, Keyboard keyboardInfo) {
+    String languageID = keyboardInfo.getLanguageID();
+    if (CloudRepository.shared.getAssociatedLexicalModel(context, languageID) == null) {
+      // Only invalidate the lexical cache if there's no associated lexical model
+      CloudRepository.shared.invalidateLexicalModelCache(context);
+    }
+
+    keyboardInfo.setNewKeyboard(true);
+    KeyboardController.getInstance().add(keyboardInfo);
+    // Check if "other" keyboards of the same packageID and keyboardID also need to update version
+    // Don't use forEach because we might be updating entries
+    for (int i=0; i<KeyboardController.getInstance().get().size(); i++) {
+      Keyboard otherKeyboard = KeyboardController.getInstance().getKeyboardInfo(i);
+      if (otherKeyboard.getPackageID().equals(keyboardInfo.getPackageID())
+          && otherKeyboard.getKeyboardID().equals(keyboardInfo.getKeyboardID())
+          && !otherKeyboard.getLanguageID().equals(keyboardInfo.getLanguageID())) {
+        otherKeyboard.setVersion(keyboardInfo.getVersion());
+        KeyboardController.getInstance().set(i, otherKeyboard);
+      }
+    }
+  }
+
   public static boolean addLexicalModel(Context context, HashMap<String, String> lexicalModelInfo) {
     boolean result = false;
 
+    if (lexicalModelInfo != null) {
+      ArrayList<HashMap<String, String>> lexicalModelInfoList = new ArrayList<>();
+      lexicalModelInfoList.add(lexicalModelInfo);
+      result = addLexicalModels(context, lexicalModelInfoList);
+    } else {
+      notifyLexicalModelsUpdate(context);
+    }
+
+    return result;
+  }
+
+  /**
+   * Add several lexical models with a single save of the installed lexical models list and a
+   * single update of the installed dataset.
+   * @param context
+   * @param lexicalModelInfoList List of lexical model info to add
+   * @return boolean - true if the lexical models list was saved
+   */
+  public static boolean addLexicalModels(Context context, List<HashMap<String, String>> lexicalModelInfoList) {
+    boolean result = false;
+
     if (lexicalModelsList == null) {
       // First, try loading our existing (file-backed) model list.
       lexicalModelsList = getLexicalModelsList(context);
@@ -419,29 +469,42 @@ public final class KeyboardPickerActivity extends BaseActivity {
       }
     }
 
-    if (lexicalModelInfo != null) {
-      String pkgID = lexicalModelInfo.get(KMManager.KMKey_PackageID);
-      String modelID = lexicalModelInfo.get(KMManager.KMKey_LexicalModelID);
-      String langID = lexicalModelInfo.get(KMManager.KMKey_LanguageID);
-
-      if (pkgID != null && modelID != null && langID != null) {
-        String lmKey = KMString.format("%s_%s_%s", pkgID, langID, modelID);
-        if (lmKey.length() >= 5) {
-          int x = getLexicalModelIndex(context, lmKey);
-          if (x >= 0) {
-            lexicalModelsList.set(x, lexicalModelInfo);
-            result = saveList(context, KMManager.KMFilename_LexicalModelsList);
-          } else {
-            lexicalModelsList.add(lexicalModelInfo);
-            result = saveList(context, KMManager.KMFilename_LexicalModelsList);
-            if (!result) {
-              lexicalModelsList.remove(lexicalModelsList.size() - 1);
+    if (lexicalModelInfoList != null) {
+      int addedCount = 0;
+      boolean modified = false;
+      for (HashMap<String, String> lexicalModelInfo : lexicalModelInfoList) {
+        if (lexicalModelInfo == null) {
+          continue;
+        }
+        String pkgID = lexicalModelInfo.get(KMManager.KMKey_PackageID);
+        String modelID = lexicalModelInfo.get(KMManager.KMKey_LexicalModelID);
+        String langID = lexicalModelInfo.get(KMManager.KMKey_LanguageID);
+
+        if (pkgID != null && modelID != null && langID != null) {
+          String lmKey = KMString.format("%s_%s_%s", pkgID, langID, modelID);
+          if (lmKey.length() >= 5) {
+            int x = getLexicalModelIndex(context, lmKey);
+            if (x >= 0) {
+              lexicalModelsList.set(x, lexicalModelInfo);
+            } else {
+              lexicalModelsList.add(lexicalModelInfo);
+              addedCount++;
             }
+            modified = true;
           }
+        }
+      }
 
-          // Invalidate cache to rebuild the list (don't delete cache file since we just updated it)
-          CloudRepository.shared.invalidateLexicalModelCache(context, false);
+      if (modified) {
+        result = saveList(context, KMManager.KMFilename_LexicalModelsList);
+        if (!result) {
+          for (int i = 0; i < addedCount; i++) {
+            lexicalModelsList.remove(lexicalModelsList.size() - 1);
+          }
         }
+
+        // Invalidate cache to rebuild the list
+        CloudRepository.shared.invalidateLexicalModelCache(context);
       }
     }
 
@@ -666,18 +729,17 @@ public final class KeyboardPickerActivity extends BaseActivity {
   // for 12.0 before a more complete refactor of this class is done.
   protected static void notifyKeyboardsUpdate(Context context) {
     Dataset storage = getInstalledDataset(context);
-    storage.keyboards.setNotifyOnChange(false);
-    storage.keyboards.clear();
 
+    // Only the differences are applied, so linked adapters update incrementally.
     List<Keyboard> kbdList = KeyboardController.getInstance().get();
-    storage.keyboards.addAll(kbdList);
-    storage.keyboards.notifyDataSetChanged();
+    if(!storage.keyboards.replaceAll(kbdList)) {
+      // Refresh views of keyboards whose properties changed in place.
+      storage.keyboards.notifyDataSetChanged();
+    }
   }
 
   protected static void notifyLexicalModelsUpdate(Context context) {
     Dataset storage = getInstalledDataset(context);
-    storage.lexicalModels.setNotifyOnChange(false);
-    storage.lexicalModels.clear();
 
     List<HashMap<String, String>> mapList = getLexicalModelsList(context);
     List<LexicalModel> lexList = new ArrayList<>(mapList.size());
@@ -693,8 +755,9 @@ public final class KeyboardPickerActivity extends BaseActivity {
         MapCompat.getOrDefault(lmMap, KMManager.KMKey_KMPLink, ""));
       lexList.add(m);
     }
-    storage.lexicalModels.addAll(lexList);
-    storage.lexicalModels.notifyDataSetChanged();
+    if(!storage.lexicalModels.replaceAll(lexList)) {
+      storage.lexicalModels.notifyDataSetChanged();
+    }
   }
 
   protected static List<Keyboard> getKeyboardsList(Context context) {
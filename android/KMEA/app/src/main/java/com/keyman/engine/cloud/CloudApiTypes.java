@@ -3,6 +3,7 @@ package com.keyman.engine.cloud;
 import android.app.DownloadManager;
 import android.content.Context;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -10,11 +11,14 @@ import androidx.annotation.NonNull;
 import com.keyman.engine.BaseActivity;
 import com.keyman.engine.R;
 import com.keyman.engine.util.DownloadFileUtils;
+import com.keyman.engine.util.KMLog;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.HashMap;
@@ -22,6 +26,8 @@ import java.util.LinkedList;
 import java.util.List;
 
 public class CloudApiTypes {
+  private static final String TAG = "CloudApiTypes";
+
   public static class CloudApiReturns {
 
     public final ApiTarget target;
@@ -119,14 +125,38 @@ public class CloudApiTypes {
   public static class SingleCloudDownload
   {
     private final DownloadManager.Request request;
-    private boolean downloadFinished =false;
+    private volatile boolean downloadFinished =false;
     private long downloadId;
     private CloudApiParam cloudParams;
 
+    // Result of a JSON API call fetched in-process instead of by DownloadManager
+    private CloudApiReturns inMemoryResult;
+
     public SingleCloudDownload(DownloadManager.Request aRequest)
     {
       request = aRequest;
     }
+
+    /**
+     * @return boolean - true if this download is fetched in-process. There is no DownloadManager
+     * request or downloaded file, and the result is available from getInMemoryResult()
+     */
+    public boolean isInMemory() {
+      return request == null;
+    }
+
+    /**
+     * @return CloudApiReturns - the parsed result of an in-process download, or null if it failed
+     */
+    public CloudApiReturns getInMemoryResult() {
+      return inMemoryResult;
+    }
+
+    public SingleCloudDownload setInMemoryResult(CloudApiReturns aResult) {
+      this.inMemoryResult = aResult;
+      return this;
+    }
+
     public SingleCloudDownload setDownloadId(long downloadId) {
       this.downloadId = downloadId;
       return this;
@@ -145,6 +175,10 @@ public class CloudApiTypes {
       return downloadId;
     }
 
+    public boolean isFinished() {
+      return downloadFinished;
+    }
+
     /**
      * Cache a file from DownloadManager and return the file handle
      * @param context
@@ -169,6 +203,34 @@ public class CloudApiTypes {
       return cachedFile;
     }
 
+    /**
+     * Open the file downloaded by DownloadManager as a stream, without copying it into cache.
+     * The caller is responsible for closing the stream.
+     * @param context
+     * @return InputStream - the downloaded file contents, or null if unavailable
+     */
+    public InputStream openDestinationStream(Context context) {
+      InputStream inputStream = null;
+      DownloadManager downloadManager = (DownloadManager) context.getSystemService(Context.DOWNLOAD_SERVICE);
+      try {
+        ParcelFileDescriptor fileDescriptor = downloadManager.openDownloadedFile(downloadId);
+        if (fileDescriptor.getStatSize() != 0) {
+          inputStream = new ParcelFileDescriptor.AutoCloseInputStream(fileDescriptor);
+        } else {
+          fileDescriptor.close();
+        }
+      } catch (IOException e) {
+        KMLog.LogException(TAG, "Unable to open download " + downloadId, e);
+      }
+
+      if (inputStream == null) {
+        // failed to retrieve downloaded file
+        BaseActivity.makeToast(context, R.string.failed_to_retrieve_file, Toast.LENGTH_LONG);
+      }
+
+      return inputStream;
+    }
+
     public CloudApiParam getCloudParams() {
       return cloudParams;
     }
@@ -186,7 +248,8 @@ public class CloudApiTypes {
 
     private ICloudDownloadCallback<ModelType,ResultType> callback;
 
-    private boolean resultsReady = false;
+    private volatile boolean resultsReady = false;
+    private volatile boolean cancelled = false;
 
     //TODO: maybe implement a max lifetime for downloads
     //private long startingTime = System.currentTimeMillis();
@@ -228,6 +291,18 @@ public class CloudApiTypes {
       this.resultsReady = true;
     }
 
+    public boolean isResultsReady() {
+      return resultsReady;
+    }
+
+    void setCancelled() {
+      this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
     public String getDownloadIdentifier() {
       return downloadIdentifier;
     }
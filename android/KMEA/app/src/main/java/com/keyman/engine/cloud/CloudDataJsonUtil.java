@@ -14,7 +14,11 @@ import com.keyman.engine.cloud.CloudApiTypes;
 import com.keyman.engine.data.Keyboard;
 import com.keyman.engine.data.KeyboardController;
 import com.keyman.engine.data.LexicalModel;
+import com.keyman.engine.util.Connection;
+import com.keyman.engine.util.DownloadClient;
 import com.keyman.engine.util.FileUtils;
+import com.keyman.engine.util.HttpResponseCache;
+import com.keyman.engine.util.HttpValidators;
 import com.keyman.engine.util.KMLog;
 import com.keyman.engine.util.MapCompat;
 
@@ -22,6 +26,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.BufferedReader;
 import java.io.FileInputStream;
@@ -30,10 +35,12 @@ import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 
 public class CloudDataJsonUtil {
 
@@ -42,6 +49,7 @@ public class CloudDataJsonUtil {
   // Deprecated
   public static final String JSON_Keyboards_Cache_Filename = "jsonKeyboardsCache.dat";
 
+  // Deprecated. The lexical model queries are cached by HttpResponseCache
   public static final String JSON_Lexical_Models_Cache_Filename = "jsonLexicalModelsCache.dat";
   public static final String JSON_Resources_Cache_Filename = "jsonResourcesCache.json";
 
@@ -52,6 +60,26 @@ public class CloudDataJsonUtil {
   private static final String CDKey_Version = "version";
   private static final String CDKey_Error = "error";
 
+  // Status of a conditional fetch
+  public static final int FETCH_FAILED = -1;
+  public static final int FETCH_NOT_MODIFIED = 0;
+  public static final int FETCH_MODIFIED = 1;
+
+  /**
+   * Result of a conditional fetch
+   */
+  public static class ConditionalFetch {
+    public final int status;
+    public final JSONObject jsonObject;
+    public final HttpValidators validators;
+
+    ConditionalFetch(int status, JSONObject jsonObject, HttpValidators validators) {
+      this.status = status;
+      this.jsonObject = jsonObject;
+      this.validators = validators;
+    }
+  }
+
   private CloudDataJsonUtil()
   {
     //no instances
@@ -132,7 +160,9 @@ public class CloudDataJsonUtil {
   }
 
   /**
-   * Process the "keyboards" JSON Object to determine keyboard updates
+   * Process the "keyboards" JSON Object to determine keyboard updates.
+   * Every entry of the response is checked, not just the entries that changed since the
+   * previous response, so updates that are still pending are reported again.
    * @param aContext Context
    * @param pkgData JSONObject from the package-version API
    * @param updateBundles - List of keyboard bundle updates
@@ -142,20 +172,38 @@ public class CloudDataJsonUtil {
     // Parse for the keyboard package updates
     if (pkgData.has(CDKey_Keyboards)) {
       try {
+        // Snapshot of the installed keyboards by ID, so each cloud entry is only compared
+        // with the installed keyboards it can update
+        HashMap<String, List<Keyboard>> installedKeyboards = new HashMap<>();
+        for (Keyboard kbd : new ArrayList<>(KeyboardController.getInstance().get())) {
+          if (kbd.getKeyboardID() == null) {
+            continue;
+          }
+          String id = kbd.getKeyboardID().toLowerCase(Locale.ROOT);
+          List<Keyboard> matches = installedKeyboards.get(id);
+          if (matches == null) {
+            matches = new ArrayList<>(1);
+            installedKeyboards.put(id, matches);
+          }
+          matches.add(kbd);
+        }
+
         JSONObject cloudKeyboardPackages = pkgData.getJSONObject(CDKey_Keyboards);
         Iterator<String> keyboardIDs = cloudKeyboardPackages.keys();
         while (keyboardIDs.hasNext()) {
           String keyboardID = keyboardIDs.next();
+          List<Keyboard> matches = installedKeyboards.get(keyboardID.toLowerCase(Locale.ROOT));
+          if (matches == null) {
+            continue;
+          }
           JSONObject cloudKeyboardObj = cloudKeyboardPackages.getJSONObject(keyboardID);
           if (!cloudKeyboardObj.has(CDKey_Error)) {
             String cloudVersion = cloudKeyboardObj.getString(CDKey_Version);
             String cloudKMP = cloudKeyboardObj.getString(CDKey_KMP);
             // Valid keyboard package exists. See if keyboard list needs to be updated
-            for (int i = 0; i < KeyboardController.getInstance().get().size(); i++) {
-              Keyboard kbd = KeyboardController.getInstance().getKeyboardInfo(i);
+            for (Keyboard kbd : matches) {
               String version = kbd.getVersion();
-              if (keyboardID.equalsIgnoreCase(kbd.getKeyboardID()) &&
-                  FileUtils.compareVersions(cloudVersion, version) == FileUtils.VERSION_GREATER) {
+              if (FileUtils.compareVersions(cloudVersion, version) == FileUtils.VERSION_GREATER) {
                 // Cloud catalog has newer KMP version available
                 String updateKMP = kbd.getUpdateKMP();
                 if (updateKMP != null) {
@@ -187,31 +235,57 @@ public class CloudDataJsonUtil {
     }
   }
 
+  /**
+   * Process the "models" JSON Object to determine lexical model updates.
+   * Every entry of the response is checked, as for processKeyboardPackageUpdateJSON.
+   * @param aContext Context
+   * @param pkgData JSONObject from the package-version API
+   * @param updateBundles - List of lexical model bundle updates
+   */
   public static void processLexicalModelPackageUpdateJSON(Context aContext, JSONObject pkgData, List<Bundle> updateBundles) {
-    boolean saveModelsList = false;
+    List<HashMap<String, String>> updatedModels = new ArrayList<>();
     // Parse for lexical model package updates
     if (pkgData.has(CDKey_Models)) {
       try {
+        // Index of the installed lexical models by ID, so each cloud entry is only compared
+        // with the installed lexical models it can update
+        HashMap<String, List<HashMap<String, String>>> installedModels = new HashMap<>();
+        List<HashMap<String, String>> lexicalModelsList = KMManager.getLexicalModelsList(aContext);
+        if (lexicalModelsList != null) {
+          for (HashMap<String, String> lmInfo : lexicalModelsList) {
+            if (lmInfo == null || lmInfo.get(KMManager.KMKey_LexicalModelID) == null) {
+              continue;
+            }
+            String id = lmInfo.get(KMManager.KMKey_LexicalModelID).toLowerCase(Locale.ROOT);
+            List<HashMap<String, String>> matches = installedModels.get(id);
+            if (matches == null) {
+              matches = new ArrayList<>(1);
+              installedModels.put(id, matches);
+            }
+            matches.add(lmInfo);
+          }
+        }
+
         JSONObject cloudModelPackages = pkgData.getJSONObject(CDKey_Models);
         Iterator<String> lexicalModelIDs = cloudModelPackages.keys();
         while (lexicalModelIDs.hasNext()) {
           String lexicalModelID = lexicalModelIDs.next();
+          List<HashMap<String, String>> matches = installedModels.get(lexicalModelID.toLowerCase(Locale.ROOT));
+          if (matches == null) {
+            continue;
+          }
           JSONObject cloudModelObj = cloudModelPackages.getJSONObject(lexicalModelID);
           if (!cloudModelObj.has(CDKey_Error)) {
             String cloudVersion = cloudModelObj.getString(CDKey_Version);
             String cloudKMP = cloudModelObj.getString(CDKey_KMP);
             // Valid lexical model package exists. See if lexical model list needs to be updated
-            // Valid keyboard package exists. See if keyboard list needs to be updated
-            int index = KeyboardPickerActivity.getLexicalModelIndex(aContext, lexicalModelID);
-            if (index != -1) {
-              HashMap<String, String> lmInfo = KeyboardPickerActivity.getLexicalModelInfo(aContext, index);
+            for (HashMap<String, String> lmInfo : matches) {
               String version = lmInfo.get(KMManager.KMKey_Version);
-              if (lexicalModelID.equalsIgnoreCase(lmInfo.get(KMManager.KMKey_LexicalModelID)) &&
-                  (FileUtils.compareVersions(cloudVersion, version) == FileUtils.VERSION_GREATER) &&
+              if ((FileUtils.compareVersions(cloudVersion, version) == FileUtils.VERSION_GREATER) &&
                   (!MapCompat.getOrDefault(lmInfo, KMManager.KMKey_KMPLink, "").equalsIgnoreCase(cloudKMP))) {
-                // Update keyboard with the latest KMP link
+                // Update lexical model with the latest KMP link
                 lmInfo.put(KMManager.KMKey_KMPLink, cloudKMP);
-                KeyboardPickerActivity.addLexicalModel(aContext, lmInfo);
+                updatedModels.add(lmInfo);
 
                 // Update bundle list
                 LexicalModel lm = new LexicalModel(
@@ -225,8 +299,6 @@ public class CloudDataJsonUtil {
                   lmInfo.get(KMManager.KMKey_KMPLink));
                 Bundle bundle = new Bundle(lm.buildDownloadBundle());
                 updateBundles.add(bundle);
-
-                saveModelsList = true;
               }
             }
           }
@@ -235,6 +307,10 @@ public class CloudDataJsonUtil {
         KMLog.LogException(TAG, "processPackageUpdateJSON Error processing models: ", e);
       }
     }
+
+    if (!updatedModels.isEmpty()) {
+      KeyboardPickerActivity.addLexicalModels(aContext, updatedModels);
+    }
   }
 
   public static JSONArray getCachedJSONArray(File file) {
@@ -300,9 +376,15 @@ public class CloudDataJsonUtil {
     return new File(context.getCacheDir(), jsonCacheFilename);
   }
 
-  public static File getLexicalModelCacheFile(Context context) {
-    final String jsonLexicalCacheFilename = JSON_Lexical_Models_Cache_Filename;
-    return new File(context.getCacheDir(), jsonLexicalCacheFilename);
+  /**
+   * Delete the lexical model cache file of earlier Keyman versions
+   * @param context Context
+   */
+  public static void deleteLegacyLexicalModelCache(Context context) {
+    File file = new File(context.getCacheDir(), JSON_Lexical_Models_Cache_Filename);
+    if (file.exists()) {
+      file.delete();
+    }
   }
 
   public static File getResourcesCacheFile(Context context) {
@@ -310,6 +392,134 @@ public class CloudDataJsonUtil {
     return new File(context.getCacheDir(), jsonCacheFilename);
   }
 
+  /**
+   * Download a JSON object, revalidating the copy in cacheFile with the stored HTTP validators.
+   * When the server reports the cached copy is current, nothing is transferred and the
+   * timestamp of cacheFile is refreshed. The caller saves the new body and validators on FETCH_MODIFIED.
+   * Performs network I/O, so don't call from the main thread.
+   * @param urlStr String URL of the endpoint
+   * @param cacheFile File of the cached response
+   * @return ConditionalFetch
+   */
+  public static ConditionalFetch fetchJSONObjectIfModified(String urlStr, File cacheFile) {
+    HttpValidators validators = HttpValidators.load(cacheFile);
+    Connection connection = DownloadClient.getDefault().newConnection();
+    try {
+      if (connection.initialize(urlStr, validators)) {
+        JSONParser jsonParser = new JSONParser();
+        JSONObject json = jsonParser.getJSONObjectFromConnection(connection, JSONObject.class);
+        if (json != null) {
+          return new ConditionalFetch(FETCH_MODIFIED, json, connection.getResponseValidators());
+        }
+      } else if (connection.isNotModified()) {
+        cacheFile.setLastModified(System.currentTimeMillis());
+        return new ConditionalFetch(FETCH_NOT_MODIFIED, null, validators);
+      }
+    } finally {
+      connection.close();
+    }
+    return new ConditionalFetch(FETCH_FAILED, null, null);
+  }
+
+  /**
+   * Download and parse a JSON API call in memory.
+   * Performs network I/O, so don't call from the main thread.
+   * @param aParam the api parameter. Its type determines whether a JSONArray or JSONObject is expected
+   * @return CloudApiReturns, or null if the call failed
+   */
+  public static CloudApiTypes.CloudApiReturns fetchJSON(CloudApiTypes.CloudApiParam aParam) {
+    if (aParam.type == CloudApiTypes.JSONType.Array) {
+      JSONArray dataArray = fetchCachedJSON(aParam.url, JSONArray.class);
+      return (dataArray != null) ? new CloudApiTypes.CloudApiReturns(aParam.target, dataArray) : null;
+    }
+    JSONObject dataObject = fetchCachedJSON(aParam.url, JSONObject.class);
+    return (dataObject != null) ? new CloudApiTypes.CloudApiReturns(aParam.target, dataObject) : null;
+  }
+
+  /**
+   * Download a JSONObject or JSONArray through the shared HttpResponseCache, so a fresh cached
+   * response skips the network and a stale one is revalidated.
+   * Performs network I/O, so don't call from the main thread.
+   * @param urlStr String URL of the endpoint
+   * @param type Class<T> - JSONObject.class or JSONArray.class
+   * @return JSONObject or JSONArray that matches type, or null if the call failed
+   */
+  private static <T> T fetchCachedJSON(String urlStr, Class<T> type) {
+    JSONParser jsonParser = new JSONParser();
+    HttpResponseCache cache = HttpResponseCache.getDefault();
+    if (cache == null) {
+      return jsonParser.getJSONObjectFromUrl(urlStr, type);
+    }
+
+    byte[] body = cache.fetch(urlStr);
+    if (body == null) {
+      return null;
+    }
+    T json = jsonParser.getJSONObjectFromReader(new BufferedReader(new InputStreamReader(
+      new ByteArrayInputStream(body), Charset.forName("UTF-8"))), type);
+    if (json == null) {
+      // Don't keep serving a response that can't be parsed
+      cache.remove(urlStr);
+    }
+    return json;
+  }
+
+  /**
+   * Download several package-version queries and combine their responses.
+   * Performs network I/O, so don't call from the main thread.
+   * @param params CloudApiParam[] package-version queries
+   * @return ConditionalFetch - FETCH_MODIFIED with the combined response, or FETCH_FAILED
+   * if any query failed
+   */
+  public static ConditionalFetch fetchJSONObjects(CloudApiTypes.CloudApiParam[] params) {
+    List<JSONObject> responses = new ArrayList<>(params.length);
+    for (CloudApiTypes.CloudApiParam param : params) {
+      JSONObject json = fetchCachedJSON(param.url, JSONObject.class);
+      if (json == null) {
+        return new ConditionalFetch(FETCH_FAILED, null, null);
+      }
+      responses.add(json);
+    }
+    return new ConditionalFetch(FETCH_MODIFIED, mergePackageVersionJSON(responses), null);
+  }
+
+  /**
+   * Combine the "keyboards" and "models" of several package-version responses
+   * @param responses List<JSONObject> from the package-version API
+   * @return JSONObject - the combined response, or null if there are no responses
+   */
+  public static JSONObject mergePackageVersionJSON(List<JSONObject> responses) {
+    if (responses.isEmpty()) {
+      return null;
+    } else if (responses.size() == 1) {
+      return responses.get(0);
+    }
+
+    JSONObject merged = new JSONObject();
+    try {
+      for (JSONObject response : responses) {
+        for (String key : new String[] { CDKey_Keyboards, CDKey_Models }) {
+          JSONObject entries = response.optJSONObject(key);
+          if (entries == null) {
+            continue;
+          }
+          if (!merged.has(key)) {
+            merged.put(key, new JSONObject());
+          }
+          JSONObject mergedEntries = merged.getJSONObject(key);
+          Iterator<String> ids = entries.keys();
+          while (ids.hasNext()) {
+            String id = ids.next();
+            mergedEntries.put(id, entries.get(id));
+          }
+        }
+      }
+    } catch (JSONException e) {
+      KMLog.LogException(TAG, "mergePackageVersionJSON Error: ", e);
+    }
+    return merged;
+  }
+
   /**
    * retrieve a json object from a downloaded file.
    * @param aDownload the download
@@ -318,6 +528,11 @@ public class CloudDataJsonUtil {
   public static CloudApiTypes.CloudApiReturns retrieveJsonFromDownload(
     Context context, CloudApiTypes.SingleCloudDownload aDownload)
   {
+      if (aDownload.isInMemory()) {
+        // Already fetched and parsed. Null if offline.
+        return aDownload.getInMemoryResult();
+      }
+
       JSONParser jsonParser = new JSONParser();
       JSONArray dataArray = null;
       JSONObject dataObject = null;
@@ -7,18 +7,27 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.PackageManager;
+import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.widget.Toast;
 
 import com.keyman.engine.R;
+import com.keyman.engine.util.DownloadClient;
 import com.keyman.engine.util.KMLog;
 import com.keyman.engine.util.DownloadFileUtils;
 
 import java.io.File;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Central manager for cloud downloads.
@@ -54,8 +63,15 @@ public class CloudDownloadMgr{
    */
   boolean isInitialized = false;
 
-  private HashMap<Long,String> internalDownloadIdToDownloadIdentifier = new HashMap<>();
-  private HashMap<String, CloudApiTypes.CloudDownloadSet> downloadSetByDownloadIdentifier = new HashMap<>();
+  // Concurrent maps so lookups don't need a lock. Each download set is locked on its own while
+  // downloads are added or completed
+  private final ConcurrentHashMap<Long,String> internalDownloadIdToDownloadIdentifier = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, CloudApiTypes.CloudDownloadSet> downloadSetByDownloadIdentifier = new ConcurrentHashMap<>();
+
+  // Completed download sets are extracted (parsed, installed) here, one at a time, off the main thread
+  private final ExecutorService callbackExecutor = Executors.newSingleThreadExecutor();
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final AtomicLong nextInMemoryDownloadId = new AtomicLong(-1);
 
   /**
    * Append downloadreceiver to the main context.
@@ -138,17 +154,15 @@ public class CloudDownloadMgr{
    * clean up a download.
    * @param anIdenitifer the identifier
    */
-  private void removeDownload(String anIdenitifer)
+  private CloudApiTypes.CloudDownloadSet removeDownload(String anIdenitifer)
   {
-    synchronized (downloadSetByDownloadIdentifier)
-    {
-      CloudApiTypes.CloudDownloadSet _downloadset = downloadSetByDownloadIdentifier.remove(anIdenitifer);
-      if (_downloadset == null)
-        return;
-      List<CloudApiTypes.SingleCloudDownload> _children = _downloadset.getSingleDownloads();
-      for (CloudApiTypes.SingleCloudDownload _d : _children)
-        internalDownloadIdToDownloadIdentifier.remove(_d.getDownloadId());
-    }
+    CloudApiTypes.CloudDownloadSet _downloadset = downloadSetByDownloadIdentifier.remove(anIdenitifer);
+    if (_downloadset == null)
+      return null;
+    List<CloudApiTypes.SingleCloudDownload> _children = _downloadset.getSingleDownloads();
+    for (CloudApiTypes.SingleCloudDownload _d : _children)
+      internalDownloadIdToDownloadIdentifier.remove(_d.getDownloadId());
+    return _downloadset;
   }
 
   /**
@@ -159,20 +173,24 @@ public class CloudDownloadMgr{
    */
   private void downloadCompleted(Context aContext,long anInternalDownloadId)
   {
-    synchronized (downloadSetByDownloadIdentifier) {
+    CloudApiTypes.CloudDownloadSet _parentSet = getDownloadSetForInternalDownloadId(anInternalDownloadId);
+    if(_parentSet==null) {
+      // Download ID didn't match, so nothing to cleanup
+      return;
+    }
 
-      CloudApiTypes.CloudDownloadSet _parentSet = getDownloadSetForInternalDownloadId(anInternalDownloadId);
-      if(_parentSet==null) {
-        // Download ID didn't match, so nothing to cleanup
+    synchronized (_parentSet) {
+      if (_parentSet.isResultsReady()) {
+        // Duplicate completion
         return;
       }
       _parentSet.setDone(anInternalDownloadId);
-      if(!_parentSet.hasOpenDownloads())
-      {
-        processDownloadSet(aContext, _parentSet);
-        removeDownload(_parentSet.getDownloadIdentifier());
+      if(_parentSet.hasOpenDownloads()) {
+        return;
       }
+      _parentSet.setResultsReady();
     }
+    processDownloadSet(aContext, _parentSet);
   }
 
   /**
@@ -182,16 +200,48 @@ public class CloudDownloadMgr{
    * @param <ModelType> the target models type
    * @param <ResultType> the cloud requests result type
    */
-  private <ModelType,ResultType> void processDownloadSet(Context aContext, CloudApiTypes.CloudDownloadSet<ModelType,ResultType> aDownloadSet)
+  private <ModelType,ResultType> void processDownloadSet(final Context aContext, final CloudApiTypes.CloudDownloadSet<ModelType,ResultType> aDownloadSet)
   {
-    aDownloadSet.setResultsReady();
-
-    ICloudDownloadCallback<ModelType,ResultType> _callback = aDownloadSet.getCallback();
-
-    ResultType jsonTuple = _callback
-      .extractCloudResultFromDownloadSet(aContext, aDownloadSet);
+    final ICloudDownloadCallback<ModelType,ResultType> _callback = aDownloadSet.getCallback();
+
+    // Extract in the background so a slow parse or install doesn't block other downloads
+    // or the UI. The results are applied on the main thread, and the set stays registered
+    // until then so it isn't started again meanwhile.
+    callbackExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        ResultType _result = null;
+        try {
+          // A cancelled set is never extracted (installed)
+          if (!aDownloadSet.isCancelled()) {
+            _result = _callback.extractCloudResultFromDownloadSet(aContext, aDownloadSet);
+          }
+        } catch (Exception e) {
+          KMLog.LogException(TAG, "Unable to process download " + aDownloadSet.getDownloadIdentifier(), e);
+        }
+        final ResultType jsonTuple = _result;
+        mainHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              if (jsonTuple != null && !aDownloadSet.isCancelled() &&
+                  downloadSetByDownloadIdentifier.get(aDownloadSet.getDownloadIdentifier()) == aDownloadSet) {
+                _callback.applyCloudDownloadToModel(aContext, aDownloadSet.getTargetModel(), jsonTuple);
+              }
+            } finally {
+              downloadSetByDownloadIdentifier.remove(aDownloadSet.getDownloadIdentifier(), aDownloadSet);
+              removeInternalDownloadIds(aDownloadSet);
+            }
+          }
+        });
+      }
+    });
+  }
 
-    _callback.applyCloudDownloadToModel(aContext,aDownloadSet.getTargetModel(),jsonTuple);
+  private void removeInternalDownloadIds(CloudApiTypes.CloudDownloadSet aDownloadSet) {
+    List<CloudApiTypes.SingleCloudDownload> _children = aDownloadSet.getSingleDownloads();
+    for (CloudApiTypes.SingleCloudDownload _d : _children)
+      internalDownloadIdToDownloadIdentifier.remove(_d.getDownloadId());
   }
 
   /**
@@ -204,6 +254,103 @@ public class CloudDownloadMgr{
     return downloadSetByDownloadIdentifier.containsKey(anDownloadIdentifier);
   }
 
+  /**
+   * Get the progress of a download set
+   * @param aContext the context
+   * @param aDownloadIdentifier the download identifier
+   * @return int - percentage of bytes downloaded (0-100) over all downloads in the set,
+   * or -1 if the download isn't running or its size isn't known yet
+   */
+  public int getDownloadProgress(Context aContext, String aDownloadIdentifier)
+  {
+    CloudApiTypes.CloudDownloadSet<?,?> _downloadSet = downloadSetByDownloadIdentifier.get(aDownloadIdentifier);
+    if (_downloadSet == null) {
+      return -1;
+    }
+
+    List<Long> _ids = new ArrayList<>();
+    int _finishedInMemory = 0;
+    int _inMemory = 0;
+    for (CloudApiTypes.SingleCloudDownload _d : _downloadSet.getSingleDownloads()) {
+      if (_d.isInMemory()) {
+        _inMemory++;
+        if (_d.isFinished()) {
+          _finishedInMemory++;
+        }
+      } else {
+        _ids.add(_d.getDownloadId());
+      }
+    }
+    if (_ids.isEmpty()) {
+      // In-process JSON calls don't report bytes, so count finished calls
+      return (_inMemory > 0) ? (100 * _finishedInMemory / _inMemory) : -1;
+    }
+
+    DownloadManager downloadManager = DownloadFileUtils.getDownloadManager(aContext);
+    if (downloadManager == null) {
+      return -1;
+    }
+    long[] _idArray = new long[_ids.size()];
+    for (int i = 0; i < _idArray.length; i++) {
+      _idArray[i] = _ids.get(i);
+    }
+
+    long _downloaded = 0;
+    long _total = 0;
+    Cursor cursor = downloadManager.query(new DownloadManager.Query().setFilterById(_idArray));
+    if (cursor == null) {
+      return -1;
+    }
+    try {
+      int _downloadedIndex = cursor.getColumnIndex(DownloadManager.COLUMN_BYTES_DOWNLOADED_SO_FAR);
+      int _totalIndex = cursor.getColumnIndex(DownloadManager.COLUMN_TOTAL_SIZE_BYTES);
+      while (cursor.moveToNext()) {
+        long _size = cursor.getLong(_totalIndex);
+        if (_size <= 0) {
+          return -1;
+        }
+        _downloaded += cursor.getLong(_downloadedIndex);
+        _total += _size;
+      }
+    } finally {
+      cursor.close();
+    }
+    return (_total > 0) ? (int) (100 * _downloaded / _total) : -1;
+  }
+
+  /**
+   * Cancel a download set. Pending DownloadManager downloads are removed, and the set isn't
+   * extracted or applied unless its extraction had already started.
+   * @param aContext the context
+   * @param aDownloadIdentifier the download identifier
+   * @return boolean - true if a running download was cancelled
+   */
+  public boolean cancelDownload(Context aContext, String aDownloadIdentifier)
+  {
+    CloudApiTypes.CloudDownloadSet<?,?> _downloadSet = removeDownload(aDownloadIdentifier);
+    if (_downloadSet == null) {
+      return false;
+    }
+    _downloadSet.setCancelled();
+
+    List<Long> _ids = new ArrayList<>();
+    for (CloudApiTypes.SingleCloudDownload _d : _downloadSet.getSingleDownloads()) {
+      if (!_d.isInMemory()) {
+        _ids.add(_d.getDownloadId());
+      }
+    }
+    DownloadManager downloadManager = DownloadFileUtils.getDownloadManager(aContext);
+    if (downloadManager != null && !_ids.isEmpty()) {
+      long[] _idArray = new long[_ids.size()];
+      for (int i = 0; i < _idArray.length; i++) {
+        _idArray[i] = _ids.get(i);
+      }
+      downloadManager.remove(_idArray);
+    }
+    KMLog.LogBreadcrumb(TAG, "Cancelled download " + aDownloadIdentifier, false);
+    return true;
+  }
+
   /**
    * execute download in background.
    * @param aContext the context
@@ -248,6 +395,11 @@ public class CloudDownloadMgr{
       KMLog.LogBreadcrumb("CloudDownloadMgr", "CloudDownloadMgr.executeAsDownload() called; already initialized", true);
     }
 
+    if (params != null && params.length > 0 && isInMemoryRequest(params)) {
+      executeInMemory(aContext, aDownloadIdentifier, aTargetModel, aCallback, params);
+      return;
+    }
+
     DownloadManager downloadManager = DownloadFileUtils.getDownloadManager(aContext);
     if(downloadManager == null) {
       // The callback object provided to us provides no way to directly signal a
@@ -258,20 +410,22 @@ public class CloudDownloadMgr{
       throw new DownloadManagerDisabledException();
     }
 
-    synchronized (downloadSetByDownloadIdentifier) {
-
-      if (alreadyDownloadingData(aDownloadIdentifier) || params == null) {
-        return;
-      }
+    if (alreadyDownloadingData(aDownloadIdentifier) || params == null) {
+      return;
+    }
 
-      aCallback.initializeContext(aContext);
+    aCallback.initializeContext(aContext);
 
-      CloudApiTypes.CloudDownloadSet<ModelType,ResultType> _downloadSet =
-        new CloudApiTypes.CloudDownloadSet<ModelType,ResultType>(
-        aDownloadIdentifier,aTargetModel);
-      _downloadSet.setCallback(aCallback);
+    CloudApiTypes.CloudDownloadSet<ModelType,ResultType> _downloadSet =
+      new CloudApiTypes.CloudDownloadSet<ModelType,ResultType>(
+      aDownloadIdentifier,aTargetModel);
+    _downloadSet.setCallback(aCallback);
 
-      downloadSetByDownloadIdentifier.put(aDownloadIdentifier,_downloadSet);
+    // Hold the set's lock so no download can complete before they're all added
+    synchronized (_downloadSet) {
+      if (downloadSetByDownloadIdentifier.putIfAbsent(aDownloadIdentifier,_downloadSet) != null) {
+        return;
+      }
 
       for(int _i=0;_i<params.length;_i++)
       {
@@ -284,6 +438,79 @@ public class CloudDownloadMgr{
 
   }
 
+  /**
+   * Small JSON API calls (params with a JSON type) are fetched in-process instead of through
+   * DownloadManager. Package binaries still use DownloadManager.
+   * @param params the cloud api params for download
+   * @return true if all params are JSON API calls
+   */
+  private static boolean isInMemoryRequest(CloudApiTypes.CloudApiParam... params) {
+    for (CloudApiTypes.CloudApiParam _param : params) {
+      if (_param.type == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Fetch and parse JSON API calls in memory on a background thread. The download set completes
+   * on the main thread the same way as DownloadManager downloads, so callbacks are unchanged.
+   */
+  private <ModelType,ResultType> void executeInMemory(final Context aContext, final String aDownloadIdentifier,
+                                ModelType aTargetModel,
+                                ICloudDownloadCallback<ModelType,ResultType> aCallback,
+                                CloudApiTypes.CloudApiParam... params) {
+    final List<CloudApiTypes.SingleCloudDownload> _downloads = new ArrayList<>(params.length);
+    if (alreadyDownloadingData(aDownloadIdentifier)) {
+      return;
+    }
+
+    aCallback.initializeContext(aContext);
+
+    CloudApiTypes.CloudDownloadSet<ModelType,ResultType> _downloadSet =
+      new CloudApiTypes.CloudDownloadSet<ModelType,ResultType>(
+      aDownloadIdentifier,aTargetModel);
+    _downloadSet.setCallback(aCallback);
+
+    synchronized (_downloadSet) {
+      if (downloadSetByDownloadIdentifier.putIfAbsent(aDownloadIdentifier,_downloadSet) != null) {
+        return;
+      }
+
+      for (CloudApiTypes.CloudApiParam _param : params) {
+        // Negative ids never collide with DownloadManager ids
+        CloudApiTypes.SingleCloudDownload _download = new CloudApiTypes.SingleCloudDownload(null)
+          .setCloudParams(_param)
+          .setDownloadId(nextInMemoryDownloadId.getAndDecrement());
+        internalDownloadIdToDownloadIdentifier.put(_download.getDownloadId(),aDownloadIdentifier);
+        _downloadSet.addDownload(_download);
+        _downloads.add(_download);
+      }
+    }
+
+    final Context _appContext = aContext.getApplicationContext();
+    for (final CloudApiTypes.SingleCloudDownload _download : _downloads) {
+      DownloadClient.getDefault().submit(new Callable<Void>() {
+        @Override
+        public Void call() {
+          try {
+            _download.setInMemoryResult(CloudDataJsonUtil.fetchJSON(_download.getCloudParams()));
+          } finally {
+            // The Future holds any exception, so always complete the download set
+            mainHandler.post(new Runnable() {
+              @Override
+              public void run() {
+                downloadCompleted(_appContext, _download.getDownloadId());
+              }
+            });
+          }
+          return null;
+        }
+      });
+    }
+  }
+
   /**
    * create request from api param.
    * @param aParam the api parameter
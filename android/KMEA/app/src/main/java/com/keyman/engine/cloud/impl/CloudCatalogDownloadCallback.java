@@ -155,9 +155,8 @@ public class CloudCatalogDownloadCallback implements ICloudDownloadCallback<Data
     // The actual update check
     CloudDataJsonUtil.processKeyboardPackageUpdateJSON(context, jsonTuple.packagesJSON, updateBundles);
 
-    // Only add installed kmp keyboards
-    aDataSet.keyboards.clear();
-    aDataSet.keyboards.addAll(KeyboardController.getInstance().get());
+    // Only add installed kmp keyboards.  Applied as a diff so the list isn't emptied in between
+    aDataSet.keyboards.replaceAll(KeyboardController.getInstance().get());
 
     if (updateBundles.size() > 0 && !(DEBUG_SIMULATE_UPDATES && !executeCallbacks)) {
       // Time for updates!
@@ -192,6 +191,23 @@ public class CloudCatalogDownloadCallback implements ICloudDownloadCallback<Data
     aDataSet.notifyDataSetChanged();
   }
 
+  /**
+   * Apply results that are already in the cache, e.g. when the server reported the cached
+   * package-version response is still current. The cache is not rewritten.
+   * @param aContext the context
+   * @param aDataSet the dataset
+   * @param aCloudResult the cached results
+   */
+  public void applyCachedCloudDownloadToModel(Context aContext, Dataset aDataSet, CloudCatalogDownloadReturns aCloudResult)
+  {
+    ensureInitCloudReturn(aContext,aDataSet,aCloudResult);
+
+    processCloudReturns(aDataSet, aCloudResult,true);
+
+    CloudRepository.shared.updateFinished();
+    aDataSet.notifyDataSetChanged();
+  }
+
   @Override
   public CloudCatalogDownloadReturns extractCloudResultFromDownloadSet(
     Context aContext, CloudApiTypes.CloudDownloadSet<Dataset, CloudCatalogDownloadReturns> aDownload)
@@ -1,10 +1,12 @@
 package com.keyman.engine.cloud.impl;
 
 import com.keyman.engine.cloud.CloudApiTypes;
+import com.keyman.engine.cloud.CloudDataJsonUtil;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -14,20 +16,21 @@ public class CloudCatalogDownloadReturns {
   public JSONObject packagesJSON;
 
   // Used by the CloudCatalogDownloadTask, as it fits well with doInBackground's param structure.
+  // The package-version query may be split across several requests, so their results are combined.
   public CloudCatalogDownloadReturns(List<CloudApiTypes.CloudApiReturns> returns) {
-    JSONObject pkg = null;
+    List<JSONObject> pkgs = new ArrayList<>(1);
 
-    //TODO: Seems to be wrong because only the last result for each type will be processed
     for(CloudApiTypes.CloudApiReturns ret: returns) {
       switch(ret.target) {
         case PackageVersion:
-          pkg = ret.jsonObject;
+          if (ret.jsonObject != null) {
+            pkgs.add(ret.jsonObject);
+          }
           break;
       }
     }
 
-    // Errors are thrown if we try to do this assignment within the loop.
-    this.packagesJSON = pkg;
+    this.packagesJSON = CloudDataJsonUtil.mergePackageVersionJSON(pkgs);
   }
 
   public CloudCatalogDownloadReturns(JSONObject keyboardJSON, JSONArray lexicalModelJSON, JSONObject packagesJSON) {
@@ -12,17 +12,14 @@ import com.keyman.engine.KmpInstallMode;
 import com.keyman.engine.R;
 import com.keyman.engine.cloud.CloudApiTypes;
 import com.keyman.engine.cloud.ICloudDownloadCallback;
-import com.keyman.engine.packages.LexicalModelPackageProcessor;
+import com.keyman.engine.packages.PackageBatchInstaller;
 import com.keyman.engine.packages.PackageProcessor;
 import com.keyman.engine.util.FileUtils;
 import com.keyman.engine.util.KMLog;
 
-import org.json.JSONException;
-
 import java.io.File;
-import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -39,6 +36,12 @@ public class CloudKeyboardPackageDownloadCallback implements ICloudDownloadCallb
   private File cacheDir;
   private String languageID;
 
+  /**
+   * CloudApiParam property for the language ID of a keyboard package, so a single download set
+   * can install packages for several languages
+   */
+  public static final String PARAM_LANGUAGE_ID = "languageID";
+
   public void setLanguageID(String languageID) {
     this.languageID = languageID;
   }
@@ -54,59 +57,64 @@ public class CloudKeyboardPackageDownloadCallback implements ICloudDownloadCallb
   public CloudKeyboardDownloadReturns extractCloudResultFromDownloadSet(
     Context aContext, CloudApiTypes.CloudDownloadSet<Void, CloudKeyboardDownloadReturns> aDownload)
   {
-    PackageProcessor kbdKMPProcessor = new PackageProcessor(resourceRoot);
     List<Map<String, String>> installedKeyboards = null;
+    List<PackageBatchInstaller.Entry> entries = new ArrayList<>();
+    List<String> prefetchedLanguageIDs = new ArrayList<>();
 
     int _result = FileUtils.DOWNLOAD_SUCCESS;
     for(CloudApiTypes.SingleCloudDownload _d:aDownload.getSingleDownloads())
     {
+      if (_d.getCloudParams().target != CloudApiTypes.ApiTarget.KeyboardPackage) {
+        continue;
+      }
 
-      File destinationFile = _d.cacheAndOpenDestinationFile(aContext);
-      if (destinationFile != null && destinationFile.length() > 0)
+      InputStream destinationStream = _d.openDestinationStream(aContext);
+      if (destinationStream != null)
       {
-
-        try {
-          if (_d.getCloudParams().target == CloudApiTypes.ApiTarget.KeyboardPackage) {
-            installedKeyboards = new LinkedList<>();
-
-            // Parse url for the kmp filename
-            Uri uri = Uri.parse(_d.getCloudParams().url);
-            String packageID = uri.getLastPathSegment();
-            if (packageID == null || packageID.isEmpty()) {
-              KMLog.LogError(TAG, "Cloud URL " + _d.getCloudParams().url + " has null packageID");
-            }
-            String kmpFilename = String.format("%s%s", packageID, FileUtils.KEYMANPACKAGE);
-
-            // Extract the kmp.
-            File kmpFile = new File(cacheDir, kmpFilename);
-
-            FileUtils.copy(destinationFile, kmpFile);
-
-            String pkgTarget = kbdKMPProcessor.getPackageTarget(kmpFile);
-            if (pkgTarget.equals(PackageProcessor.PP_TARGET_KEYBOARDS)) {
-              File unzipPath = kbdKMPProcessor.unzipKMP(kmpFile);
-              ArrayList<String> languageList = new ArrayList<String>();
-              if (languageID != null && !languageID.isEmpty()) {
-                languageList.add(languageID);
-              }
-              installedKeyboards.addAll(kbdKMPProcessor.processKMP(kmpFile, unzipPath, PackageProcessor.PP_KEYBOARDS_KEY, languageList));
-
-              // Set "silent install" so cloud updates don't display welcome.htm
-              for(Map<String, String> kbdMap : installedKeyboards) {
-                kbdMap.put(KMManager.KMKey_KMPInstall_Mode, KmpInstallMode.Silent.toString());
-              }
-            }
-          }
+        // Parse url for the kmp filename
+        Uri uri = Uri.parse(_d.getCloudParams().url);
+        String packageID = uri.getLastPathSegment();
+        if (packageID == null || packageID.isEmpty()) {
+          KMLog.LogError(TAG, "Cloud URL " + _d.getCloudParams().url + " has null packageID");
         }
-        catch (IOException | JSONException e) {
-          KMLog.LogException(TAG, "", e);
+        String kmpFilename = String.format("%s%s", packageID, FileUtils.KEYMANPACKAGE);
+
+        // Batched downloads carry their own language ID
+        String packageLanguageID = _d.getCloudParams().getAdditionalProperty(PARAM_LANGUAGE_ID, String.class);
+        if (packageLanguageID == null) {
+          packageLanguageID = languageID;
         }
+
+        // Look up the language's dictionary while the package is extracted
+        CloudLexicalModelMetaDataDownloadCallback.prefetch(aContext, packageLanguageID);
+        prefetchedLanguageIDs.add(packageLanguageID);
+
+        // Extract the kmp straight from the download; kmpFile only names the package
+        entries.add(new PackageBatchInstaller.Entry(new File(cacheDir, kmpFilename),
+          destinationStream, packageLanguageID));
       }
       else
       {
         _result = FileUtils.DOWNLOAD_ERROR;
       }
     }
+
+    if (!entries.isEmpty()) {
+      PackageBatchInstaller installer = new PackageBatchInstaller(resourceRoot,
+        PackageProcessor.PP_TARGET_KEYBOARDS);
+      installedKeyboards = installer.install(entries);
+
+      // Set "silent install" so cloud updates don't display welcome.htm
+      for(Map<String, String> kbdMap : installedKeyboards) {
+        kbdMap.put(KMManager.KMKey_KMPInstall_Mode, KmpInstallMode.Silent.toString());
+        prefetchedLanguageIDs.remove(kbdMap.get(KMManager.KMKey_LanguageID));
+      }
+    }
+
+    // Don't keep the dictionaries of keyboards which failed to install
+    for (String prefetchedLanguageID : prefetchedLanguageIDs) {
+      CloudLexicalModelMetaDataDownloadCallback.discardPrefetch(prefetchedLanguageID);
+    }
     return new CloudKeyboardDownloadReturns(_result, installedKeyboards);
   }
 
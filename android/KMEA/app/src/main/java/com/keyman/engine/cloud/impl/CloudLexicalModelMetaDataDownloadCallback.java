@@ -5,14 +5,18 @@ package com.keyman.engine.cloud.impl;
 
 import android.content.Context;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.widget.Toast;
 
 import com.keyman.engine.BaseActivity;
+import com.keyman.engine.KMManager;
 import com.keyman.engine.R;
 import com.keyman.engine.cloud.CloudApiTypes;
 import com.keyman.engine.cloud.CloudDataJsonUtil;
 import com.keyman.engine.cloud.CloudDownloadMgr;
 import com.keyman.engine.cloud.ICloudDownloadCallback;
+import com.keyman.engine.data.CloudRepository;
 import com.keyman.engine.util.KMLog;
 
 import org.json.JSONArray;
@@ -20,10 +24,22 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Start the lexical model download when lexical model metadata is downloaded.
+ *
+ * A speculative lookup can be started with prefetch() while a keyboard package is still being
+ * installed. On an unmetered network the model download then starts right away, so the keyboard
+ * and its dictionary are ready together. Otherwise the model download is held until
+ * startPrefetchedDownload() is called once the keyboard is installed. A held download is dropped
+ * by discardPrefetch() if the keyboard fails to install, or after PREFETCH_EXPIRY_MS.
  */
 public class CloudLexicalModelMetaDataDownloadCallback implements ICloudDownloadCallback<Void,
   List<CloudLexicalModelMetaDataDownloadCallback.MetaDataResult>>
@@ -51,6 +67,52 @@ public class CloudLexicalModelMetaDataDownloadCallback implements ICloudDownload
    */
   public static final String PARAM_LM_ID = "lm_id";
 
+  // Held model downloads are dropped after this, so stale metadata isn't used for a later lookup
+  private static final long PREFETCH_EXPIRY_MS = 10 * 60 * 1000;
+
+  /**
+   * Model downloads found by a speculative lookup
+   */
+  private static final class HeldResult
+  {
+    final List<MetaDataResult> results;
+    final long heldAt;
+
+    HeldResult(List<MetaDataResult> results, long heldAt) {
+      this.results = results;
+      this.heldAt = heldAt;
+    }
+
+    boolean isExpired(long now) {
+      return now - heldAt >= PREFETCH_EXPIRY_MS;
+    }
+  }
+
+  // Model downloads found by speculative lookups, by language ID, held until the keyboard is installed
+  private static final Map<String, HeldResult> prefetchedResults = new ConcurrentHashMap<>();
+
+  // Languages with a running speculative lookup
+  private static final Set<String> pendingLanguages = Collections.synchronizedSet(new HashSet<String>());
+
+  // Languages whose keyboard finished installing while their speculative lookup was still running
+  private static final Set<String> requestedLanguages = Collections.synchronizedSet(new HashSet<String>());
+
+  // Languages whose keyboard failed to install while their speculative lookup was still running
+  private static final Set<String> discardedLanguages = Collections.synchronizedSet(new HashSet<String>());
+
+  private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  // Language ID of a speculative lookup, or null
+  private final String prefetchLanguageID;
+
+  public CloudLexicalModelMetaDataDownloadCallback() {
+    this.prefetchLanguageID = null;
+  }
+
+  private CloudLexicalModelMetaDataDownloadCallback(String prefetchLanguageID) {
+    this.prefetchLanguageID = prefetchLanguageID;
+  }
+
   @Override
   public void initializeContext(Context context) {
 
@@ -80,7 +142,22 @@ public class CloudLexicalModelMetaDataDownloadCallback implements ICloudDownload
 
   @Override
   public void applyCloudDownloadToModel(Context aContext, Void aModel, List<CloudLexicalModelMetaDataDownloadCallback.MetaDataResult> aCloudResult) {
+    // A speculative lookup behaves like a normal one if its keyboard is already installed
+    boolean speculative = false;
+    if (prefetchLanguageID != null) {
+      pendingLanguages.remove(prefetchLanguageID);
+      if (discardedLanguages.remove(prefetchLanguageID)) {
+        // The keyboard wasn't installed, so the model isn't needed
+        return;
+      }
+      speculative = !requestedLanguages.remove(prefetchLanguageID);
+    }
+
     if (aCloudResult.isEmpty()) {
+      if (speculative) {
+        // The lookup is repeated once the keyboard is installed
+        return;
+      }
       BaseActivity.makeToast(aContext, R.string.catalog_unavailable, Toast.LENGTH_SHORT);
       KMLog.LogError(TAG, "Could not reach server");
       return;
@@ -88,6 +165,12 @@ public class CloudLexicalModelMetaDataDownloadCallback implements ICloudDownload
 
     processCloudResults(aContext, aCloudResult);
 
+    if (speculative && !KMManager.hasUnmeteredConnection(aContext)) {
+      // Hold the model download until the keyboard is installed
+      prefetchedResults.put(prefetchLanguageID, new HeldResult(aCloudResult, System.currentTimeMillis()));
+      return;
+    }
+
     startDownloads(aContext, aCloudResult);
   }
 
@@ -96,7 +179,7 @@ public class CloudLexicalModelMetaDataDownloadCallback implements ICloudDownload
    * @param aContext the context
    * @param aMetaDataResult the meta data result
    */
-  private void startDownloads(Context aContext, List<MetaDataResult> aMetaDataResult) {
+  private static void startDownloads(Context aContext, List<MetaDataResult> aMetaDataResult) {
     for(MetaDataResult _r:aMetaDataResult)
     {
       if(_r.additionalDownloads!=null)
@@ -173,6 +256,106 @@ public class CloudLexicalModelMetaDataDownloadCallback implements ICloudDownload
     }
   }
 
+  /**
+   * Start a speculative lookup of the lexical models for a language, e.g. while a keyboard package
+   * for it is being installed. Nothing is done if a model is already installed for the language,
+   * or a lookup is already running or held.
+   * May be called from any thread.
+   * @param aContext the context
+   * @param aLanguageId the language id
+   */
+  public static void prefetch(Context aContext, final String aLanguageId) {
+    if (aLanguageId == null || aLanguageId.isEmpty() ||
+        !KMManager.hasInternetPermission(aContext) || !KMManager.hasConnection(aContext)) {
+      return;
+    }
+
+    final Context appContext = aContext.getApplicationContext();
+    mainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        removeExpiredResults();
+        discardedLanguages.remove(aLanguageId);
+        String downloadId = createDownloadId(aLanguageId);
+        if (KMManager.getAssociatedLexicalModel(aLanguageId) != null ||
+            prefetchedResults.containsKey(aLanguageId) ||
+            CloudDownloadMgr.getInstance().alreadyDownloadingData(downloadId)) {
+          return;
+        }
+
+        CloudApiTypes.CloudApiParam param = new CloudApiTypes.CloudApiParam(
+          CloudApiTypes.ApiTarget.KeyboardLexicalModels, CloudRepository.prepareLexicalModelQuery(aLanguageId))
+          .setType(CloudApiTypes.JSONType.Array)
+          .setAdditionalProperty(PARAM_LANG_ID, aLanguageId);
+        pendingLanguages.add(aLanguageId);
+        if (!CloudDownloadMgr.getInstance().executeAsDownload(
+            appContext, downloadId, null, new CloudLexicalModelMetaDataDownloadCallback(aLanguageId), param)) {
+          pendingLanguages.remove(aLanguageId);
+        }
+      }
+    });
+  }
+
+  /**
+   * Continue the speculative lookup for a language once its keyboard is installed: start the held
+   * model download, or let the running lookup start it when it completes.
+   * Must be called on the main thread.
+   * @param aContext the context
+   * @param aLanguageId the language id
+   * @return boolean - true if the model download was started or will be, so no new lookup is needed
+   */
+  public static boolean startPrefetchedDownload(Context aContext, String aLanguageId) {
+    if (aLanguageId == null) {
+      return false;
+    }
+
+    HeldResult held = prefetchedResults.remove(aLanguageId);
+    if (held != null && !held.isExpired(System.currentTimeMillis())) {
+      startDownloads(aContext, held.results);
+      return true;
+    }
+
+    if (pendingLanguages.contains(aLanguageId) &&
+        CloudDownloadMgr.getInstance().alreadyDownloadingData(createDownloadId(aLanguageId))) {
+      requestedLanguages.add(aLanguageId);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Drop the speculative lookup for a language whose keyboard failed to install. A held model
+   * download is removed, and a running lookup won't start or hold one.
+   * May be called from any thread.
+   * @param aLanguageId the language id
+   */
+  public static void discardPrefetch(final String aLanguageId) {
+    if (aLanguageId == null) {
+      return;
+    }
+
+    mainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        prefetchedResults.remove(aLanguageId);
+        requestedLanguages.remove(aLanguageId);
+        if (pendingLanguages.contains(aLanguageId)) {
+          discardedLanguages.add(aLanguageId);
+        }
+      }
+    });
+  }
+
+  private static void removeExpiredResults() {
+    long now = System.currentTimeMillis();
+    Iterator<HeldResult> it = prefetchedResults.values().iterator();
+    while (it.hasNext()) {
+      if (it.next().isExpired(now)) {
+        it.remove();
+      }
+    }
+  }
+
   /**
    * create a download id for the lexical model metadata.
    * @param  aLanguageId the language id
@@ -9,16 +9,15 @@ import com.keyman.engine.KeyboardEventHandler;
 import com.keyman.engine.R;
 import com.keyman.engine.cloud.CloudApiTypes;
 import com.keyman.engine.cloud.ICloudDownloadCallback;
-import com.keyman.engine.packages.LexicalModelPackageProcessor;
+import com.keyman.engine.packages.PackageBatchInstaller;
 import com.keyman.engine.packages.PackageProcessor;
 import com.keyman.engine.util.FileUtils;
 import com.keyman.engine.util.KMLog;
 
-import org.json.JSONException;
-
 import java.io.File;
 import java.io.IOException;
-import java.util.LinkedList;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -45,51 +44,51 @@ public class CloudLexicalPackageDownloadCallback implements ICloudDownloadCallba
   public CloudKeyboardDownloadReturns extractCloudResultFromDownloadSet(
     Context aContext, CloudApiTypes.CloudDownloadSet<Void, CloudKeyboardDownloadReturns> aDownload)
   {
-    LexicalModelPackageProcessor kmpProcessor = new LexicalModelPackageProcessor(resourceRoot);
     List<Map<String, String>> installedLexicalModels = null;
+    List<PackageBatchInstaller.Entry> entries = new ArrayList<>();
 
     int _result = FileUtils.DOWNLOAD_SUCCESS;
     for(CloudApiTypes.SingleCloudDownload _d:aDownload.getSingleDownloads())
     {
-      File destinationFile = _d.cacheAndOpenDestinationFile(aContext);
-      if (destinationFile != null && destinationFile.length() > 0)
-      {
+      if (_d.getCloudParams().target != CloudApiTypes.ApiTarget.LexicalModelPackage) {
+        continue;
+      }
 
-        try {
-          if (_d.getCloudParams().target == CloudApiTypes.ApiTarget.LexicalModelPackage) {
-            installedLexicalModels = new LinkedList<>();
-
-            // Parse url for the kmp filename
-            Uri uri = Uri.parse(_d.getCloudParams().url);
-            String kmpFilename = uri.getLastPathSegment();
-            if (kmpFilename == null || kmpFilename.isEmpty()) {
-              KMLog.LogError(TAG, "Cloud URL " + _d.getCloudParams().url + " has null model package");
-            }
-            if (!kmpFilename.endsWith(FileUtils.MODELPACKAGE)) {
-              kmpFilename = kmpFilename + FileUtils.MODELPACKAGE;
-            }
-
-            // Extract the kmp. Validate it contains only lexical models, and then process the lexical model package
-            File kmpFile = new File(cacheDir, kmpFilename);
-
-            FileUtils.copy(destinationFile, kmpFile);
-
-            String pkgTarget = kmpProcessor.getPackageTarget(kmpFile);
-            if (pkgTarget.equals(PackageProcessor.PP_TARGET_LEXICAL_MODELS)) {
-              File unzipPath = kmpProcessor.unzipKMP(kmpFile);
-              installedLexicalModels.addAll(kmpProcessor.processKMP(kmpFile, unzipPath, PackageProcessor.PP_LEXICAL_MODELS_KEY));
-            }
+      InputStream destinationStream = _d.openDestinationStream(aContext);
+      if (destinationStream != null)
+      {
+        // Parse url for the kmp filename
+        Uri uri = Uri.parse(_d.getCloudParams().url);
+        String kmpFilename = uri.getLastPathSegment();
+        if (kmpFilename == null || kmpFilename.isEmpty()) {
+          KMLog.LogError(TAG, "Cloud URL " + _d.getCloudParams().url + " has null model package");
+          try {
+            destinationStream.close();
+          } catch (IOException e) {
+            // Ignore
           }
+          continue;
         }
-        catch (IOException | JSONException e) {
-          KMLog.LogException(TAG, "", e);
+        if (!kmpFilename.endsWith(FileUtils.MODELPACKAGE)) {
+          kmpFilename = kmpFilename + FileUtils.MODELPACKAGE;
         }
+
+        // Extract the kmp straight from the download. The installer validates it contains only
+        // lexical models before processing the lexical model package
+        entries.add(new PackageBatchInstaller.Entry(new File(cacheDir, kmpFilename),
+          destinationStream, null));
       }
       else
       {
           _result = FileUtils.DOWNLOAD_ERROR;
       }
     }
+
+    if (!entries.isEmpty()) {
+      PackageBatchInstaller installer = new PackageBatchInstaller(resourceRoot,
+        PackageProcessor.PP_TARGET_LEXICAL_MODELS);
+      installedLexicalModels = installer.install(entries);
+    }
     return new CloudKeyboardDownloadReturns(_result,installedLexicalModels);
   }
 
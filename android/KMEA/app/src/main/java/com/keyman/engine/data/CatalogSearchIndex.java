@@ -0,0 +1,299 @@
+/**
+ * Copyright (C) 2026 SIL International. All rights reserved.
+ */
+package com.keyman.engine.data;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable search index over a snapshot of keyboards or lexical models.
+ *
+ * Language names, BCP 47 tags, resource names and IDs (and keyboard display names) are split into
+ * words and folded to lower case without diacritics. The folded words are kept in one sorted
+ * array, so each word of a query is matched as a prefix with a binary search. This is cheap
+ * enough to run on every keystroke of a search box, even over the full cloud catalog.
+ *
+ * Results must match every word of the query. They're ranked by where the words matched
+ * (language name, then language tag, then resource name), with whole-word matches first.
+ * Ties are ordered by language name, then resource name.
+ * @param <Type> Keyboard or LexicalModel
+ */
+public final class CatalogSearchIndex<Type extends LanguageResource> {
+  private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+  // Field weights of the ranking
+  private static final int WEIGHT_RESOURCE = 1;
+  private static final int WEIGHT_LANGUAGE_ID = 2;
+  private static final int WEIGHT_LANGUAGE_NAME = 3;
+
+  private final List<Type> entries;
+
+  // Entries ordered by language name, then resource name, and each entry's position in that
+  // order.  Used to break score ties.
+  private final int[] nameOrder;
+  private final int[] nameRanks;
+
+  // Distinct folded words in sorted order.  The postings of tokens[i] (the entries containing
+  // the word, and the weight of the field it's in) are at postingStarts[i] up to
+  // postingStarts[i + 1].
+  private final String[] tokens;
+  private final int[] postingStarts;
+  private final int[] postingEntries;
+  private final byte[] postingWeights;
+
+  // Growable posting list used while building
+  private static final class Postings {
+    int[] tokenIds = new int[64];
+    int[] entries = new int[64];
+    byte[] weights = new byte[64];
+    int size = 0;
+
+    void add(int tokenId, int entry, int weight) {
+      if (size == entries.length) {
+        tokenIds = Arrays.copyOf(tokenIds, size * 2);
+        entries = Arrays.copyOf(entries, size * 2);
+        weights = Arrays.copyOf(weights, size * 2);
+      }
+      tokenIds[size] = tokenId;
+      entries[size] = entry;
+      weights[size] = (byte) weight;
+      size++;
+    }
+  }
+
+  /**
+   * Build the index. Holds references to the resources, not copies.
+   * @param resources Collection of the keyboards or lexical models to search
+   */
+  public CatalogSearchIndex(Collection<? extends Type> resources) {
+    entries = Collections.unmodifiableList(new ArrayList<Type>(resources));
+
+    // Words like "keyboard" or "sil" repeat across the catalog, so only distinct words are sorted
+    Map<String, Integer> tokenIds = new HashMap<>();
+    List<String> distinct = new ArrayList<>();
+    Postings postings = new Postings();
+    for (int i = 0; i < entries.size(); i++) {
+      Type resource = entries.get(i);
+      addTokens(tokenIds, distinct, postings, resource.getLanguageName(), i, WEIGHT_LANGUAGE_NAME);
+      addTokens(tokenIds, distinct, postings, resource.getLanguageID(), i, WEIGHT_LANGUAGE_ID);
+      addTokens(tokenIds, distinct, postings, resource.getResourceName(), i, WEIGHT_RESOURCE);
+      addTokens(tokenIds, distinct, postings, resource.getResourceID(), i, WEIGHT_RESOURCE);
+      if (resource instanceof Keyboard) {
+        addTokens(tokenIds, distinct, postings, ((Keyboard) resource).getDisplayName(), i, WEIGHT_RESOURCE);
+      }
+    }
+
+    Integer[] byName = new Integer[entries.size()];
+    for (int i = 0; i < byName.length; i++) {
+      byName[i] = i;
+    }
+    Arrays.sort(byName, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer e1, Integer e2) {
+        Type r1 = entries.get(e1);
+        Type r2 = entries.get(e2);
+        int langComp = r1.getLanguageName().compareTo(r2.getLanguageName());
+        if (langComp != 0) {
+          return langComp;
+        }
+        return r1.getResourceName().compareTo(r2.getResourceName());
+      }
+    });
+    nameOrder = new int[byName.length];
+    nameRanks = new int[byName.length];
+    for (int i = 0; i < byName.length; i++) {
+      nameOrder[i] = byName[i];
+      nameRanks[byName[i]] = i;
+    }
+
+    tokens = distinct.toArray(new String[distinct.size()]);
+    Arrays.sort(tokens);
+    int[] tokenRanks = new int[tokens.length];
+    for (int i = 0; i < tokens.length; i++) {
+      tokenRanks[tokenIds.get(tokens[i])] = i;
+    }
+
+    // Counting sort of the postings by token
+    postingStarts = new int[tokens.length + 1];
+    for (int p = 0; p < postings.size; p++) {
+      postingStarts[tokenRanks[postings.tokenIds[p]] + 1]++;
+    }
+    for (int i = 0; i < tokens.length; i++) {
+      postingStarts[i + 1] += postingStarts[i];
+    }
+    int[] next = Arrays.copyOf(postingStarts, tokens.length);
+    postingEntries = new int[postings.size];
+    postingWeights = new byte[postings.size];
+    for (int p = 0; p < postings.size; p++) {
+      int slot = next[tokenRanks[postings.tokenIds[p]]]++;
+      postingEntries[slot] = postings.entries[p];
+      postingWeights[slot] = postings.weights[p];
+    }
+  }
+
+  private static void addTokens(Map<String, Integer> tokenIds, List<String> distinct, Postings postings,
+                                String text, int entry, int weight) {
+    for (String word : tokenize(text)) {
+      Integer id = tokenIds.get(word);
+      if (id == null) {
+        id = distinct.size();
+        tokenIds.put(word, id);
+        distinct.add(word);
+      }
+      postings.add(id, entry, weight);
+    }
+  }
+
+  /**
+   * Fold text for matching: lower case, without diacritics
+   * @param text String
+   * @return String - the folded text
+   */
+  public static String fold(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) >= 0x80) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+      }
+    }
+    // Most IDs and names are ASCII, and don't need normalizing
+    return text.toLowerCase(Locale.ROOT);
+  }
+
+  private static List<String> tokenize(String text) {
+    if (text == null || text.isEmpty()) {
+      return Collections.emptyList();
+    }
+    String folded = fold(text);
+    List<String> words = new ArrayList<>(4);
+    int start = -1;
+    for (int i = 0; i < folded.length(); i++) {
+      if (Character.isLetterOrDigit(folded.charAt(i)) || Character.isSurrogate(folded.charAt(i))) {
+        if (start < 0) {
+          start = i;
+        }
+      } else if (start >= 0) {
+        words.add(folded.substring(start, i));
+        start = -1;
+      }
+    }
+    if (start >= 0) {
+      words.add(folded.substring(start));
+    }
+    return words;
+  }
+
+  /**
+   * @return List - the indexed resources
+   */
+  public List<Type> getEntries() {
+    return entries;
+  }
+
+  /**
+   * @return int - number of indexed resources
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Find the resources matching every word of a query, as a prefix of a word of their names or
+   * language tag
+   * @param query String - the search text as typed
+   * @param limit int - maximum number of results, or 0 for all
+   * @return List - the ranked matches. Empty if the query has no words
+   */
+  public List<Type> search(String query, int limit) {
+    List<String> terms = tokenize(query);
+    if (terms.isEmpty() || entries.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    int n = entries.size();
+    // Number of terms each entry has matched so far, its best score for the current term,
+    // and its total score
+    int[] matchedTerms = new int[n];
+    int[] termScores = new int[n];
+    int[] scores = new int[n];
+    int[] candidates = new int[16];
+    int candidateCount = 0;
+
+    for (int t = 0; t < terms.size(); t++) {
+      String term = terms.get(t);
+      for (int i = lowerBound(term); i < tokens.length && tokens[i].startsWith(term); i++) {
+        int wholeWord = (tokens[i].length() == term.length()) ? 1 : 0;
+        for (int p = postingStarts[i]; p < postingStarts[i + 1]; p++) {
+          int entry = postingEntries[p];
+          int score = postingWeights[p] * 2 + wholeWord;
+          if (matchedTerms[entry] == t) {
+            matchedTerms[entry] = t + 1;
+            termScores[entry] = score;
+            if (t == 0) {
+              if (candidateCount == candidates.length) {
+                candidates = Arrays.copyOf(candidates, candidateCount * 2);
+              }
+              candidates[candidateCount++] = entry;
+            }
+          } else if (matchedTerms[entry] == t + 1 && score > termScores[entry]) {
+            termScores[entry] = score;
+          }
+        }
+      }
+
+      // Keep only the candidates that matched this term
+      int kept = 0;
+      for (int c = 0; c < candidateCount; c++) {
+        int entry = candidates[c];
+        if (matchedTerms[entry] == t + 1) {
+          scores[entry] += termScores[entry];
+          candidates[kept++] = entry;
+        }
+      }
+      candidateCount = kept;
+      if (candidateCount == 0) {
+        return Collections.emptyList();
+      }
+    }
+
+    // Sort on primitive keys: highest score first, then name order
+    long[] ranked = new long[candidateCount];
+    for (int c = 0; c < candidateCount; c++) {
+      int entry = candidates[c];
+      ranked[c] = ((long) -scores[entry] << 32) | nameRanks[entry];
+    }
+    Arrays.sort(ranked);
+
+    int count = (limit > 0) ? Math.min(limit, candidateCount) : candidateCount;
+    List<Type> results = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      results.add(entries.get(nameOrder[(int) ranked[i]]));
+    }
+    return results;
+  }
+
+  // Index of the first token not less than the prefix
+  private int lowerBound(String prefix) {
+    int low = 0;
+    int high = tokens.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (tokens[mid].compareTo(prefix) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
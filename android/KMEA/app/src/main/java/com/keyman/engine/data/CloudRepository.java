@@ -2,6 +2,8 @@ package com.keyman.engine.data;
 
 import android.content.Context;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -20,7 +22,9 @@ import com.keyman.engine.cloud.CloudDataJsonUtil;
 import com.keyman.engine.cloud.CloudDownloadMgr;
 import com.keyman.engine.packages.JSONUtils;
 import com.keyman.engine.util.BCP47;
-import com.keyman.engine.util.DownloadFileUtils;
+import com.keyman.engine.util.EngineMetrics;
+import com.keyman.engine.util.HttpResponseCache;
+import com.keyman.engine.util.HttpValidators;
 import com.keyman.engine.util.KMLog;
 import com.keyman.engine.util.VersionUtils;
 
@@ -33,11 +37,18 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class CloudRepository {
   static public final CloudRepository shared = new CloudRepository();
   private static final String TAG = "CloudRepository";
+  private static final EngineMetrics.Timer refreshTimer = EngineMetrics.timer("cloud.refresh");
+  private static final EngineMetrics.Counter refreshModified = EngineMetrics.counter("cloud.refresh.modified");
+  private static final EngineMetrics.Counter refreshNotModified = EngineMetrics.counter("cloud.refresh.not_modified");
+  private static final EngineMetrics.Counter refreshFailed = EngineMetrics.counter("cloud.refresh.failed");
 
   public static final String DOWNLOAD_IDENTIFIER_CATALOGUE = "catalogue";
 
@@ -47,6 +58,9 @@ public class CloudRepository {
   public static final String API_MODEL_LANGUAGE_FORMATSTR = "https://%s/model?q=bcp47:%s";
   public static final String API_PACKAGE_VERSION_FORMATSTR = "https://%s/package-version?platform=android%s%s";
 
+  // Keep package-version queries well under common URL length limits
+  private static final int MAX_QUERY_URL_LENGTH = 2000;
+
   private Dataset memCachedDataset;
   private Calendar lastLoad; // To be used for Dataset caching.
   private boolean invalidateLexicalCache = false;
@@ -56,6 +70,14 @@ public class CloudRepository {
 
   private boolean updateIsRunning = false;
 
+  // Conditional package-version queries run in the background and are applied on the main thread
+  private final ExecutorService fetchExecutor = Executors.newSingleThreadExecutor();
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  // Latest package-version response, reused when the server reports it hasn't changed
+  private String lastPackagesQuery;
+  private JSONObject lastPackagesJSON;
+
 
 
   private CloudRepository() {
@@ -88,7 +110,7 @@ public class CloudRepository {
    * @return boolean of the cache validity
    */
   public boolean getCacheValidity(@NonNull Context context) {
-    boolean loadLexicalModelsFromCache = this.shouldUseCache(context, CloudDataJsonUtil.getLexicalModelCacheFile(context));
+    boolean loadLexicalModelsFromCache = this.shouldUseLexicalModelCache(context);
     boolean loadResourcesFromCache = this.shouldUseCache(context, CloudDataJsonUtil.getResourcesCacheFile(context));
 
     boolean cacheValid = loadLexicalModelsFromCache && loadResourcesFromCache;
@@ -133,12 +155,6 @@ public class CloudRepository {
 
     boolean hasConnection = KMManager.hasConnection(context);
 
-    // Forced cache bypass - we need to load more lexical models (signaled by invalidation).
-    if(this.invalidateLexicalCache && cacheFile.equals(CloudDataJsonUtil.getLexicalModelCacheFile(context))) {
-      this.invalidateLexicalCache = false;
-      return false;
-    }
-
     if (cacheFile.exists()) {
       Calendar lastModified = Calendar.getInstance();
       lastModified.setTime(new Date(cacheFile.lastModified()));
@@ -150,6 +166,43 @@ public class CloudRepository {
     }
   }
 
+  /**
+   * Check if the lexical model queries for the installed languages can be served from
+   * HttpResponseCache without revalidating them
+   * @param context Context
+   * @return boolean
+   */
+  private boolean shouldUseLexicalModelCache(Context context) {
+    if(DEBUG_DISABLE_CACHE) {
+      return false;
+    }
+
+    // Forced cache bypass - we need to load more lexical models (signaled by invalidation).
+    if(this.invalidateLexicalCache) {
+      this.invalidateLexicalCache = false;
+      return false;
+    }
+
+    HttpResponseCache cache = HttpResponseCache.getDefault();
+    if (cache == null) {
+      return false;
+    }
+    if (!KMManager.hasConnection(context)) {
+      return true;
+    }
+
+    LinkedHashSet<String> languageIDs = new LinkedHashSet<>();
+    for (Keyboard k : KeyboardController.getInstance().get()) {
+      languageIDs.add(k.getLanguageID());
+    }
+    for (String languageID : languageIDs) {
+      if (!cache.isFresh(prepareLexicalModelQuery(languageID))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Search the available lexical models list and see there's an associated model for a
    * given language ID. Available models are from the cloud catalog and locally installed models.
@@ -170,44 +223,47 @@ public class CloudRepository {
   }
 
   // Should be called whenever a new language code starts being managed in order to help signal
-  // retrieval of the language code's lexical models.
-  public void invalidateLexicalModelCache(@NonNull Context context, boolean deleteCacheFile) {
+  // retrieval of the language code's lexical models. A language without a cached lexical model
+  // query also invalidates the cache, so this persists across an app close or crash.
+  public void invalidateLexicalModelCache(@NonNull Context context) {
     this.invalidateLexicalCache = true;
-
-    if (deleteCacheFile) {
-      // We should also pre-emptively clear out the old cache file
-      // in case of an app close or crash.
-      File file = CloudDataJsonUtil.getLexicalModelCacheFile(context);
-      if (file != null) {
-        file.delete();
-      }
-    }
   }
 
-  private CloudApiTypes.CloudApiParam prepareResourcesUpdateQuery(Context aContext) {
+  /**
+   * Prepare the package-version queries for the installed keyboards and lexical models.
+   * Each ID is only queried once, and the IDs are split across several queries if needed
+   * to keep each URL under MAX_QUERY_URL_LENGTH.
+   * @param aContext Context
+   * @return List of package-version queries
+   */
+  private List<CloudApiTypes.CloudApiParam> prepareResourcesUpdateQueries(Context aContext) {
     // Keyman cloud keyboard
     // Append each keyboard id
-    String keyboardQuery = "";
+    LinkedHashSet<String> terms = new LinkedHashSet<>();
     for(Keyboard k : KeyboardController.getInstance().get()) {
-      String keyboardID = k.getKeyboardID();
-      if (!keyboardQuery.contains(keyboardID)) {
-        keyboardQuery = String.format("%s&keyboard=%s", keyboardQuery, keyboardID);
-      }
+      terms.add("&keyboard=" + k.getKeyboardID());
     }
 
-    String lexicalModelQuery = "";
     for(HashMap<String, String> hashMap : KMManager.getLexicalModelsList(aContext)) {
       if (hashMap != null && hashMap.containsKey(KMManager.KMKey_LexicalModelID)) {
-        String lexicalModelID = hashMap.get(KMManager.KMKey_LexicalModelID);
-        if (!lexicalModelQuery.contains(lexicalModelID)) {
-          lexicalModelQuery = String.format("%s&model=%s", lexicalModelQuery, lexicalModelID);
-        }
+        terms.add("&model=" + hashMap.get(KMManager.KMKey_LexicalModelID));
       }
     }
 
-    String queryURL = String.format(API_PACKAGE_VERSION_FORMATSTR, getHost(), keyboardQuery, lexicalModelQuery);
-    return new CloudApiTypes.CloudApiParam(
-      CloudApiTypes.ApiTarget.PackageVersion, queryURL).setType(CloudApiTypes.JSONType.Object);
+    String baseURL = String.format(API_PACKAGE_VERSION_FORMATSTR, getHost(), "", "");
+    List<CloudApiTypes.CloudApiParam> queries = new ArrayList<>(1);
+    StringBuilder queryURL = new StringBuilder(baseURL);
+    for (String term : terms) {
+      if (queryURL.length() > baseURL.length() && queryURL.length() + term.length() > MAX_QUERY_URL_LENGTH) {
+        queries.add(new CloudApiTypes.CloudApiParam(
+          CloudApiTypes.ApiTarget.PackageVersion, queryURL.toString()).setType(CloudApiTypes.JSONType.Object));
+        queryURL.setLength(baseURL.length());
+      }
+      queryURL.append(term);
+    }
+    queries.add(new CloudApiTypes.CloudApiParam(
+      CloudApiTypes.ApiTarget.PackageVersion, queryURL.toString()).setType(CloudApiTypes.JSONType.Object));
+    return queries;
   }
 
   public static String prepareLexicalModelQuery(String languageID) {
@@ -270,11 +326,9 @@ public class CloudRepository {
     }
 
     // Can't use the mem-cached version as is - let's prep it / reuse the instance.
+    // Its contents are updated in place below, so views bound to it don't flicker.
     if (memCachedDataset == null) {
       memCachedDataset = new Dataset(context);
-    } else {
-      // Clear the cached data and rebuild it from scratch.
-      memCachedDataset.clear();
     }
 
     lastLoad = Calendar.getInstance(); // Mark a cache timing.
@@ -293,13 +347,17 @@ public class CloudRepository {
     final boolean fromKMP = true;
 
     try {
+      List<Keyboard> kmpKeyboards = new ArrayList<>();
+      List<LexicalModel> kmpLexicalModels = new ArrayList<>();
       if (kmpLanguagesArray.getJSONObject(KMKeyboardDownloaderActivity.KMKey_Languages).
         getJSONArray(KMKeyboardDownloaderActivity.KMKey_Languages).length() >  0) {
-        memCachedDataset.keyboards.addAll(CloudDataJsonUtil.processKeyboardJSON(kmpLanguagesArray, true));
+        kmpKeyboards = CloudDataJsonUtil.processKeyboardJSON(kmpLanguagesArray, true);
       }
       if (kmpLexicalModelsArray.length() > 0) {
-        memCachedDataset.lexicalModels.addAll(CloudDataJsonUtil.processLexicalModelJSON(kmpLexicalModelsArray, fromKMP));
+        kmpLexicalModels = CloudDataJsonUtil.processLexicalModelJSON(kmpLexicalModelsArray, fromKMP);
       }
+      memCachedDataset.keyboards.replaceAll(kmpKeyboards);
+      memCachedDataset.lexicalModels.replaceAll(kmpLexicalModels);
     } catch (Exception e) {
       KMLog.LogException(TAG, "preCacheDataSet error ", e);
     }
@@ -312,15 +370,6 @@ public class CloudRepository {
     JSONObject pkgData = new JSONObject();
 
     if (cacheValid) {
-      // Get the lexical model info
-      lexData = CloudDataJsonUtil.getCachedJSONArray(CloudDataJsonUtil.getLexicalModelCacheFile(context));
-
-      // In case something went wrong with the last cache attempt, which can cause a null return
-      if (lexData == null) {
-        lexData = new JSONArray();
-        cacheValid = false;
-      }
-
       pkgData = CloudDataJsonUtil.getCachedJSONObject(CloudDataJsonUtil.getResourcesCacheFile(context));
 
       if (pkgData == null) {
@@ -340,6 +389,8 @@ public class CloudRepository {
 
   /**
    * Fetches a Dataset object corresponding to keyboards and models available from cache or file cache.
+   * The installed keyboards and models are shown right away; the update check applies any changes
+   * to the same Dataset instance.
    * @param context   The current Activity requesting the Dataset.
    * @return  A Dataset object implementing the Adapter interface to be asynchronously filled.
    */
@@ -368,10 +419,7 @@ public class CloudRepository {
    * @param onFailure  A callback to be triggered upon failure of a query.
    */
   private void downloadMetaDataFromServer(@NonNull Context context, UpdateHandler updateHandler, Runnable onSuccess, Runnable onFailure) {
-    if(DownloadFileUtils.getDownloadManager(context) == null) {
-      onFailure.run();
-      return;
-    }
+    // The catalog queries are fetched in-process, so they don't need DownloadManager
     boolean cacheValid = getCacheValidity(context);
 
     // For local and PR test builds, force download of metadata
@@ -382,20 +430,13 @@ public class CloudRepository {
       return;
     }
 
-    // check if cache file is valid
-    if(cacheValid) {
-      if(CloudDataJsonUtil.getCachedJSONArray(CloudDataJsonUtil.getLexicalModelCacheFile(context)) == null) {
-        cacheValid = false;
-      }
-    }
-
     //    CloudApiParam[] cloudQueries = new CloudApiParam[2];
     //    int cloudQueryEntries = 0;
     List<CloudApiTypes.CloudApiParam> cloudQueries = new ArrayList<>(2);
 
     // For local and PR test builds, force check of keyboard updates
     if (!cacheValid || VersionUtils.isLocalOrTestBuild()) {
-      cloudQueries.add(prepareResourcesUpdateQuery(context));
+      cloudQueries.addAll(prepareResourcesUpdateQueries(context));
     }
 
     int cloudQueryEntries = cloudQueries.size();
@@ -407,8 +448,12 @@ public class CloudRepository {
       CloudApiTypes.CloudApiParam[] params = new CloudApiTypes.CloudApiParam[cloudQueryEntries];
       cloudQueries.toArray(params);
 
-      if (CloudDownloadMgr.getInstance().alreadyDownloadingData(DOWNLOAD_IDENTIFIER_CATALOGUE)) {
+      if (CloudDownloadMgr.getInstance().alreadyDownloadingData(DOWNLOAD_IDENTIFIER_CATALOGUE) || updateIsRunning) {
         BaseActivity.makeToast(context, R.string.catalog_download_is_running_in_background, Toast.LENGTH_SHORT);
+      } else if (isPackageVersionQuery(params)) {
+        // Revalidate the cached package-version response with a conditional request
+        updateIsRunning = true;
+        fetchResourcesUpdate(context, params, _download_callback);
       } else {
         updateIsRunning = true;
         boolean executionStarted = CloudDownloadMgr.getInstance().executeAsDownload(
@@ -424,6 +469,94 @@ public class CloudRepository {
 
 
 
+  private static boolean isPackageVersionQuery(CloudApiTypes.CloudApiParam[] params) {
+    for (CloudApiTypes.CloudApiParam param : params) {
+      if (param.target != CloudApiTypes.ApiTarget.PackageVersion) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Fetch the package-version queries in the background. A single query is made as a conditional
+   * request, and a 304 response reuses the cached response without transferring or saving it again.
+   * The responses of several queries are combined, and always replace the cache.
+   * @param context the context
+   * @param params the package-version queries
+   * @param callback the catalog callback to apply the results
+   */
+  private void fetchResourcesUpdate(@NonNull final Context context, final CloudApiTypes.CloudApiParam[] params,
+                                    final CloudCatalogDownloadCallback callback) {
+    final File cacheFile = CloudDataJsonUtil.getResourcesCacheFile(context);
+    final Dataset dataset = memCachedDataset;
+    final String queryKey = getQueryKey(params);
+    fetchExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        long startTime = refreshTimer.start();
+        final CloudDataJsonUtil.ConditionalFetch fetch = (params.length == 1) ?
+          CloudDataJsonUtil.fetchJSONObjectIfModified(params[0].url, cacheFile) :
+          CloudDataJsonUtil.fetchJSONObjects(params);
+        refreshTimer.stop(startTime);
+        mainHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            applyResourcesUpdate(context, queryKey, cacheFile, dataset, callback, fetch);
+          }
+        });
+      }
+    });
+  }
+
+  private static String getQueryKey(CloudApiTypes.CloudApiParam[] params) {
+    StringBuilder key = new StringBuilder();
+    for (CloudApiTypes.CloudApiParam param : params) {
+      key.append(param.url).append('\n');
+    }
+    return key.toString();
+  }
+
+  private void applyResourcesUpdate(@NonNull Context context, String queryKey, File cacheFile,
+                                    Dataset dataset, CloudCatalogDownloadCallback callback,
+                                    CloudDataJsonUtil.ConditionalFetch fetch) {
+    List<CloudApiTypes.CloudApiReturns> returns = new ArrayList<>(1);
+    switch (fetch.status) {
+      case CloudDataJsonUtil.FETCH_MODIFIED:
+        refreshModified.increment();
+        returns.add(new CloudApiTypes.CloudApiReturns(CloudApiTypes.ApiTarget.PackageVersion, fetch.jsonObject));
+        callback.applyCloudDownloadToModel(context, dataset, new CloudCatalogDownloadReturns(returns));
+        if (fetch.validators != null) {
+          fetch.validators.save(cacheFile);
+        } else {
+          HttpValidators.delete(cacheFile);
+        }
+        lastPackagesQuery = queryKey;
+        lastPackagesJSON = fetch.jsonObject;
+        break;
+
+      case CloudDataJsonUtil.FETCH_NOT_MODIFIED:
+        refreshNotModified.increment();
+        JSONObject pkgData = queryKey.equals(lastPackagesQuery) ? lastPackagesJSON : null;
+        if (pkgData == null) {
+          pkgData = CloudDataJsonUtil.getCachedJSONObject(cacheFile);
+          lastPackagesQuery = queryKey;
+          lastPackagesJSON = pkgData;
+        }
+        if (pkgData != null) {
+          returns.add(new CloudApiTypes.CloudApiReturns(CloudApiTypes.ApiTarget.PackageVersion, pkgData));
+        }
+        callback.applyCachedCloudDownloadToModel(context, dataset, new CloudCatalogDownloadReturns(returns));
+        break;
+
+      default:
+        // Handled the same as a failed download
+        refreshFailed.increment();
+        callback.applyCloudDownloadToModel(context, dataset, new CloudCatalogDownloadReturns(returns));
+        break;
+    }
+  }
+
   protected JSONObject wrapKmpKeyboardJSON(JSONArray languagesArray) {
     try {
       JSONObject json = new JSONObject().put(KMKeyboardDownloaderActivity.KMKey_Languages, languagesArray);
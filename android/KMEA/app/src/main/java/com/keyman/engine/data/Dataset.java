@@ -6,8 +6,11 @@ import android.widget.ArrayAdapter;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import com.keyman.engine.data.adapters.AdapterFilter;
 import com.keyman.engine.data.adapters.ListBacked;
+import com.keyman.engine.data.adapters.ListChange;
+import com.keyman.engine.data.adapters.ListChangeObserver;
+import com.keyman.engine.data.adapters.ListChangeSource;
+import com.keyman.engine.data.adapters.SortedAdapterFilter;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -16,12 +19,30 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public class Dataset extends ArrayAdapter<Dataset.LanguageDataset> implements ListBacked<Dataset.LanguageDataset> {
-  public abstract class LanguageFilter<Type extends LanguageResource, Adapter extends LanguageCodedAdapter<Type>> implements AdapterFilter<Type, Adapter, String> {
+  private static final Comparator<LanguageResource> RESOURCE_NAME_ORDER = new Comparator<LanguageResource>() {
+    public int compare(LanguageResource obj1, LanguageResource obj2) {
+      return obj1.getResourceName().compareTo(obj2.getResourceName());
+    }
+  };
+
+  private static final Comparator<LanguageResource> LANGUAGE_NAME_ORDER = new Comparator<LanguageResource>() {
+    public int compare(LanguageResource obj1, LanguageResource obj2) {
+      int langComp = obj1.getLanguageName().compareTo(obj2.getLanguageName());
+      if(langComp != 0) {
+        return langComp;
+      }
+
+      return obj1.getResourceName().compareTo(obj2.getResourceName());
+    }
+  };
+
+  public abstract class LanguageFilter<Type extends LanguageResource, Adapter extends LanguageCodedAdapter<Type>> implements SortedAdapterFilter<Type, Adapter, String> {
     abstract Set<Type> getSetFrom(LanguageDataset metadata);
 
     @Override
@@ -32,14 +53,20 @@ public class Dataset extends ArrayAdapter<Dataset.LanguageDataset> implements Li
 
       List<Type> retList = new ArrayList<>(getSetFrom(metadata));
 
-      Collections.sort(retList, new Comparator<Type>() {
-        public int compare(Type obj1, Type obj2) {
-          return obj1.getResourceName().compareTo(obj2.getResourceName());
-        }
-      });
+      Collections.sort(retList, RESOURCE_NAME_ORDER);
 
       return retList;
     }
+
+    @Override
+    public boolean matches(Type element, String lgCode) {
+      return element.getLanguageID().equals(lgCode);
+    }
+
+    @Override
+    public Comparator<? super Type> getComparator() {
+      return RESOURCE_NAME_ORDER;
+    }
   }
 
   public final LanguageFilter<Keyboard, Keyboards> keyboardFilter = new LanguageFilter<Keyboard, Keyboards>() {
@@ -62,33 +89,40 @@ public class Dataset extends ArrayAdapter<Dataset.LanguageDataset> implements Li
     }
   };
 
-  static class LanguageCategorizer<Type extends LanguageResource, Adapter extends LanguageCodedAdapter<Type>> implements AdapterFilter<Type, Adapter, Void> {
+  static class LanguageCategorizer<Type extends LanguageResource, Adapter extends LanguageCodedAdapter<Type>> implements SortedAdapterFilter<Type, Adapter, Void> {
     public List<Type> selectFrom(Adapter adapter, Void dummy) {
       List<Type> list = new ArrayList<>(adapter.asList());
 
-      Collections.sort(list, new Comparator<Type>() {
-        public int compare(Type obj1, Type obj2) {
-          int langComp = obj1.getLanguageName().compareTo(obj2.getLanguageName());
-          if(langComp != 0) {
-            return langComp;
-          }
-
-          return obj1.getResourceName().compareTo(obj2.getResourceName());
-        }
-      });
+      Collections.sort(list, LANGUAGE_NAME_ORDER);
 
       return list;
     }
+
+    public boolean matches(Type element, Void dummy) {
+      return true;
+    }
+
+    public Comparator<? super Type> getComparator() {
+      return LANGUAGE_NAME_ORDER;
+    }
   }
 
   public static final LanguageCategorizer<Keyboard, Dataset.Keyboards> keyboardPickerSorter = new LanguageCategorizer<Keyboard, Keyboards>();
 
   // Implements common language-tracking functionality for each internally-managed master list.
-  private class LanguageCodedAdapter<Type extends LanguageResource> extends ArrayAdapter<Type> implements ListBacked<Type> {
+  private class LanguageCodedAdapter<Type extends LanguageResource> extends ArrayAdapter<Type> implements ListBacked<Type>, ListChangeSource<Type> {
     private final List<Type> data;
     private boolean doNotify = true;
     private boolean recursiveBlock = false;
 
+    // Changes since the last notification, for our ListChangeObservers.  Null if they can't be
+    // described and linked adapters must reload.
+    private List<ListChange<Type>> pendingChanges = new ArrayList<>();
+    private final List<ListChangeObserver<Type>> changeObservers = new ArrayList<>();
+
+    // Built on first search, discarded when the contents change
+    private CatalogSearchIndex<Type> searchIndex;
+
     public LanguageCodedAdapter(@NonNull Context context) {
       this(context, new ArrayList<Type>());
     }
@@ -110,6 +144,36 @@ public class Dataset extends ArrayAdapter<Dataset.LanguageDataset> implements Li
       return this.data;
     }
 
+    @Override
+    public void registerListChangeObserver(ListChangeObserver<Type> observer) {
+      if(!changeObservers.contains(observer)) {
+        changeObservers.add(observer);
+      }
+    }
+
+    @Override
+    public void unregisterListChangeObserver(ListChangeObserver<Type> observer) {
+      changeObservers.remove(observer);
+    }
+
+    /**
+     * Get the search index of the current contents.  It's built on first use and rebuilt after
+     * the contents change, so repeated searches (e.g. as the user types) share it.
+     * @return CatalogSearchIndex
+     */
+    public CatalogSearchIndex<Type> getSearchIndex() {
+      if(searchIndex == null) {
+        searchIndex = new CatalogSearchIndex<>(this.data);
+      }
+      return searchIndex;
+    }
+
+    private void recordChange(ListChange<Type> change) {
+      if(pendingChanges != null) {
+        pendingChanges.add(change);
+      }
+    }
+
     public Type findMatch(Type target) {
       for(Type obj: data) {
         if (target.equals(obj)) {
@@ -127,6 +191,7 @@ public class Dataset extends ArrayAdapter<Dataset.LanguageDataset> implements Li
         Dataset.this.setNotifyOnChange(false);
       }
 
+      recordChange(ListChange.inserted(object, getCount()));
       super.add(object);
 
       LanguageDataset data = getMetadataFor(object); // We can ignore the return; this makes sure the needed object is constructed.
@@ -158,6 +223,10 @@ public class Dataset extends ArrayAdapter<Dataset.LanguageDataset> implements Li
         Dataset.this.setNotifyOnChange(false);
       }
 
+      int position = getCount();
+      for(Type item: collection) {
+        recordChange(ListChange.<Type>inserted(item, position++));
+      }
       super.addAll(collection);
 
       HashSet<String> mutatedLanguages = new HashSet<>();
@@ -192,6 +261,10 @@ public class Dataset extends ArrayAdapter<Dataset.LanguageDataset> implements Li
         Dataset.this.setNotifyOnChange(false);
       }
 
+      int position = getPosition(object);
+      if(position >= 0) {
+        recordChange(ListChange.removed(object, position));
+      }
       super.remove(object);
 
       LanguageDataset data = getMetadataFor(object);
@@ -220,6 +293,9 @@ public class Dataset extends ArrayAdapter<Dataset.LanguageDataset> implements Li
       // but that list itself may be modified by this adapter's functions!
       List<Type> clearedItems = new ArrayList<>(this.asList());
 
+      for(int i = clearedItems.size() - 1; i >= 0; i--) {
+        recordChange(ListChange.removed(clearedItems.get(i), i));
+      }
       super.clear();
 
       for(Type object: clearedItems) {
@@ -238,6 +314,105 @@ public class Dataset extends ArrayAdapter<Dataset.LanguageDataset> implements Li
       }
     }
 
+    /**
+     * Update the adapter to hold exactly the given items without clearing it first, so linked
+     * views never see an empty intermediate state.  Items no longer present are removed, new items
+     * are added, and a different instance of an existing item replaces it in place.
+     * Observers are only notified if something changed.
+     * @param items the new contents
+     * @return boolean - true if the contents changed
+     */
+    public boolean replaceAll(@NonNull Collection<? extends Type> items) {
+      boolean notify = doNotify; // Save initial value.
+      if(notify) {
+        Dataset.this.setNotifyOnChange(false);
+      }
+
+      Map<Type, Type> incoming = new LinkedHashMap<>();
+      for(Type item: items) {
+        incoming.put(item, item);
+      }
+
+      boolean changed = false;
+      List<Type> existingItems = new ArrayList<>(this.asList());
+      for(Type existing: existingItems) {
+        Type replacement = incoming.remove(existing);
+        if(replacement == null) {
+          recordChange(ListChange.removed(existing, getPosition(existing)));
+          super.remove(existing);
+          removeFromMetadata(existing);
+          handleLanguageItemRemoval(existing);
+          changed = true;
+        } else if(replacement != existing) {
+          int position = getPosition(existing);
+          recordChange(ListChange.removed(existing, position));
+          recordChange(ListChange.inserted(replacement, position));
+          super.remove(existing);
+          super.insert(replacement, position);
+          removeFromMetadata(existing);
+          addToMetadata(replacement);
+          changed = true;
+        }
+      }
+
+      for(Type item: incoming.values()) {
+        recordChange(ListChange.inserted(item, getCount()));
+        super.add(item);
+        addToMetadata(item);
+        changed = true;
+      }
+
+      if(notify) {
+        if(changed) {
+          Dataset.this.notifyDataSetChanged();
+        } else {
+          Dataset.this.setNotifyOnChange(true);
+        }
+      }
+      return changed;
+    }
+
+    @Override
+    public void insert(@Nullable Type object, int index) {
+      boolean notify = doNotify; // Save initial value.
+      if(notify) {
+        Dataset.this.setNotifyOnChange(false);
+      }
+
+      recordChange(ListChange.inserted(object, index));
+      super.insert(object, index);
+      addToMetadata(object);
+
+      if(notify) {
+        Dataset.this.notifyDataSetChanged();
+      }
+    }
+
+    @Override
+    public void sort(@NonNull Comparator<? super Type> comparator) {
+      // A reordering isn't worth describing change by change; have linked adapters reload instead.
+      pendingChanges = null;
+      super.sort(comparator);
+    }
+
+    private void addToMetadata(Type object) {
+      LanguageDataset data = getMetadataFor(object);
+      if(object instanceof Keyboard) {
+        data.keyboards.add((Keyboard) object);
+      } else if(object instanceof LexicalModel) {
+        data.lexicalModels.add((LexicalModel) object);
+      }
+    }
+
+    private void removeFromMetadata(Type object) {
+      LanguageDataset data = getMetadataFor(object);
+      if(object instanceof Keyboard) {
+        data.keyboards.remove(object);
+      } else if(object instanceof LexicalModel) {
+        data.lexicalModels.remove(object);
+      }
+    }
+
     @Override
     public void setNotifyOnChange(boolean notify) {
       super.setNotifyOnChange(notify);
@@ -257,6 +432,16 @@ public class Dataset extends ArrayAdapter<Dataset.LanguageDataset> implements Li
 
     void _notifyDataSetChanged() {
       doNotify = true;
+
+      List<ListChange<Type>> changes = pendingChanges;
+      pendingChanges = new ArrayList<>();
+      if(changes == null || !changes.isEmpty()) {
+        searchIndex = null;
+      }
+      for(ListChangeObserver<Type> observer: new ArrayList<>(changeObservers)) {
+        observer.onListChanged(changes);
+      }
+
       super.notifyDataSetChanged();
     }
 
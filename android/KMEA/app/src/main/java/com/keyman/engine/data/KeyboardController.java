@@ -299,6 +299,7 @@ public class KeyboardController {
       // Add new keyboard
       list.add(newKeyboard);
     }
+    KMLog.invalidateDebugInfo();
   }
 
   /**
@@ -320,6 +321,7 @@ public class KeyboardController {
     synchronized (list) {
       list.set(index, currentKeyboard);
     }
+    KMLog.invalidateDebugInfo();
   }
 
   /**
@@ -337,6 +339,7 @@ public class KeyboardController {
         list.remove(index);
       }
     }
+    KMLog.invalidateDebugInfo();
   }
 
   /**
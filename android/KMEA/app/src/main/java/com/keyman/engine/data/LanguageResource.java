@@ -9,7 +9,6 @@ import android.os.Bundle;
 import com.keyman.engine.KMManager;
 import com.keyman.engine.util.FileUtils;
 import com.keyman.engine.util.KMLog;
-import com.keyman.engine.util.KMString;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -38,6 +37,10 @@ public abstract class LanguageResource implements Serializable {
 
   private static final String TAG = "LanguageResource";
 
+  // Identity cached on first use.  Reset whenever the resource or language ID changes.
+  private transient String key;
+  private transient int hash;
+
   public String getResourceID() { return resourceID; }
 
   public String getResourceName() { return resourceName; }
@@ -52,6 +55,7 @@ public abstract class LanguageResource implements Serializable {
   public void setLanguage(String languageID, String languageName) {
     this.languageID = languageID;
     this.languageName = languageName;
+    resetIdentity();
   }
 
   public String getVersion() { return version; }
@@ -83,16 +87,49 @@ public abstract class LanguageResource implements Serializable {
   }
 
   public int hashCode() {
-    String id = getResourceID();
-    String lgCode = getLanguageID();
-    if (id == null || lgCode == null) {
-      KMLog.LogError("LanguageResource", "Invalid hashCode");
+    int h = hash;
+    if (h == 0) {
+      String id = getResourceID();
+      String lgCode = getLanguageID();
+      if (id == null || lgCode == null) {
+        KMLog.LogError("LanguageResource", "Invalid hashCode");
+        return 0;
+      }
+      // Language IDs are compared case-insensitively by equals()
+      h = 31 * id.hashCode() + lgCode.toLowerCase().hashCode();
+      // Spread the bits so similar IDs don't cluster in hash tables
+      h ^= h >>> 16;
+      h *= 0x85ebca6b;
+      h ^= h >>> 13;
+      h *= 0xc2b2ae35;
+      h ^= h >>> 16;
+      hash = h;
     }
-    return id.hashCode() * lgCode.hashCode();
+    return h;
   }
 
   public String getKey() {
-    return KMString.format("%s_%s", languageID, resourceID);
+    String k = key;
+    if (k == null) {
+      k = buildKey();
+      key = k;
+    }
+    return k;
+  }
+
+  /**
+   * @return String - the key returned by getKey(), built from the current properties
+   */
+  protected String buildKey() {
+    return languageID + "_" + resourceID;
+  }
+
+  /**
+   * Clear the cached key and hash code after the properties they're built from change
+   */
+  protected void resetIdentity() {
+    key = null;
+    hash = 0;
   }
 
   public abstract Bundle buildDownloadBundle();
@@ -143,6 +180,7 @@ public abstract class LanguageResource implements Serializable {
     } catch (JSONException e) {
       KMLog.LogException(TAG, "fromJSON() exception: ", e);
     }
+    resetIdentity();
   }
 
   public JSONObject toJSON() {
@@ -12,7 +12,6 @@ import com.keyman.engine.KMManager;
 import com.keyman.engine.util.BCP47;
 import com.keyman.engine.util.FileUtils;
 import com.keyman.engine.util.KMLog;
-import com.keyman.engine.util.KMString;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -100,8 +99,8 @@ public class LexicalModel extends LanguageResource implements Serializable {
   }
 
   @Override
-  public String getKey() {
-    return KMString.format("%s_%s_%s", packageID, languageID, resourceID);
+  protected String buildKey() {
+    return packageID + "_" + languageID + "_" + resourceID;
   }
 
   public String getLexicalModelID() { return getResourceID(); }
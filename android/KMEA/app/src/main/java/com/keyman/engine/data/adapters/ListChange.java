@@ -0,0 +1,60 @@
+package com.keyman.engine.data.adapters;
+
+/**
+ * A single structural change to a ListBacked adapter.  Positions refer to the list as it was
+ * after all earlier changes of the same change set were applied.
+ * @param <Element> The type of the adapter's elements.
+ */
+public final class ListChange<Element> {
+  public enum Type {
+    INSERT,
+    REMOVE,
+    MOVE
+  }
+
+  private final Type type;
+  private final Element element;
+  private final int fromPosition;
+  private final int toPosition;
+
+  private ListChange(Type type, Element element, int fromPosition, int toPosition) {
+    this.type = type;
+    this.element = element;
+    this.fromPosition = fromPosition;
+    this.toPosition = toPosition;
+  }
+
+  public static <E> ListChange<E> inserted(E element, int position) {
+    return new ListChange<>(Type.INSERT, element, -1, position);
+  }
+
+  public static <E> ListChange<E> removed(E element, int position) {
+    return new ListChange<>(Type.REMOVE, element, position, -1);
+  }
+
+  public static <E> ListChange<E> moved(E element, int fromPosition, int toPosition) {
+    return new ListChange<>(Type.MOVE, element, fromPosition, toPosition);
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public Element getElement() {
+    return element;
+  }
+
+  /**
+   * @return int - the element's position before a REMOVE or MOVE, or -1 for an INSERT
+   */
+  public int getFromPosition() {
+    return fromPosition;
+  }
+
+  /**
+   * @return int - the element's position after an INSERT or MOVE, or -1 for a REMOVE
+   */
+  public int getToPosition() {
+    return toPosition;
+  }
+}
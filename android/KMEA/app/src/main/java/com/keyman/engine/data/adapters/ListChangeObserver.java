@@ -0,0 +1,16 @@
+package com.keyman.engine.data.adapters;
+
+import java.util.List;
+
+/**
+ * Receives the change sets of a ListChangeSource.
+ * @param <Element> The type of the source adapter's elements.
+ */
+public interface ListChangeObserver<Element> {
+  /**
+   * Called just before the source's DataSetObservers are notified.
+   * @param changes The changes since the previous notification, in the order they were made,
+   *                or null if they can't be described and the whole list must be reloaded.
+   */
+  void onListChanged(List<ListChange<Element>> changes);
+}
@@ -0,0 +1,12 @@
+package com.keyman.engine.data.adapters;
+
+/**
+ * An adapter that reports its mutations as change sets, allowing linked NestedAdapters to update
+ * themselves incrementally rather than reloading everything on each change.
+ * @param <Element> The type of the adapter's elements.
+ */
+public interface ListChangeSource<Element> {
+  void registerListChangeObserver(ListChangeObserver<Element> observer);
+
+  void unregisterListChangeObserver(ListChangeObserver<Element> observer);
+}
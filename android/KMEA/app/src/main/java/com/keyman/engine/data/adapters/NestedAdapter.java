@@ -13,6 +13,7 @@ import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -38,29 +39,49 @@ public class NestedAdapter<Element, A extends ArrayAdapter<Element> & ListBacked
    * @param <S> The type of the 'wrapped' source ArrayAdapter (possibly a subclass).
    * @param <A> The type of the 'listener' NestedAdapter, complete with its generic type parameters.
    */
-  static class WrapperObserver<E, S extends ArrayAdapter<E> & ListBacked<E>, A extends NestedAdapter<E, S, F>, F> extends DataSetObserver {
+  static class WrapperObserver<E, S extends ArrayAdapter<E> & ListBacked<E>, A extends NestedAdapter<E, S, F>, F> extends DataSetObserver implements ListChangeObserver<E> {
     // By being static and using a WeakReference here, we avoid memory leaks that would otherwise
     // prevent our owner from being GC'd.
     private WeakReference<A> listenerRef;
     private S source;
     private final F filterArg;
 
+    // Set when the change set preceding the next onChanged() was applied incrementally.
+    private boolean changesApplied = false;
+
     WrapperObserver(A listener, S source, F filterArg) {
       this.listenerRef = new WeakReference<>(listener);
       this.source = source;
       this.filterArg = filterArg;
     }
 
+    @Override
+    public void onListChanged(List<ListChange<E>> changes) {
+      A listener = listenerRef.get();
+      if(listener == null) {
+        disconnect();
+        return;
+      } else if(listener.isMutating) {
+        return;
+      }
+      changesApplied = listener.applyChanges(changes, this.filterArg);
+    }
+
     @Override
     public void onChanged() {
       A listener = listenerRef.get();
       if(listener == null) {
         // Our listener has been GC'd.  Time to disconnect and allow this instance to be GC'd, too.
-        source.unregisterDataSetObserver(this);
+        disconnect();
         return;
       } else if(listener.isMutating){
         // This event was triggered by a reaction to what our owning listener did.  No need to update.
         return;
+      } else if(changesApplied) {
+        // Our list is already up to date; we just need to signal the change.
+        changesApplied = false;
+        listener.notifyDataSetChanged();
+        return;
       }
       listener.setNotifyOnChange(false); // Disable event notifications temporarily.
       listener._internalClear();
@@ -73,24 +94,37 @@ public class NestedAdapter<Element, A extends ArrayAdapter<Element> & ListBacked
       A listener = listenerRef.get();
       if(listener == null) {
         // Our listener has been GC'd.  Time to disconnect and allow this instance to be GC'd, too.
-        source.unregisterDataSetObserver(this);
+        disconnect();
         return;
       }
       listener.notifyDataSetInvalidated();
     }
+
+    @SuppressWarnings("unchecked")
+    void disconnect() {
+      source.unregisterDataSetObserver(this);
+      if(source instanceof ListChangeSource) {
+        ((ListChangeSource<E>) source).unregisterListChangeObserver(this);
+      }
+    }
+  }
+
+  /**
+   * The default filter, selecting every element in the wrapped adapter's order.
+   */
+  private static class SourceOrderFilter<E, S extends ArrayAdapter<E> & ListBacked<E>, F> implements AdapterFilter<E, S, F> {
+    @Override
+    public List<E> selectFrom(S adapter, F dummy) {
+      // Make sure to duplicate the list so that we don't accidentally try to modify our
+      // wrapped adapter's (unmodifiable) contents.
+      return new ArrayList<>(adapter.asList());
+    }
   }
 
   private final WrapperObserver<Element, A, NestedAdapter<Element, A, FilterArg>, FilterArg> observer;
 
   public NestedAdapter(@NonNull Context context, int resource, @NonNull A adapter) {
-    this(context, resource, adapter, new AdapterFilter<Element, A, FilterArg>() {
-        @Override
-        public List<Element> selectFrom(A adapter, FilterArg dummy) {
-          // Make sure to duplicate the list so that we don't accidentally try to modify our
-          // wrapped adapter's (unmodifiable) contents.
-          return new ArrayList<>(adapter.asList());
-        }
-    }, null);
+    this(context, resource, adapter, new SourceOrderFilter<Element, A, FilterArg>(), null);
   }
 
   public NestedAdapter(@NonNull Context context, int resource, @NonNull A adapter, AdapterFilter<Element, A, FilterArg> filter, FilterArg filterArg) {
@@ -106,12 +140,16 @@ public class NestedAdapter<Element, A extends ArrayAdapter<Element> & ListBacked
   //
   // Could probably throw an extra parameter on for an 'internal' version
   // and use the current signature as a 'helper' like with the constructor above?
+  @SuppressWarnings("unchecked")
   protected NestedAdapter(@NonNull Context context, int resource, @NonNull A adapter, AdapterFilter<Element, A, FilterArg> filter, FilterArg filterArg, List<Element> filteredList) {
     super(context, resource, filteredList);
 
     this.wrappedAdapter = adapter;
     observer = new WrapperObserver<>(this, adapter, filterArg);
     this.wrappedAdapter.registerDataSetObserver(observer);
+    if(adapter instanceof ListChangeSource) {
+      ((ListChangeSource<Element>) adapter).registerListChangeObserver(observer);
+    }
 
     this.filter = filter;
     this.filteredList = filteredList;
@@ -119,7 +157,7 @@ public class NestedAdapter<Element, A extends ArrayAdapter<Element> & ListBacked
 
   @Override
   public void notifyDataSetInvalidated() {
-    this.wrappedAdapter.unregisterDataSetObserver(this.observer);
+    this.observer.disconnect();
   }
 
   @Override
@@ -183,6 +221,95 @@ public class NestedAdapter<Element, A extends ArrayAdapter<Element> & ListBacked
     return Collections.unmodifiableList(this.filteredList);
   }
 
+  /**
+   * Applies a change set from the wrapped adapter to our own list without re-running the filter.
+   * Only possible for the default filter, which mirrors the wrapped adapter's positions, and for
+   * SortedAdapterFilters, whose elements are placed by binary search.
+   * Does not send notifications; the wrapped adapter's following onChanged() event does that.
+   * @param changes The change set, or null if the wrapped adapter must be reloaded.
+   * @param filterArg The argument for our filter.
+   * @return true if the changes were applied, false if the list must be reloaded through the filter.
+   */
+  @SuppressWarnings("unchecked")
+  boolean applyChanges(List<ListChange<Element>> changes, FilterArg filterArg) {
+    if(changes == null) {
+      return false;
+    }
+
+    if(filter instanceof SourceOrderFilter) {
+      for(ListChange<Element> change: changes) {
+        switch(change.getType()) {
+          case INSERT:
+            filteredList.add(Math.min(change.getToPosition(), filteredList.size()), change.getElement());
+            break;
+          case REMOVE:
+            removeAt(change.getFromPosition(), change.getElement());
+            break;
+          case MOVE:
+            removeAt(change.getFromPosition(), change.getElement());
+            filteredList.add(Math.min(change.getToPosition(), filteredList.size()), change.getElement());
+            break;
+        }
+      }
+      return true;
+    } else if(filter instanceof SortedAdapterFilter) {
+      SortedAdapterFilter<Element, A, FilterArg> sortedFilter = (SortedAdapterFilter<Element, A, FilterArg>) filter;
+      Comparator<? super Element> comparator = sortedFilter.getComparator();
+
+      for(ListChange<Element> change: changes) {
+        Element element = change.getElement();
+        switch(change.getType()) {
+          case INSERT:
+            if(sortedFilter.matches(element, filterArg)) {
+              int insertAt = Collections.binarySearch(filteredList, element, comparator);
+              filteredList.add(insertAt < 0 ? -(insertAt + 1) : insertAt + 1, element);
+            }
+            break;
+          case REMOVE:
+            int position = indexOfSorted(element, comparator);
+            if(position >= 0) {
+              filteredList.remove(position);
+            }
+            break;
+          case MOVE:
+            // Our order comes from the filter, not from the wrapped adapter.
+            break;
+        }
+      }
+      return true;
+    }
+
+    return false;
+  }
+
+  private void removeAt(int position, Element element) {
+    if(position >= 0 && position < filteredList.size() && filteredList.get(position).equals(element)) {
+      filteredList.remove(position);
+    } else {
+      filteredList.remove(element);
+    }
+  }
+
+  // Finds the element itself among any neighbours that sort equally to it.
+  private int indexOfSorted(Element element, Comparator<? super Element> comparator) {
+    int found = Collections.binarySearch(filteredList, element, comparator);
+    if(found < 0) {
+      return -1;
+    }
+
+    for(int i = found; i >= 0 && comparator.compare(filteredList.get(i), element) == 0; i--) {
+      if(filteredList.get(i).equals(element)) {
+        return i;
+      }
+    }
+    for(int i = found + 1; i < filteredList.size() && comparator.compare(filteredList.get(i), element) == 0; i++) {
+      if(filteredList.get(i).equals(element)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
   // These methods allow bypassing of our externally-visible 'linking' versions for operations
   // triggered by the other end of the link.
   protected void _internalAddAll(@NonNull Collection<? extends Element> collection) {
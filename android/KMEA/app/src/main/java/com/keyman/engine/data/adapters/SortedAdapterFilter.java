@@ -0,0 +1,23 @@
+package com.keyman.engine.data.adapters;
+
+import android.widget.ArrayAdapter;
+
+import java.util.Comparator;
+
+/**
+ * An AdapterFilter whose selection can be tested one element at a time and is kept in a fixed
+ * order.  This lets NestedAdapters apply a ListChangeSource's change sets with a binary search
+ * instead of re-running selectFrom and re-sorting.
+ * @param <Element> The type of both Adapters' elements.
+ */
+public interface SortedAdapterFilter<Element, Adapter extends ArrayAdapter<Element>, FilterArg> extends AdapterFilter<Element, Adapter, FilterArg> {
+  /**
+   * @return true if selectFrom would include the element.
+   */
+  boolean matches(Element element, FilterArg argument);
+
+  /**
+   * @return The order of the lists returned by selectFrom.
+   */
+  Comparator<? super Element> getComparator();
+}
@@ -26,12 +26,17 @@ import com.keyman.engine.KeyboardPickerActivity;
 import com.keyman.engine.KMManager;
 import com.keyman.engine.KeyboardEventHandler;
 import com.keyman.engine.R;
+import com.keyman.engine.cloud.CloudApiTypes;
+import com.keyman.engine.cloud.CloudDownloadMgr;
+import com.keyman.engine.cloud.impl.CloudKeyboardPackageDownloadCallback;
+import com.keyman.engine.cloud.impl.CloudLexicalPackageDownloadCallback;
 import com.keyman.engine.data.CloudRepository;
 import com.keyman.engine.util.KMLog;
 import com.keyman.engine.util.VersionUtils;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
@@ -77,6 +82,9 @@ public class ResourcesUpdateTool implements KeyboardEventHandler.OnKeyboardDownl
    */
   public static final int MONTHS_TO_IGNORE_NOTIFICATION = 3;
 
+  private static final String KEYBOARD_UPDATES_DOWNLOAD_ID = "keyboard_updates";
+  private static final String LEXICAL_MODEL_UPDATES_DOWNLOAD_ID = "dictionary_updates";
+
   private static final class OngoingUpdate
   {
     Integer notificationid;
@@ -607,12 +615,43 @@ public class ResourcesUpdateTool implements KeyboardEventHandler.OnKeyboardDownl
    */
   public void executeOpenUpdates()
   {
+    // Download all the keyboard updates as one download set, and all the lexical model updates
+    // as another, so the packages are installed and committed to the registry together
+    ArrayList<CloudApiTypes.CloudApiParam> keyboardParams = new ArrayList<>();
+    ArrayList<CloudApiTypes.CloudApiParam> lexicalModelParams = new ArrayList<>();
     for(OngoingUpdate _up:openUpdates.values())
     {
-      Intent intent = new Intent(currentContext, KMKeyboardDownloaderActivity.class);
-      intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-      intent.putExtras(_up.bundle);
-      currentContext.startActivity(intent);
+      String url = _up.bundle.getString(KMKeyboardDownloaderActivity.ARG_KMP_LINK);
+      if (url == null || url.isEmpty()) {
+        // Fall back to the download confirmation for this update
+        Intent intent = new Intent(currentContext, KMKeyboardDownloaderActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        intent.putExtras(_up.bundle);
+        currentContext.startActivity(intent);
+        continue;
+      }
+
+      String modelID = _up.bundle.getString(KMKeyboardDownloaderActivity.ARG_MODEL_ID);
+      if (modelID != null && !modelID.isEmpty()) {
+        lexicalModelParams.add(new CloudApiTypes.CloudApiParam(
+          CloudApiTypes.ApiTarget.LexicalModelPackage, url));
+      } else {
+        keyboardParams.add(new CloudApiTypes.CloudApiParam(
+          CloudApiTypes.ApiTarget.KeyboardPackage, url)
+          .setAdditionalProperty(CloudKeyboardPackageDownloadCallback.PARAM_LANGUAGE_ID,
+            _up.bundle.getString(KMKeyboardDownloaderActivity.ARG_LANG_ID)));
+      }
+    }
+
+    if (!keyboardParams.isEmpty()) {
+      CloudDownloadMgr.getInstance().executeAsDownload(
+        currentContext, KEYBOARD_UPDATES_DOWNLOAD_ID, null, new CloudKeyboardPackageDownloadCallback(),
+        keyboardParams.toArray(new CloudApiTypes.CloudApiParam[0]));
+    }
+    if (!lexicalModelParams.isEmpty()) {
+      CloudDownloadMgr.getInstance().executeAsDownload(
+        currentContext, LEXICAL_MODEL_UPDATES_DOWNLOAD_ID, null, new CloudLexicalPackageDownloadCallback(),
+        lexicalModelParams.toArray(new CloudApiTypes.CloudApiParam[0]));
     }
   }
 }
@@ -0,0 +1,439 @@
+/**
+ * Copyright (C) 2026 SIL International. All rights reserved.
+ */
+package com.keyman.engine.packages;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.keyman.engine.KMManager;
+import com.keyman.engine.KeyboardEventHandler;
+import com.keyman.engine.KeyboardEventHandler.EventType;
+import com.keyman.engine.KeyboardEventHandler.OnBundledPackageEventListener;
+import com.keyman.engine.JSONParser;
+import com.keyman.engine.util.FileUtils;
+import com.keyman.engine.util.KMLog;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Installs the .kmp packages bundled in the app assets (e.g. sil_euro_latin.kmp, nrc.en.mtnt.model.kmp,
+ * or OEM bundles like fv_all.kmp).
+ *
+ * Each package moves through a state machine (PENDING -> COPIED -> EXTRACTED -> INSTALLED) which is
+ * persisted to disk, so a bootstrap interrupted by the process being killed resumes from the last
+ * completed step on the next launch.
+ *
+ * The default keyboard and dictionary packages, and any packages the host app requires at startup
+ * (see addRequiredPackage()), are installed synchronously so they are usable immediately. The remaining
+ * packages are installed in parallel on a background executor, and progress is reported to
+ * OnBundledPackageEventListener listeners on the main thread.
+ */
+public final class BundledPackageBootstrap {
+  private static final String TAG = "BundledPackageBootstrap";
+
+  public static final String KMFilename_BootstrapState = "bundled_packages_state.json";
+
+  private static final int MAX_THREADS = 4;
+
+  public enum State {
+    PENDING,   // Package not yet copied from the assets
+    COPIED,    // .kmp copied to the resource root
+    EXTRACTED, // .kmp extracted to its temporary package folder
+    INSTALLED, // Package installed (or skipped because it would be a downgrade)
+    FAILED;    // Package could not be installed. Not retried, matching earlier Keyman versions
+  }
+
+  private static BundledPackageBootstrap instance = null;
+
+  private static ArrayList<OnBundledPackageEventListener> bundledPackageEventListeners = null;
+
+  // Packages the host app needs before KMManager.initialize() returns
+  private static final CopyOnWriteArrayList<String> requiredPackages = new CopyOnWriteArrayList<String>();
+
+  /**
+   * Source of the bundled packages. The app assets, except in tests
+   */
+  interface AssetSource {
+    String[] list() throws IOException;
+    InputStream open(String assetFile) throws IOException;
+  }
+
+  private final Context context;
+  private final File resourceRoot;
+  private final File stateFile;
+  private final JSONObject states;
+  private final AssetSource assets;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  // Runs the background installs. When null, a thread pool is created by start()
+  private final Executor backgroundExecutor;
+  private boolean isStarted = false;
+  private final AtomicInteger completedCount = new AtomicInteger(0);
+  private int totalCount = 0;
+  private volatile boolean isComplete = false;
+
+  BundledPackageBootstrap(Context context, File resourceRoot, AssetSource assets, Executor backgroundExecutor) {
+    this.context = context.getApplicationContext();
+    this.resourceRoot = resourceRoot;
+    this.stateFile = new File(resourceRoot, KMFilename_BootstrapState);
+    this.states = loadStates(stateFile);
+    this.assets = assets;
+    this.backgroundExecutor = backgroundExecutor;
+  }
+
+  public static synchronized BundledPackageBootstrap getInstance(Context context) {
+    if (instance == null || KMManager.isTestMode()) {
+      final AssetManager assetManager = context.getAssets();
+      AssetSource assets = new AssetSource() {
+        @Override
+        public String[] list() throws IOException {
+          return assetManager.list("");
+        }
+
+        @Override
+        public InputStream open(String assetFile) throws IOException {
+          return assetManager.open(assetFile);
+        }
+      };
+      // Install everything before returning in test mode
+      Executor executor = KMManager.isTestMode() ? new Executor() {
+        @Override
+        public void execute(Runnable command) {
+          command.run();
+        }
+      } : null;
+      instance = new BundledPackageBootstrap(context, new File(KMManager.getResourceRoot()), assets, executor);
+    }
+    return instance;
+  }
+
+  /**
+   * Require a bundled package to be installed before KMManager.initialize() returns, rather than
+   * in the background. Use for packages the app reads from immediately after initialize(),
+   * e.g. an OEM package containing the app's keyboard list. Call before KMManager.initialize().
+   * @param assetFile String - filename of the .kmp in the assets, e.g. "fv_all.kmp"
+   */
+  public static void addRequiredPackage(String assetFile) {
+    if (assetFile != null) {
+      requiredPackages.addIfAbsent(assetFile);
+    }
+  }
+
+  public static void removeRequiredPackage(String assetFile) {
+    requiredPackages.remove(assetFile);
+  }
+
+  public static void addBundledPackageEventListener(OnBundledPackageEventListener listener) {
+    if (bundledPackageEventListeners == null) {
+      bundledPackageEventListeners = new ArrayList<OnBundledPackageEventListener>();
+    }
+
+    if (listener != null && !bundledPackageEventListeners.contains(listener)) {
+      bundledPackageEventListeners.add(listener);
+    }
+  }
+
+  public static void removeBundledPackageEventListener(OnBundledPackageEventListener listener) {
+    if (bundledPackageEventListeners != null) {
+      bundledPackageEventListeners.remove(listener);
+    }
+  }
+
+  /**
+   * @return boolean - true when all bundled packages have been processed
+   */
+  public boolean isComplete() {
+    return isComplete;
+  }
+
+  /**
+   * Get the persisted state of a bundled package
+   * @param assetFile String - filename of the .kmp in the assets
+   * @return State
+   */
+  public State getState(String assetFile) {
+    synchronized (states) {
+      String state = states.optString(assetFile, null);
+      if (state == null) {
+        return State.PENDING;
+      }
+      try {
+        return State.valueOf(state);
+      } catch (IllegalArgumentException e) {
+        return State.PENDING;
+      }
+    }
+  }
+
+  /**
+   * Install the bundled packages. The default keyboard and dictionary packages and the required
+   * packages are installed before returning. The remaining packages are installed on a background executor,
+   * or synchronously in test mode.
+   */
+  public synchronized void start() {
+    if (isStarted) {
+      // Already running
+      return;
+    }
+
+    List<String> packages = new ArrayList<String>();
+    try {
+      String assetFiles[] = assets.list();
+      for (String assetFile : assetFiles) {
+        if (FileUtils.hasKeymanPackageExtension(assetFile) ||
+            FileUtils.hasLexicalModelPackageExtension(assetFile)) {
+          packages.add(assetFile);
+        }
+      }
+    } catch (IOException e) {
+      KMLog.LogException(TAG, "Unable to list bundled packages. Error: ", e);
+      return;
+    }
+
+    // Packages copied by earlier Keyman versions have no state; the .kmp existing meant
+    // it was already processed
+    for (String assetFile : packages) {
+      if (!hasState(assetFile) && new File(resourceRoot, assetFile).exists()) {
+        setState(assetFile, State.INSTALLED);
+      }
+    }
+
+    isStarted = true;
+    totalCount = packages.size();
+    completedCount.set(0);
+    isComplete = false;
+
+    if (totalCount == 0) {
+      isComplete = true;
+      notifyCompleted();
+      return;
+    }
+
+    // Make the default keyboard, its dictionary and the packages the app requires usable first.
+    // The default dictionary is registered by DefaultLanguageResource.install() right after
+    // KMManager.initialize()
+    if (packages.remove(KMManager.KMDefault_KeyboardKMP)) {
+      bootstrap(KMManager.KMDefault_KeyboardKMP);
+    }
+    if (packages.remove(KMManager.KMDefault_DictionaryKMP)) {
+      bootstrap(KMManager.KMDefault_DictionaryKMP);
+    }
+    for (String assetFile : requiredPackages) {
+      if (packages.remove(assetFile)) {
+        bootstrap(assetFile);
+      }
+    }
+
+    if (packages.isEmpty()) {
+      return;
+    }
+
+    if (backgroundExecutor != null) {
+      for (final String assetFile : packages) {
+        backgroundExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            bootstrap(assetFile);
+          }
+        });
+      }
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_THREADS,
+      Math.max(1, Runtime.getRuntime().availableProcessors() - 1)));
+    for (final String assetFile : packages) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          bootstrap(assetFile);
+        }
+      });
+    }
+    executor.shutdown();
+  }
+
+  /**
+   * Run the state machine for a bundled package until it is INSTALLED or FAILED.
+   * @param assetFile String - filename of the .kmp in the assets
+   */
+  private void bootstrap(String assetFile) {
+    PackageProcessor kmpProcessor = new PackageProcessor(resourceRoot);
+    File kmpFile = new File(resourceRoot, assetFile);
+    File tempPackagePath = null;
+
+    try {
+      // Record the package before copying it, so an interrupted copy isn't mistaken for a
+      // package installed by an earlier Keyman version
+      if (!hasState(assetFile)) {
+        setState(assetFile, State.PENDING);
+      }
+
+      State state = getState(assetFile);
+      while (state != State.INSTALLED && state != State.FAILED) {
+        switch (state) {
+          case PENDING:
+            copyAsset(assetFile, kmpFile);
+            state = State.COPIED;
+            break;
+
+          case COPIED:
+            if (!kmpFile.exists()) {
+              state = State.PENDING;
+              continue;
+            }
+            // Discard anything left from an interrupted extraction
+            FileUtils.deleteDirectory(kmpProcessor.constructPath(kmpFile, true));
+            tempPackagePath = kmpProcessor.unzipKMP(kmpFile);
+            state = State.EXTRACTED;
+            break;
+
+          case EXTRACTED:
+            tempPackagePath = kmpProcessor.constructPath(kmpFile, true);
+            if (!new File(tempPackagePath, PackageProcessor.PP_DEFAULT_METADATA).exists()) {
+              state = State.COPIED;
+              continue;
+            }
+            state = install(kmpProcessor, assetFile, kmpFile, tempPackagePath) ?
+              State.INSTALLED : State.FAILED;
+
+            // Cleanup tempPackagePath
+            if (tempPackagePath.exists()) {
+              FileUtils.deleteDirectory(tempPackagePath);
+            }
+            break;
+        }
+        setState(assetFile, state);
+      }
+    } catch (Exception e) {
+      KMLog.LogException(TAG, "Failed to install bundled package " + assetFile + ". Error: ", e);
+      setState(assetFile, State.FAILED);
+    }
+
+    int completed = completedCount.incrementAndGet();
+    notifyProgress(assetFile, completed);
+    if (completed == totalCount) {
+      isComplete = true;
+      notifyCompleted();
+    }
+  }
+
+  private boolean install(PackageProcessor kmpProcessor, String assetFile, File kmpFile, File tempPackagePath) {
+    // Determine package info
+    JSONObject pkgInfo = kmpProcessor.loadPackageInfo(tempPackagePath);
+    if (pkgInfo == null) {
+      KMLog.LogError(TAG, "Invalid kmp.json in default asset " + assetFile);
+      return false;
+    }
+    String assetPackageTarget = kmpProcessor.getPackageTarget(pkgInfo);
+
+    // Only install if asset package is not a downgrade
+    try {
+      if (assetPackageTarget.equals(PackageProcessor.PP_TARGET_KEYBOARDS)) {
+        if (!kmpProcessor.isDowngrade(kmpFile, true)) {
+          // Not using the list of entries returned from processKMP()
+          // because the main App will add the keyboard/lexical model info
+          kmpProcessor.processKMP(kmpFile, tempPackagePath, PackageProcessor.PP_KEYBOARDS_KEY);
+        }
+      } else if (assetPackageTarget.equals(PackageProcessor.PP_TARGET_LEXICAL_MODELS)) {
+        LexicalModelPackageProcessor lmkmpProcessor = new LexicalModelPackageProcessor(resourceRoot);
+        if (!lmkmpProcessor.isDowngrade(kmpFile)) {
+          lmkmpProcessor.processKMP(kmpFile, tempPackagePath, PackageProcessor.PP_LEXICAL_MODELS_KEY);
+        }
+      }
+    } catch (JSONException | IOException e) {
+      KMLog.LogException(TAG, "Unable to determine isDowngrade for " + kmpFile.toString(), e);
+    }
+    return true;
+  }
+
+  private void copyAsset(String assetFile, File destFile) throws IOException {
+    File tmpFile = new File(destFile.getPath() + ".tmp");
+    FileUtils.copy(assets.open(assetFile), new FileOutputStream(tmpFile));
+    if (destFile.exists()) {
+      destFile.delete();
+    }
+    if (!tmpFile.renameTo(destFile)) {
+      throw new IOException("Unable to rename " + tmpFile.getName());
+    }
+  }
+
+  private boolean hasState(String assetFile) {
+    synchronized (states) {
+      return states.has(assetFile);
+    }
+  }
+
+  private void setState(String assetFile, State state) {
+    synchronized (states) {
+      try {
+        states.put(assetFile, state.name());
+      } catch (JSONException e) {
+        KMLog.LogException(TAG, "Unable to set state for " + assetFile, e);
+        return;
+      }
+      FileUtils.saveList(stateFile, states);
+    }
+  }
+
+  private static JSONObject loadStates(File stateFile) {
+    JSONObject states = null;
+    if (stateFile.exists()) {
+      JSONParser parser = new JSONParser();
+      states = parser.getJSONObjectFromFile(stateFile);
+    }
+    if (states == null) {
+      states = new JSONObject();
+    }
+    return states;
+  }
+
+  private void notifyProgress(final String assetFile, final int completed) {
+    final int total = totalCount;
+    runOnMainThread(new Runnable() {
+      @Override
+      public void run() {
+        KeyboardEventHandler.notifyListeners(bundledPackageEventListeners,
+          EventType.BUNDLED_PACKAGE_PROGRESS, assetFile, completed, total);
+      }
+    });
+  }
+
+  private void notifyCompleted() {
+    final int total = totalCount;
+    runOnMainThread(new Runnable() {
+      @Override
+      public void run() {
+        KeyboardEventHandler.notifyListeners(bundledPackageEventListeners,
+          EventType.BUNDLED_PACKAGES_COMPLETED, null, total, total);
+
+        // Clean up storage once installs have settled
+        StorageCompactor.scheduleCompaction(context);
+      }
+    });
+  }
+
+  private void runOnMainThread(Runnable runnable) {
+    if (KMManager.isTestMode() || Looper.myLooper() == Looper.getMainLooper()) {
+      runnable.run();
+    } else {
+      mainHandler.post(runnable);
+    }
+  }
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright (C) 2026 SIL International. All rights reserved.
+ */
+package com.keyman.engine.packages;
+
+import com.keyman.engine.KMManager;
+import com.keyman.engine.util.FileUtils;
+import com.keyman.engine.util.KMLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Installs several keyboard or lexical model packages at once.
+ *
+ * The packages are extracted in parallel and each one is validated against the expected package
+ * target before being moved into place. Packages with the same package ID are only installed once
+ * (the last one wins). The installed keyboard or lexical model info of every package is returned
+ * as a single list, so the caller can commit them to the registry together with
+ * KMManager.addKeyboards() or KMManager.addLexicalModels().
+ */
+public final class PackageBatchInstaller {
+  private static final String TAG = "PackageBatchInstaller";
+
+  private static final int MAX_THREADS = 4;
+
+  /**
+   * A package to install
+   */
+  public static final class Entry {
+    private final File kmpFile;
+    private final InputStream inputStream;
+    private final String languageID;
+
+    /**
+     * @param kmpFile File - path of the .kmp. When inputStream is null, the .kmp is extracted from here
+     * @param inputStream InputStream - the .kmp contents, or null. The stream is closed when done
+     * @param languageID String - preferred language ID for the first keyboard, or null
+     */
+    public Entry(File kmpFile, InputStream inputStream, String languageID) {
+      this.kmpFile = kmpFile;
+      this.inputStream = inputStream;
+      this.languageID = languageID;
+    }
+
+    public File getKmpFile() {
+      return kmpFile;
+    }
+
+    public String getLanguageID() {
+      return languageID;
+    }
+  }
+
+  private final PackageProcessor kmpProcessor;
+  private final String packageTarget;
+  private final String key;
+
+  /**
+   * @param resourceRoot File - Keyman data directory
+   * @param packageTarget String - PackageProcessor.PP_TARGET_KEYBOARDS or PackageProcessor.PP_TARGET_LEXICAL_MODELS
+   */
+  public PackageBatchInstaller(File resourceRoot, String packageTarget) {
+    this.packageTarget = packageTarget;
+    if (PackageProcessor.PP_TARGET_LEXICAL_MODELS.equals(packageTarget)) {
+      this.kmpProcessor = new LexicalModelPackageProcessor(resourceRoot);
+      this.key = PackageProcessor.PP_LEXICAL_MODELS_KEY;
+    } else {
+      this.kmpProcessor = new PackageProcessor(resourceRoot);
+      this.key = PackageProcessor.PP_KEYBOARDS_KEY;
+    }
+  }
+
+  /**
+   * Install the packages.
+   * @param entries List<Entry> packages to install
+   * @return List<Map<String, String>> - the installed keyboards or lexical models of all the packages.
+   * Packages which failed to extract or don't match the package target are skipped.
+   */
+  public List<Map<String, String>> install(List<Entry> entries) {
+    List<Map<String, String>> installed = new ArrayList<>();
+    if (entries == null || entries.isEmpty()) {
+      return installed;
+    }
+
+    // Only install a package ID once. Entries for skipped duplicates still need their streams closed
+    LinkedHashMap<String, Entry> entriesByPackageID = new LinkedHashMap<>();
+    for (Entry entry : entries) {
+      String packageID;
+      try {
+        packageID = kmpProcessor.getPackageID(entry.kmpFile);
+      } catch (IllegalArgumentException | IllegalStateException e) {
+        KMLog.LogException(TAG, "Invalid package " + entry.kmpFile.getName(), e);
+        closeQuietly(entry.inputStream);
+        continue;
+      }
+      Entry previous = entriesByPackageID.remove(packageID);
+      if (previous != null) {
+        closeQuietly(previous.inputStream);
+      }
+      entriesByPackageID.put(packageID, entry);
+    }
+
+    List<Entry> uniqueEntries = new ArrayList<>(entriesByPackageID.values());
+    List<File> extractedPaths = extract(uniqueEntries);
+
+    // Move the packages into place one at a time, in order
+    for (int i = 0; i < uniqueEntries.size(); i++) {
+      Entry entry = uniqueEntries.get(i);
+      File unzipPath = extractedPaths.get(i);
+      if (unzipPath == null) {
+        continue;
+      }
+      try {
+        String pkgTarget = kmpProcessor.getPackageTarget(kmpProcessor.loadPackageInfo(unzipPath));
+        if (!packageTarget.equals(pkgTarget)) {
+          KMLog.LogError(TAG, entry.kmpFile.getName() + " is not a " + packageTarget + " package");
+          FileUtils.deleteDirectory(unzipPath);
+          continue;
+        }
+
+        ArrayList<String> languageList = new ArrayList<String>();
+        if (entry.languageID != null && !entry.languageID.isEmpty()) {
+          languageList.add(entry.languageID);
+        }
+        installed.addAll(kmpProcessor.processKMP(entry.kmpFile, unzipPath, key, languageList));
+      } catch (Exception e) {
+        KMLog.LogException(TAG, "Unable to install " + entry.kmpFile.getName(), e);
+        if (unzipPath.exists()) {
+          FileUtils.deleteDirectory(unzipPath);
+        }
+      }
+    }
+
+    return installed;
+  }
+
+  /**
+   * Extract the entries to their temporary package folders in parallel.
+   * @param entries List<Entry> packages to extract
+   * @return List<File> - temporary package folders, in the same order as entries. null for failures
+   */
+  private List<File> extract(List<Entry> entries) {
+    List<Callable<File>> tasks = new ArrayList<>();
+    for (final Entry entry : entries) {
+      tasks.add(new Callable<File>() {
+        @Override
+        public File call() throws IOException {
+          return (entry.inputStream != null) ?
+            kmpProcessor.unzipKMP(entry.inputStream, entry.kmpFile) :
+            kmpProcessor.unzipKMP(entry.kmpFile);
+        }
+      });
+    }
+
+    List<File> paths = new ArrayList<>();
+    if (entries.size() == 1 || KMManager.isTestMode()) {
+      for (int i = 0; i < tasks.size(); i++) {
+        try {
+          paths.add(tasks.get(i).call());
+        } catch (Exception e) {
+          KMLog.LogException(TAG, "Unable to extract " + entries.get(i).kmpFile.getName(), e);
+          paths.add(null);
+        }
+      }
+      return paths;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_THREADS, entries.size()));
+    try {
+      List<Future<File>> futures = executor.invokeAll(tasks);
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          paths.add(futures.get(i).get());
+        } catch (ExecutionException e) {
+          KMLog.LogException(TAG, "Unable to extract " + entries.get(i).kmpFile.getName(), e.getCause());
+          paths.add(null);
+        }
+      }
+    } catch (InterruptedException e) {
+      KMLog.LogException(TAG, "Package extraction interrupted", e);
+      Thread.currentThread().interrupt();
+      while (paths.size() < entries.size()) {
+        paths.add(null);
+      }
+    } finally {
+      executor.shutdown();
+    }
+    return paths;
+  }
+
+  private static void closeQuietly(InputStream inputStream) {
+    if (inputStream == null) {
+      return;
+    }
+    try {
+      inputStream.close();
+    } catch (IOException e) {
+      // Ignore
+    }
+  }
+}
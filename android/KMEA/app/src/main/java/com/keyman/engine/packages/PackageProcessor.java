@@ -11,6 +11,7 @@ import com.keyman.engine.KMManager;
 import com.keyman.engine.JSONParser;
 import com.keyman.engine.data.Keyboard;
 import com.keyman.engine.data.KeyboardController;
+import com.keyman.engine.util.EngineMetrics;
 import com.keyman.engine.util.FileUtils;
 import com.keyman.engine.util.KMLog;
 import com.keyman.engine.util.ZipUtils;
@@ -18,6 +19,7 @@ import com.keyman.engine.util.ZipUtils;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -56,6 +58,7 @@ public class PackageProcessor {
   public static final String PP_LANGUAGES_KEY = "languages";
 
   private static final String TAG = "PackageProcessor";
+  private static final EngineMetrics.Timer processKMPTimer = EngineMetrics.timer("package.process");
 
   public PackageProcessor(File resourceRoot) {
     this.resourceRoot = resourceRoot;
@@ -130,6 +133,34 @@ public class PackageProcessor {
     return tempKeyboardPath;
   }
 
+  /**
+   * Extracts a .kmp stream to the temporary directory mapped from path, without the .kmp file
+   * needing to exist on disk. Used to install downloaded packages in a single pass.
+   * @param inputStream InputStream of the .kmp contents. The stream is closed when done.
+   * @param path The file path of the .kmp file, used to determine the package ID.
+   * @return The mapped temporary file path for the .kmp file's contents.
+   * @throws IOException Exception from unzipping
+   */
+  public File unzipKMP(InputStream inputStream, File path) throws IOException {
+    File tempKeyboardPath;
+    try {
+      tempKeyboardPath = constructPath(path, true);
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      inputStream.close();
+      throw e;
+    }
+    if (tempKeyboardPath.exists()) {
+      // Discard leftovers from an earlier failed install
+      FileUtils.deleteDirectory(tempKeyboardPath);
+    }
+    if (!tempKeyboardPath.mkdir()) {
+      KMLog.LogBreadcrumb(TAG, "Unable to mkdir for: " + tempKeyboardPath.toString(), true);
+    }
+    ZipUtils.unzip(inputStream, tempKeyboardPath);
+
+    return tempKeyboardPath;
+  }
+
   /**
    * Given temp path of extracted keyboard package kmp file and package ID,
    * move the tempPath to the permanent packages/ folder
@@ -765,6 +796,15 @@ public class PackageProcessor {
    * @throws JSONException
    */
   public List<Map<String, String>> processKMP(File path, File tempPath, String key, ArrayList<String> languageList) throws IOException, JSONException {
+    long startTime = processKMPTimer.start();
+    try {
+      return installKMP(path, tempPath, key, languageList);
+    } finally {
+      processKMPTimer.stop(startTime);
+    }
+  }
+
+  private List<Map<String, String>> installKMP(File path, File tempPath, String key, ArrayList<String> languageList) throws IOException, JSONException {
     // Block reserved namespaces, like /cloud/.
     // TODO:  Consider throwing an exception instead?
     ArrayList<Map<String, String>> specs = new ArrayList<>();
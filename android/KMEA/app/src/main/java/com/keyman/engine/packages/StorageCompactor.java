@@ -0,0 +1,319 @@
+/**
+ * Copyright (C) 2026 SIL International. All rights reserved.
+ */
+package com.keyman.engine.packages;
+
+import android.content.Context;
+
+import com.keyman.engine.KMManager;
+import com.keyman.engine.data.Keyboard;
+import com.keyman.engine.data.KeyboardController;
+import com.keyman.engine.util.FileUtils;
+import com.keyman.engine.util.KMLog;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reclaims storage left behind in the Keyman data directory:
+ * 1) Temporary package folders (packages/.id.temp, models/.id.temp) from failed installs
+ * 2) Older versions of legacy cloud/ keyboards, and cloud/ keyboards no longer installed
+ * 3) Fonts in cloud/ no longer used by an installed cloud keyboard
+ * 4) Lexical model packages no longer in the installed lexical models list
+ *
+ * Keyboard packages in packages/ are kept even when unused because apps can add their
+ * keyboards again (e.g. KMAPro's installed packages list).
+ *
+ * Reachable files are determined from a snapshot of KeyboardController and the installed lexical
+ * models list. Files modified within MIN_AGE_MS are always kept so in-progress installs are not
+ * touched.
+ */
+public final class StorageCompactor {
+  private static final String TAG = "StorageCompactor";
+
+  private static final long MIN_AGE_MS = 60 * 60 * 1000;
+
+  private static final Pattern CLOUD_KEYBOARD_PATTERN =
+    Pattern.compile("^([A-Za-z0-9-_]+)-([0-9.]+)(\\.js)$");
+
+  private static final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+  private final File resourceRoot;
+  private final Set<String> assetFiles;
+  private final List<Keyboard> keyboards;
+  private final List<HashMap<String, String>> lexicalModels;
+  private final long now;
+
+  private StorageCompactor(Context context, File resourceRoot) {
+    this.resourceRoot = resourceRoot;
+    this.assetFiles = listAssets(context);
+    List<Keyboard> keyboardsList = KeyboardController.getInstance().get();
+    this.keyboards = (keyboardsList != null) ? new ArrayList<Keyboard>(keyboardsList) : null;
+    List<HashMap<String, String>> models = KMManager.getLexicalModelsList(context);
+    this.lexicalModels = (models != null) ? new ArrayList<HashMap<String, String>>(models) : null;
+    this.now = System.currentTimeMillis();
+  }
+
+  StorageCompactor(File resourceRoot, Set<String> assetFiles, List<Keyboard> keyboards,
+                   List<HashMap<String, String>> lexicalModels, long now) {
+    this.resourceRoot = resourceRoot;
+    this.assetFiles = assetFiles;
+    this.keyboards = keyboards;
+    this.lexicalModels = lexicalModels;
+    this.now = now;
+  }
+
+  /**
+   * Compact storage once per process in the background, after the bundled packages are installed.
+   * @param context
+   */
+  public static void scheduleCompaction(Context context) {
+    if (KMManager.isTestMode() || !scheduled.compareAndSet(false, true)) {
+      return;
+    }
+
+    // Snapshot the installed keyboards and lexical models on the calling thread
+    final StorageCompactor compactor = new StorageCompactor(context,
+      new File(KMManager.getResourceRoot()));
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        compactor.compactInternal();
+      }
+    }, TAG);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    thread.start();
+  }
+
+  /**
+   * Compact storage synchronously. Avoid calling from the main thread.
+   * @param context
+   * @return long - number of bytes reclaimed
+   */
+  public static long compact(Context context) {
+    return new StorageCompactor(context, new File(KMManager.getResourceRoot())).compactInternal();
+  }
+
+  long compactInternal() {
+    long reclaimed = 0;
+    try {
+      reclaimed += deleteTempPackages(new File(resourceRoot, KMManager.KMDefault_AssetPackages));
+      reclaimed += deleteTempPackages(new File(resourceRoot, KMManager.KMDefault_LexicalModelPackages));
+      // Only trust non-empty registries; an empty list may mean it failed to load
+      if (keyboards != null && !keyboards.isEmpty()) {
+        reclaimed += compactCloudDir(new File(resourceRoot, KMManager.KMDefault_UndefinedPackageID));
+      }
+      if (lexicalModels != null && !lexicalModels.isEmpty()) {
+        reclaimed += compactLexicalModels(new File(resourceRoot, KMManager.KMDefault_LexicalModelPackages));
+      }
+    } catch (Exception e) {
+      KMLog.LogException(TAG, "Storage compaction failed. Error: ", e);
+    }
+
+    if (reclaimed > 0) {
+      KMLog.LogBreadcrumb(TAG, "Reclaimed " + reclaimed + " bytes", false);
+    }
+    return reclaimed;
+  }
+
+  private long deleteTempPackages(File dir) {
+    long reclaimed = 0;
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return reclaimed;
+    }
+
+    for (File file : files) {
+      String name = file.getName();
+      if (file.isDirectory() && name.startsWith(".") && name.endsWith(".temp")) {
+        reclaimed += delete(file);
+      }
+    }
+    return reclaimed;
+  }
+
+  private long compactCloudDir(File cloudDir) {
+    long reclaimed = 0;
+    File[] files = cloudDir.listFiles();
+    if (files == null) {
+      return reclaimed;
+    }
+
+    // Keyboards and fonts used by installed cloud keyboards
+    Set<String> cloudKeyboardIDs = new HashSet<String>();
+    Set<String> cloudFonts = new HashSet<String>();
+    for (Keyboard k : keyboards) {
+      if (KMManager.KMDefault_UndefinedPackageID.equals(k.getPackageID())) {
+        cloudKeyboardIDs.add(k.getKeyboardID());
+        addFont(cloudFonts, k.getFont());
+        addFont(cloudFonts, k.getOSKFont());
+      }
+    }
+
+    // Latest version of each installed cloud keyboard
+    HashMap<String, String> latestVersions = new HashMap<String, String>();
+    for (File file : files) {
+      Matcher matcher = CLOUD_KEYBOARD_PATTERN.matcher(file.getName());
+      if (file.isFile() && file.length() > 0 && matcher.matches() &&
+          cloudKeyboardIDs.contains(matcher.group(1))) {
+        String latest = latestVersions.get(matcher.group(1));
+        if (latest == null ||
+            FileUtils.compareVersions(matcher.group(2), latest) == FileUtils.VERSION_GREATER) {
+          latestVersions.put(matcher.group(1), matcher.group(2));
+        }
+      }
+    }
+
+    for (File file : files) {
+      String name = file.getName();
+      if (!file.isFile() || assetFiles.contains(KMManager.KMDefault_UndefinedPackageID + File.separator + name)) {
+        continue;
+      }
+
+      Matcher matcher = CLOUD_KEYBOARD_PATTERN.matcher(name);
+      if (matcher.matches()) {
+        String latest = latestVersions.get(matcher.group(1));
+        if (latest == null || !latest.equals(matcher.group(2))) {
+          reclaimed += delete(file);
+        }
+      } else if (FileUtils.hasFontExtension(name) && !cloudFonts.contains(name)) {
+        reclaimed += delete(file);
+      }
+    }
+    return reclaimed;
+  }
+
+  private long compactLexicalModels(File modelsDir) {
+    long reclaimed = 0;
+    File[] files = modelsDir.listFiles();
+    if (files == null) {
+      return reclaimed;
+    }
+
+    Set<String> packageIDs = new HashSet<String>();
+    for (HashMap<String, String> lexicalModel : lexicalModels) {
+      String packageID = lexicalModel.get(KMManager.KMKey_PackageID);
+      if (packageID != null) {
+        packageIDs.add(packageID);
+      }
+    }
+
+    for (File file : files) {
+      String packageID = file.getName();
+      if (!file.isDirectory() || packageID.startsWith(".") || packageIDs.contains(packageID)) {
+        continue;
+      }
+      // Keep models bundled with the app
+      if (assetFiles.contains(packageID + FileUtils.MODELPACKAGE) ||
+          assetFiles.contains(KMManager.KMDefault_LexicalModelPackages + File.separator + packageID)) {
+        continue;
+      }
+      reclaimed += delete(file);
+    }
+    return reclaimed;
+  }
+
+  /**
+   * Add the font filenames of a keyboard font spec. The spec is either a font filename or a
+   * font JSON object whose "source" (or "files") is a filename or an array of filenames,
+   * as parsed by KMKeyboard.makeFontPaths()
+   * @param fonts Set of font filenames
+   * @param font String - font JSON object as a string, or a font filename
+   */
+  private static void addFont(Set<String> fonts, String font) {
+    if (font == null || font.isEmpty()) {
+      return;
+    }
+
+    if (FileUtils.hasFontExtension(font)) {
+      fonts.add(new File(font).getName());
+      return;
+    }
+
+    try {
+      JSONObject fontObj = new JSONObject(font);
+      Object files = fontObj.has(KMManager.KMKey_FontSource) ?
+        fontObj.get(KMManager.KMKey_FontSource) : fontObj.opt(KMManager.KMKey_FontFiles);
+      if (files instanceof String) {
+        fonts.add(new File((String) files).getName());
+      } else if (files instanceof JSONArray) {
+        JSONArray filesArray = (JSONArray) files;
+        for (int i = 0; i < filesArray.length(); i++) {
+          String file = filesArray.optString(i, null);
+          if (file != null && !file.isEmpty()) {
+            fonts.add(new File(file).getName());
+          }
+        }
+      }
+    } catch (JSONException e) {
+      // Not a font spec, so there's no file to keep
+    }
+  }
+
+  /**
+   * Delete a file or directory unless it was recently modified
+   * @param file
+   * @return long - number of bytes reclaimed
+   */
+  private long delete(File file) {
+    if (now - file.lastModified() < MIN_AGE_MS) {
+      return 0;
+    }
+
+    long size = sizeOf(file);
+    try {
+      if (file.isDirectory()) {
+        FileUtils.deleteDirectory(file);
+      } else if (!file.delete()) {
+        return 0;
+      }
+    } catch (IOException e) {
+      KMLog.LogException(TAG, "Unable to delete " + file.getName(), e);
+      return 0;
+    }
+    return size;
+  }
+
+  private static long sizeOf(File file) {
+    if (!file.isDirectory()) {
+      return file.length();
+    }
+    long size = 0;
+    File[] files = file.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        size += sizeOf(f);
+      }
+    }
+    return size;
+  }
+
+  private static Set<String> listAssets(Context context) {
+    Set<String> assets = new HashSet<String>();
+    try {
+      for (String asset : context.getAssets().list("")) {
+        assets.add(asset);
+      }
+      for (String dir : new String[] { KMManager.KMDefault_UndefinedPackageID, KMManager.KMDefault_LexicalModelPackages }) {
+        for (String asset : context.getAssets().list(dir)) {
+          assets.add(dir + File.separator + asset);
+        }
+      }
+    } catch (IOException e) {
+      KMLog.LogException(TAG, "Unable to list assets. Error: ", e);
+    }
+    return assets;
+  }
+}
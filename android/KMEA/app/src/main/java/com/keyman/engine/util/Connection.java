@@ -6,58 +6,228 @@ import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.util.zip.GZIPInputStream;
 
+/**
+ * A single HTTP GET request. Each download creates its own Connection, so several downloads can
+ * run at the same time.
+ *
+ * Redirects are followed manually (up to MAX_REDIRECTS) for this request only. Responses are
+ * requested with gzip content encoding and decoded transparently by getInputStream().
+ * Call close() once the response is read so the underlying socket goes back to the keep-alive
+ * pool; disconnect() drops the socket instead.
+ */
 public final class Connection {
   private static final String TAG = "Connection";
   private static final int MAX_REDIRECTS = 5;
-  private static final int TIMEOUT = 20 * 1000; // seconds
+  // Redirect bodies larger than this aren't read to reuse the socket
+  private static final int MAX_DISCARDED_BODY_BYTES = 64 * 1024;
+  public static final int DEFAULT_TIMEOUT = 20 * 1000; // milliseconds
 
-  private static HttpURLConnection urlConnection;
+  private final int connectTimeout;
+  private final int readTimeout;
 
-  // Latest URL connection
-  private static URL url;
+  private HttpURLConnection urlConnection;
+
+  // Final URL of the connection, after redirects
+  private URL url;
 
   // Boolean if a valid connection to the URL has been established and suitable to get the input stream
-  private static boolean urlValid;
+  private boolean urlValid;
+
+  // Boolean if a conditional request was answered with 304 Not Modified
+  private boolean notModified;
+
+  // Validators of the response
+  private HttpValidators responseValidators;
+
+  private InputStream inputStream;
+
+  // First byte to request, and the validator the partial copy was downloaded with
+  private long rangeStart;
+  private String ifRange;
+
+  // Boolean if the server answered a range request with 206 Partial Content
+  private boolean partialContent;
+
+  // HTTP status of the final response, or -1 if there was no response
+  private int responseCode = -1;
+
+  public Connection() {
+    this(DEFAULT_TIMEOUT, DEFAULT_TIMEOUT);
+  }
+
+  /**
+   * @param connectTimeout int - connect timeout in milliseconds
+   * @param readTimeout int - read timeout in milliseconds
+   */
+  public Connection(int connectTimeout, int readTimeout) {
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+  }
+
+  /**
+   * Request the response from byte offset start onwards (HTTP Range), e.g. to resume a download.
+   * The server sends the whole response again if the resource no longer matches ifRange.
+   * Call before initialize().
+   * @param start long - first byte to request
+   * @param ifRange String - ETag or Last-Modified of the partial copy
+   */
+  public void setRange(long start, String ifRange) {
+    this.rangeStart = start;
+    this.ifRange = ifRange;
+  }
+
+  /**
+   * @return boolean - true if the server only sent the range requested with setRange()
+   */
+  public boolean isPartialContent() {
+    return partialContent;
+  }
+
+  /**
+   * @return int - HTTP status of the final response, or -1 if the server couldn't be reached
+   */
+  public int getResponseCode() {
+    return responseCode;
+  }
 
   /**
-   * A method that returns the input stream of a URL connection
+   * A method that returns the (decoded) input stream of the URL connection
    * @return InputStream
-   * @throws IOException
    */
-  public static InputStream getInputStream() {
+  public InputStream getInputStream() {
+    if (inputStream != null) {
+      return inputStream;
+    }
     try {
       if (urlValid && urlConnection != null) {
-        return urlConnection.getInputStream();
+        inputStream = urlConnection.getInputStream();
+        if ("gzip".equalsIgnoreCase(urlConnection.getContentEncoding())) {
+          inputStream = new GZIPInputStream(inputStream);
+        }
+        return inputStream;
       }
     } catch (IOException e) {
       KMLog.LogException(TAG, "getInputStream failed: ", e);
     }
-    return urlConnection.getErrorStream();
-  };
+    return (urlConnection != null) ? urlConnection.getErrorStream() : null;
+  }
 
-  public static String getContentType() {
+  public String getContentType() {
     String contentType = "";
-    if (urlConnection != null && urlValid) {
+    if (urlConnection != null && urlValid && urlConnection.getContentType() != null) {
       contentType = urlConnection.getContentType();
     }
     return contentType;
   }
 
-  public static String getFile() {
+  /**
+   * @return long - length of the response body on the wire, or -1 if unknown
+   */
+  public long getContentLength() {
+    if (urlConnection != null && urlValid) {
+      return urlConnection.getContentLength();
+    }
+    return -1;
+  }
+
+  public String getContentEncoding() {
+    if (urlConnection != null && urlValid) {
+      return urlConnection.getContentEncoding();
+    }
+    return null;
+  }
+
+  public String getHeaderField(String name) {
+    if (urlConnection != null && urlValid) {
+      return urlConnection.getHeaderField(name);
+    }
+    return null;
+  }
+
+  public String getFile() {
     String filename = "";
     if (url != null && urlValid) {
       filename = url.getFile();
     }
     return filename;
-  };
+  }
+
+  /**
+   * @return boolean - true if the conditional request was answered with 304 Not Modified
+   */
+  public boolean isNotModified() {
+    return notModified;
+  }
+
+  /**
+   * Get how long the successful or 304 response may be reused without revalidating it,
+   * from its Cache-Control header
+   * @return long - max-age in milliseconds, 0 if it must be revalidated, or -1 if it must not be stored
+   */
+  public long getMaxAge() {
+    if (urlConnection == null || !(urlValid || notModified)) {
+      return 0;
+    }
+    String cacheControl = urlConnection.getHeaderField("Cache-Control");
+    if (cacheControl == null) {
+      return 0;
+    }
 
-  public static void disconnect() {
+    long maxAge = 0;
+    for (String directive : cacheControl.toLowerCase().split(",")) {
+      directive = directive.trim();
+      if (directive.equals("no-store")) {
+        return -1;
+      } else if (directive.equals("no-cache")) {
+        return 0;
+      } else if (directive.startsWith("max-age=")) {
+        try {
+          maxAge = Long.parseLong(directive.substring("max-age=".length()).trim()) * 1000;
+        } catch (NumberFormatException e) {
+          maxAge = 0;
+        }
+      }
+    }
+    return Math.max(0, maxAge);
+  }
+
+  /**
+   * @return HttpValidators of the successful or 304 response, or null
+   */
+  public HttpValidators getResponseValidators() {
+    return responseValidators;
+  }
+
+  /**
+   * Close the response stream, keeping the socket for reuse by later requests to the same host
+   */
+  public void close() {
+    if (inputStream != null) {
+      closeQuietly(inputStream);
+      inputStream = null;
+    } else if (urlConnection != null) {
+      // Release a response body that was never read
+      try {
+        closeQuietly(urlValid ? urlConnection.getInputStream() : urlConnection.getErrorStream());
+      } catch (IOException e) {
+        // Ignore
+      }
+    }
+    urlValid = false;
+  }
+
+  /**
+   * Abort the request and drop the socket
+   */
+  public void disconnect() {
     if (urlConnection != null) {
       urlConnection.disconnect();
     }
+    inputStream = null;
     urlValid = false;
-  };
+  }
 
   /**
    * Initialize the connection and follow up to 5 redirects.
@@ -65,35 +235,78 @@ public final class Connection {
    * String for original URL connection. Because of redirects, this may not be the final URL
    * that Connection establishes.
    * @return boolean if the connection was successful
-   * @throws Exception
    */
-  public static boolean initialize(String originalUrl) {
+  public boolean initialize(String originalUrl) {
+    return initialize(originalUrl, null);
+  }
+
+  /**
+   * Initialize the connection and follow up to 5 redirects. When validators are given,
+   * make a conditional request (If-None-Match / If-Modified-Since). If the server reports the
+   * resource hasn't changed, this returns false and isNotModified() returns true.
+   * @param originalUrl
+   * String for original URL connection. Because of redirects, this may not be the final URL
+   * that Connection establishes.
+   * @param validators HttpValidators of the cached response, or null
+   * @return boolean if the connection was successful
+   */
+  public boolean initialize(String originalUrl, HttpValidators validators) {
     boolean ret = false;
     String urlStr = originalUrl;
     urlValid = false;
+    notModified = false;
+    responseValidators = null;
+    partialContent = false;
+    responseCode = -1;
+    inputStream = null;
     try {
-
-      HttpURLConnection.setFollowRedirects(false);
       int attempt = 1;
 
       while (attempt <= MAX_REDIRECTS && !urlValid) {
-        url = new URL(urlStr);
+        // Location of a redirect may be relative
+        url = (attempt == 1) ? new URL(urlStr) : new URL(url, urlStr);
         urlConnection = (HttpURLConnection) url.openConnection();
-        urlConnection.setRequestProperty("Cache-Control", "no-cache");
-        urlConnection.setConnectTimeout(TIMEOUT);
-        urlConnection.setReadTimeout(TIMEOUT);
+        urlConnection.setInstanceFollowRedirects(false);
+        if (validators != null && !validators.isEmpty()) {
+          // Let the server revalidate the cached copy instead
+          validators.applyTo(urlConnection, originalUrl);
+        } else {
+          urlConnection.setRequestProperty("Cache-Control", "no-cache");
+        }
+        if (rangeStart > 0) {
+          // Byte ranges are only meaningful for the unencoded response
+          urlConnection.setRequestProperty("Range", "bytes=" + rangeStart + "-");
+          if (ifRange != null && !ifRange.isEmpty()) {
+            urlConnection.setRequestProperty("If-Range", ifRange);
+          }
+          urlConnection.setRequestProperty("Accept-Encoding", "identity");
+        } else {
+          urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+        }
+        urlConnection.setConnectTimeout(connectTimeout);
+        urlConnection.setReadTimeout(readTimeout);
         urlConnection.connect();
         int status = urlConnection.getResponseCode();
+        responseCode = status;
 
-        if (status == HttpURLConnection.HTTP_OK) {
+        if (status == HttpURLConnection.HTTP_OK ||
+            (status == HttpURLConnection.HTTP_PARTIAL && rangeStart > 0)) {
           urlValid = true;
+          partialContent = (status == HttpURLConnection.HTTP_PARTIAL);
           ret = true;
+          responseValidators = HttpValidators.fromResponse(urlConnection, originalUrl);
+        } else if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+          notModified = true;
+          responseValidators = HttpValidators.fromResponse(urlConnection, originalUrl);
+          break;
         } else {
           // Handle HTTP Status Codes 3xx
           if (HttpURLConnection.HTTP_MULT_CHOICE <= status &&
               status <= HttpURLConnection.HTTP_USE_PROXY &&
               status != HttpURLConnection.HTTP_NOT_MODIFIED) {
             urlStr = urlConnection.getHeaderField("Location");
+            // Read the redirect body to the end so the socket can be reused for the next request
+            discardBody(urlConnection);
           } else {
             // Abort for all other Status Codes
             break;
@@ -114,4 +327,41 @@ public final class Connection {
     return ret;
   }
 
-};
+  /**
+   * Read and close the body of a 3xx response, which HttpURLConnection returns from
+   * getInputStream() (getErrorStream() is only for 4xx and 5xx). A large or unreadable body
+   * disconnects instead, so the socket isn't reused.
+   * @param connection HttpURLConnection of the redirect
+   */
+  private static void discardBody(HttpURLConnection connection) {
+    InputStream stream = null;
+    try {
+      stream = connection.getInputStream();
+      byte[] buffer = new byte[4096];
+      int remaining = MAX_DISCARDED_BODY_BYTES;
+      int read;
+      while ((read = stream.read(buffer)) != -1) {
+        remaining -= read;
+        if (remaining < 0) {
+          connection.disconnect();
+          break;
+        }
+      }
+    } catch (IOException e) {
+      connection.disconnect();
+    } finally {
+      closeQuietly(stream);
+    }
+  }
+
+  private static void closeQuietly(InputStream stream) {
+    if (stream == null) {
+      return;
+    }
+    try {
+      stream.close();
+    } catch (IOException e) {
+      // Ignore
+    }
+  }
+}
@@ -0,0 +1,269 @@
+/**
+ * Copyright (C) 2026 SIL International. All rights reserved.
+ */
+package com.keyman.engine.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipFile;
+
+/**
+ * Downloads files over HTTP in-process.
+ *
+ * Every request uses its own Connection, so downloads don't share state and can run in parallel.
+ * submit() runs downloads and other in-process requests, such as JSON API calls, on a bounded
+ * pool of maxParallel threads. Responses are streamed
+ * straight to a temporary file which is renamed into place when complete. Sockets are returned
+ * to the platform keep-alive pool after each download, so downloads from the same host reuse
+ * connections.
+ */
+public final class DownloadClient {
+  private static final String TAG = "DownloadClient";
+
+  public static final int DEFAULT_MAX_PARALLEL = 4;
+  private static final int BUFFER_SIZE = 8192;
+  private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+  private static DownloadClient defaultClient;
+
+  private final int connectTimeout;
+  private final int readTimeout;
+  private final ExecutorService executor;
+
+  /**
+   * @param maxParallel int - maximum number of concurrent submitted downloads
+   * @param connectTimeout int - connect timeout in milliseconds
+   * @param readTimeout int - read timeout in milliseconds
+   */
+  public DownloadClient(int maxParallel, int connectTimeout, int readTimeout) {
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+    this.executor = Executors.newFixedThreadPool(Math.max(1, maxParallel), new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger(1);
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, TAG + "-" + count.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * @return DownloadClient - the shared client with the default limits
+   */
+  public static synchronized DownloadClient getDefault() {
+    if (defaultClient == null) {
+      defaultClient = new DownloadClient(DEFAULT_MAX_PARALLEL, Connection.DEFAULT_TIMEOUT,
+        Connection.DEFAULT_TIMEOUT);
+    }
+    return defaultClient;
+  }
+
+  /**
+   * @return Connection - a new, not yet initialized, connection with this client's timeouts
+   */
+  public Connection newConnection() {
+    return new Connection(connectTimeout, readTimeout);
+  }
+
+  /**
+   * Download urlStr to destinationDir/destinationFilename on the calling thread.
+   *
+   * When destinationFilename is given and an earlier download of the same URL was interrupted,
+   * the download resumes from the end of the partial file with a Range request, provided the
+   * server sent an ETag or Last-Modified for it. The partial file is verified against the
+   * response length (and opened as a zip for .kmp files) before it's renamed into place.
+   * @param urlStr String - source URL
+   * @param destinationDir File - destination directory. Created if it doesn't exist
+   * @param destinationFilename String - destination filename. If blank, the filename of the
+   *                            (redirected) URL is used and the download isn't resumable
+   * @return File - the downloaded file, or null if the download failed
+   * @throws IOException if the response couldn't be saved
+   */
+  public File download(String urlStr, File destinationDir, String destinationFilename) throws IOException {
+    if (!destinationDir.exists()) {
+      destinationDir.mkdirs();
+    }
+
+    String filename = (destinationFilename != null) ? destinationFilename.trim() : "";
+    boolean named = !filename.isEmpty();
+    File tmpFile = null;
+    PartialDownload partial = null;
+    if (named) {
+      tmpFile = new File(destinationDir, String.format("%s.tmp", filename));
+      partial = PartialDownload.load(tmpFile, urlStr);
+    }
+
+    Connection connection = newConnection();
+    if (partial != null) {
+      connection.setRange(partial.getOffset(), partial.getValidator());
+    }
+    boolean completed = false;
+    boolean resumable = false;
+    try {
+      if (!connection.initialize(urlStr)) {
+        // Keep the partial file through network failures, but not if the server rejects the range
+        resumable = (partial != null && connection.getResponseCode() != HTTP_RANGE_NOT_SATISFIABLE);
+        return null;
+      }
+
+      if (!named) {
+        filename = FileUtils.getFilename(connection.getFile());
+        if (FileUtils.hasJavaScriptExtension(filename) && !filename.contains("-")) {
+          filename = filename.substring(0, filename.lastIndexOf(".js")) + "-1.0.js";
+        }
+        tmpFile = new File(destinationDir, String.format("%s.tmp", filename));
+      }
+      File file = new File(destinationDir, filename);
+
+      // A 206 means the partial file is still current. Otherwise the whole file is sent again
+      boolean append = connection.isPartialContent();
+      if (append && !isContentRangeFrom(connection, tmpFile.length())) {
+        KMLog.LogError(TAG, "Unexpected Content-Range for " + filename);
+        return null;
+      }
+      long expectedLength = getExpectedLength(connection, append ? tmpFile.length() : 0);
+
+      // Record how to resume before transferring anything
+      HttpValidators validators = connection.getResponseValidators();
+      resumable = named && validators != null && !validators.isEmpty() && !isEncoded(connection);
+      partial = resumable ? new PartialDownload(urlStr, validators, expectedLength) : null;
+      if (partial == null) {
+        PartialDownload.delete(tmpFile);
+      }
+
+      InputStream in = connection.getInputStream();
+      FileOutputStream out = new FileOutputStream(tmpFile, append);
+      try {
+        byte[] buff = new byte[BUFFER_SIZE];
+        int len;
+        while ((len = in.read(buff)) != -1) {
+          out.write(buff, 0, len);
+        }
+      } finally {
+        out.close();
+        if (partial != null) {
+          partial.save(tmpFile);
+        }
+      }
+
+      if (expectedLength >= 0 && tmpFile.length() < expectedLength) {
+        // Connection closed early. Resume from here next time
+        KMLog.LogBreadcrumb(TAG, "Download of " + filename + " incomplete", true);
+        return null;
+      }
+      if (!verify(tmpFile, expectedLength)) {
+        KMLog.LogError(TAG, "Downloaded " + filename + " failed verification");
+        resumable = false;
+        return null;
+      }
+
+      PartialDownload.delete(tmpFile);
+      if (file.exists()) {
+        file.delete();
+      }
+      if (!tmpFile.renameTo(file)) {
+        return null;
+      }
+      completed = true;
+      return file;
+    } finally {
+      if (completed) {
+        connection.close();
+      } else {
+        connection.disconnect();
+        if (tmpFile != null && !(resumable && tmpFile.length() > 0)) {
+          // Nothing worth resuming
+          PartialDownload.delete(tmpFile);
+          tmpFile.delete();
+        }
+      }
+    }
+  }
+
+  /**
+   * @return boolean - true if the Content-Range of a 206 response starts at offset
+   */
+  private static boolean isContentRangeFrom(Connection connection, long offset) {
+    String contentRange = connection.getHeaderField("Content-Range");
+    return contentRange != null && contentRange.trim().startsWith("bytes " + offset + "-");
+  }
+
+  /**
+   * @param offset long - bytes already downloaded
+   * @return long - total length of the file, or -1 if unknown
+   */
+  private static long getExpectedLength(Connection connection, long offset) {
+    if (isEncoded(connection)) {
+      // Length on the wire doesn't match the decoded file
+      return -1;
+    }
+    long contentLength = connection.getContentLength();
+    return (contentLength >= 0) ? offset + contentLength : -1;
+  }
+
+  private static boolean isEncoded(Connection connection) {
+    String encoding = connection.getContentEncoding();
+    return encoding != null && !encoding.equalsIgnoreCase("identity");
+  }
+
+  /**
+   * Check a completed download before it replaces the destination file
+   * @param tmpFile File - the downloaded file
+   * @param expectedLength long - total length from the response, or -1 if unknown
+   * @return boolean - true if the file is complete
+   */
+  private static boolean verify(File tmpFile, long expectedLength) {
+    if (tmpFile.length() == 0 || (expectedLength >= 0 && tmpFile.length() != expectedLength)) {
+      return false;
+    }
+    if (FileUtils.hasKeymanPackageExtension(tmpFile.getName().replaceAll("\\.tmp$", ""))) {
+      try {
+        new ZipFile(tmpFile).close();
+      } catch (IOException e) {
+        // Corrupt package, so don't resume it either
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Queue a download on this client's thread pool.
+   * @see #download(String, File, String)
+   * @return Future<File> - the downloaded file, or null if the download failed
+   */
+  public Future<File> submit(final String urlStr, final File destinationDir, final String destinationFilename) {
+    return submit(new Callable<File>() {
+      @Override
+      public File call() {
+        try {
+          return download(urlStr, destinationDir, destinationFilename);
+        } catch (IOException e) {
+          KMLog.LogException(TAG, "Download failed for " + urlStr, e);
+          return null;
+        }
+      }
+    });
+  }
+
+  /**
+   * Queue an in-process request on this client's thread pool, so it shares the
+   * maxParallel limit with the submitted downloads.
+   * @param request Callable<T> - the request to run
+   * @return Future<T> - the result of the request
+   */
+  public <T> Future<T> submit(Callable<T> request) {
+    return executor.submit(request);
+  }
+}
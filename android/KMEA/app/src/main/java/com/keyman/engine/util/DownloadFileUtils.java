@@ -8,13 +8,14 @@ import android.content.Context;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.provider.OpenableColumns;
 import android.widget.Toast;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.InputStream;
+import java.io.IOException;
 
 /**
  * Utilities for handling a file downloaded via DownloadManager. Currently, this only handles URI
@@ -93,7 +94,7 @@ public final class DownloadFileUtils {
     boolean isKMP = false;
     String filename = "";
     File cachedFile = null;
-    InputStream inputFile = null;
+    FileInputStream inputFile = null;
     try {
       switch (data.getScheme().toLowerCase()) {
         case "content":
@@ -102,8 +103,12 @@ public final class DownloadFileUtils {
           cursor.moveToFirst();
           int nameIndex = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
           filename = cursor.getString(nameIndex);
+          cursor.close();
           isKMP = FileUtils.hasKeymanPackageExtension(filename);
-          inputFile = context.getContentResolver().openInputStream(data);
+          ParcelFileDescriptor fileDescriptor = context.getContentResolver().openFileDescriptor(data, "r");
+          if (fileDescriptor != null) {
+            inputFile = new ParcelFileDescriptor.AutoCloseInputStream(fileDescriptor);
+          }
           break;
 
         case "file":
@@ -120,12 +125,26 @@ public final class DownloadFileUtils {
           cachedFile.delete();
         }
 
-        FileUtils.copy(inputFile, new FileOutputStream(cachedFile));
+        // Copy through the file channels so the contents aren't staged in a Java buffer
+        FileOutputStream outputFile = new FileOutputStream(cachedFile);
+        try {
+          FileUtils.transfer(inputFile.getChannel(), outputFile.getChannel());
+        } finally {
+          outputFile.close();
+        }
       }
     } catch (Exception e) {
       String message = "Access denied to " + filename +
         ".\nCheck Android Settings --> Apps --> Keyman to grant storage permissions";
       KMLog.LogException(TAG, "Unable to copy " + filename + " to app cache ", e);
+    } finally {
+      if (inputFile != null) {
+        try {
+          inputFile.close();
+        } catch (IOException e) {
+          // Ignore
+        }
+      }
     }
 
     Info info = new Info(isKMP, filename, cachedFile);
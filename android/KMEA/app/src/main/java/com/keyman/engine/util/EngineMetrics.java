@@ -0,0 +1,301 @@
+/**
+ * Copyright (C) 2026 SIL International. All rights reserved.
+ */
+package com.keyman.engine.util;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide registry of engine counters and timers, for performance telemetry without a
+ * profiler.
+ *
+ * Counters and timers are created on first use and live for the life of the process. Callers
+ * should keep them in static fields, so recording is a few atomic operations with no lookup or
+ * allocation. Timer durations are kept in a log-linear histogram of microseconds: each power of
+ * two is split into 8 buckets, so percentiles are within 12.5% of the recorded values.
+ */
+public final class EngineMetrics {
+  private static final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+  private static final ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+  private EngineMetrics() {
+  }
+
+  /**
+   * Get the counter with a name, creating it if needed
+   * @param name String - the counter name, e.g. "package.installed"
+   * @return Counter
+   */
+  public static Counter counter(String name) {
+    Counter counter = counters.get(name);
+    if (counter == null) {
+      counters.putIfAbsent(name, new Counter());
+      counter = counters.get(name);
+    }
+    return counter;
+  }
+
+  /**
+   * Get the timer with a name, creating it if needed
+   * @param name String - the timer name, e.g. "keyboard.set"
+   * @return Timer
+   */
+  public static Timer timer(String name) {
+    Timer timer = timers.get(name);
+    if (timer == null) {
+      timers.putIfAbsent(name, new Timer());
+      timer = timers.get(name);
+    }
+    return timer;
+  }
+
+  /**
+   * @return Snapshot of the current values of all counters and timers
+   */
+  public static Snapshot snapshot() {
+    TreeMap<String, Long> counterValues = new TreeMap<>();
+    for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+      counterValues.put(entry.getKey(), entry.getValue().get());
+    }
+    TreeMap<String, TimerSnapshot> timerValues = new TreeMap<>();
+    for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+      timerValues.put(entry.getKey(), entry.getValue().snapshot());
+    }
+    return new Snapshot(counterValues, timerValues);
+  }
+
+  /**
+   * Reset all counters and timers to zero
+   */
+  public static void reset() {
+    for (Counter counter : counters.values()) {
+      counter.value.set(0);
+    }
+    for (Timer timer : timers.values()) {
+      timer.reset();
+    }
+  }
+
+  public static final class Counter {
+    private final AtomicLong value = new AtomicLong();
+
+    Counter() {
+    }
+
+    public void increment() {
+      value.incrementAndGet();
+    }
+
+    public void add(long delta) {
+      value.addAndGet(delta);
+    }
+
+    public long get() {
+      return value.get();
+    }
+  }
+
+  public static final class Timer {
+    // Values below SUB_BUCKETS have a bucket each; above that, each power of two has
+    // SUB_BUCKETS buckets
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    Timer() {
+    }
+
+    /**
+     * @return long - the start time to pass to stop()
+     */
+    public long start() {
+      return System.nanoTime();
+    }
+
+    /**
+     * Record the time since start()
+     * @param startNanos long - the value returned by start()
+     */
+    public void stop(long startNanos) {
+      recordNanos(System.nanoTime() - startNanos);
+    }
+
+    public void recordNanos(long nanos) {
+      long micros = Math.max(0, nanos / 1000);
+      buckets.incrementAndGet(bucketIndex(micros));
+      count.incrementAndGet();
+      totalMicros.addAndGet(micros);
+      long max = maxMicros.get();
+      while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+        max = maxMicros.get();
+      }
+    }
+
+    static int bucketIndex(long micros) {
+      if (micros < SUB_BUCKETS) {
+        return (int) micros;
+      }
+      int exponent = 63 - Long.numberOfLeadingZeros(micros);
+      int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+      return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    // Largest value in a bucket
+    static long bucketUpperBound(int index) {
+      if (index < SUB_BUCKETS) {
+        return index;
+      }
+      int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+      long subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+      return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    private void reset() {
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        buckets.set(i, 0);
+      }
+      count.set(0);
+      totalMicros.set(0);
+      maxMicros.set(0);
+    }
+
+    TimerSnapshot snapshot() {
+      long[] counts = new long[BUCKET_COUNT];
+      long total = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        counts[i] = buckets.get(i);
+        total += counts[i];
+      }
+      long max = maxMicros.get();
+      return new TimerSnapshot(total, totalMicros.get(), max,
+        percentile(counts, total, 0.5, max), percentile(counts, total, 0.9, max),
+        percentile(counts, total, 0.99, max));
+    }
+
+    private static long percentile(long[] counts, long total, double fraction, long max) {
+      if (total == 0) {
+        return 0;
+      }
+      long rank = (long) Math.ceil(total * fraction);
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.min(bucketUpperBound(i), max);
+        }
+      }
+      return max;
+    }
+  }
+
+  public static final class TimerSnapshot {
+    private final long count;
+    private final long totalMicros;
+    private final long maxMicros;
+    private final long p50Micros;
+    private final long p90Micros;
+    private final long p99Micros;
+
+    TimerSnapshot(long count, long totalMicros, long maxMicros, long p50Micros, long p90Micros, long p99Micros) {
+      this.count = count;
+      this.totalMicros = totalMicros;
+      this.maxMicros = maxMicros;
+      this.p50Micros = p50Micros;
+      this.p90Micros = p90Micros;
+      this.p99Micros = p99Micros;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getTotalMicros() {
+      return totalMicros;
+    }
+
+    public long getMeanMicros() {
+      return (count > 0) ? totalMicros / count : 0;
+    }
+
+    public long getMaxMicros() {
+      return maxMicros;
+    }
+
+    public long getP50Micros() {
+      return p50Micros;
+    }
+
+    public long getP90Micros() {
+      return p90Micros;
+    }
+
+    public long getP99Micros() {
+      return p99Micros;
+    }
+  }
+
+  public static final class Snapshot {
+    private final Map<String, Long> counters;
+    private final Map<String, TimerSnapshot> timers;
+
+    Snapshot(TreeMap<String, Long> counters, TreeMap<String, TimerSnapshot> timers) {
+      this.counters = Collections.unmodifiableMap(counters);
+      this.timers = Collections.unmodifiableMap(timers);
+    }
+
+    /**
+     * @return Map of counter values by name, in name order
+     */
+    public Map<String, Long> getCounters() {
+      return counters;
+    }
+
+    /**
+     * @return Map of timer values by name, in name order
+     */
+    public Map<String, TimerSnapshot> getTimers() {
+      return timers;
+    }
+
+    /**
+     * Write the metrics as text, in the style of a dumpsys section
+     * @param pw PrintWriter
+     */
+    public void dump(PrintWriter pw) {
+      pw.println("Keyman Engine metrics:");
+      pw.println("  Counters:");
+      for (Map.Entry<String, Long> entry : counters.entrySet()) {
+        pw.println("    " + entry.getKey() + "=" + entry.getValue());
+      }
+      pw.println("  Timers (us):");
+      for (Map.Entry<String, TimerSnapshot> entry : timers.entrySet()) {
+        TimerSnapshot timer = entry.getValue();
+        pw.println("    " + entry.getKey() + ": count=" + timer.getCount() +
+          " mean=" + timer.getMeanMicros() + " p50=" + timer.getP50Micros() +
+          " p90=" + timer.getP90Micros() + " p99=" + timer.getP99Micros() +
+          " max=" + timer.getMaxMicros());
+      }
+    }
+
+    @Override
+    public String toString() {
+      StringWriter writer = new StringWriter();
+      PrintWriter pw = new PrintWriter(writer);
+      dump(pw);
+      pw.flush();
+      return writer.toString();
+    }
+  }
+}
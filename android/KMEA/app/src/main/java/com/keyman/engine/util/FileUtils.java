@@ -12,7 +12,6 @@ import com.keyman.engine.KMManager;
 import org.json.JSONObject;
 import org.json.JSONArray;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
@@ -22,6 +21,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -61,6 +62,8 @@ public final class FileUtils {
   /**
    * Utility to download a file from urlStr and store it at destinationDir/destinationFilename.
    * If the destination directory does not exist, it will be created.
+   * If a download with a destinationFilename is interrupted, the partial file is kept and
+   * downloading the same URL again resumes from where it stopped.
    * @param context
    * @param urlStr Source URL
    * @param destinationDir Absolute path for destination. If null or empty, the app "data" will be used.
@@ -68,13 +71,8 @@ public final class FileUtils {
    * @return ret int -1 for fail
    */
   public static int download(Context context, String urlStr, String destinationDir, String destinationFilename) {
-    final int BUFFER_SIZE = 4096;
     int ret = DOWNLOAD_ERROR;
     String directoryStr = "";
-    String filename = "";
-    String tmpFilename = "";
-    File tmpFile = null;
-    File file = null;
 
     try {
       if (destinationDir == null || destinationDir.trim().isEmpty()) {
@@ -83,95 +81,86 @@ public final class FileUtils {
         directoryStr = destinationDir.trim();
       }
 
-      if (!directoryStr.endsWith(File.separator)) {
-        directoryStr = directoryStr + File.separator;
-      }
-      File dir = new File(directoryStr);
-      if (!dir.exists()) {
-        dir.mkdir();
-      }
-
-      if (Connection.initialize(urlStr)) {
-        InputStream binStream = new BufferedInputStream(Connection.getInputStream(), BUFFER_SIZE);
-        byte[] buff = new byte[BUFFER_SIZE];
-
-        if (destinationFilename == null || destinationFilename.isEmpty()) {
-          filename = getFilename(Connection.getFile());
-          if (hasJavaScriptExtension(filename) && !filename.contains("-")) {
-            filename = filename.substring(0, filename.lastIndexOf(".js")) + "-1.0.js";
-          }
-        } else {
-          filename = destinationFilename.trim();
-        }
-        tmpFilename = String.format("%s.tmp", filename);
-        file = new File(directoryStr, filename);
-        tmpFile = new File(directoryStr, tmpFilename);
-        FileOutputStream fos = new FileOutputStream(tmpFile);
-
-        int len;
-        while ((len = binStream.read(buff)) != -1) {
-          fos.write(buff, 0, len);
-        }
-
-        fos.flush();
-        fos.close();
-        binStream.close();
-
+      File file = DownloadClient.getDefault().download(urlStr, new File(directoryStr), destinationFilename);
+      if (file != null) {
         ret = DOWNLOAD_SUCCESS;
       }
     } catch (Exception e) {
       KMLog.LogException(TAG, "Download failed! Error: ", e);
-      ret = -1;
-    } finally {
-      if (ret > 0) {
-        if (tmpFile.exists() && tmpFile.length() > 0) {
-          if (file.exists()) {
-            file.delete();
-          }
-          if (!tmpFile.renameTo(file)) {
-            ret = DOWNLOAD_ERROR;
-          }
-        } else {
-          ret = DOWNLOAD_ERROR;
-        }
-      } else {
-        if (file != null && file.exists()) {
-          file.delete();
-        }
-        if (tmpFile != null && tmpFile.exists()) {
-          tmpFile.delete();
-        }
-        KMLog.LogError(TAG, "Could not download filename " + destinationFilename);
-      }
-
-      Connection.disconnect();
+      ret = DOWNLOAD_ERROR;
     }
 
+    if (ret != DOWNLOAD_SUCCESS) {
+      KMLog.LogError(TAG, "Could not download filename " + destinationFilename);
+    }
     return ret;
   }
 
   public static void copy(File src, File dest) throws IOException {
-    InputStream in = new FileInputStream(src);
-    OutputStream out = new FileOutputStream(dest);
+    FileInputStream in = new FileInputStream(src);
     try {
-      copy(in, out);
+      FileOutputStream out = new FileOutputStream(dest);
+      try {
+        transfer(in.getChannel(), out.getChannel());
+      } finally {
+        out.close();
+      }
     } finally {
-
+      in.close();
     }
   }
 
   public static void copy(InputStream in, OutputStream out)  throws IOException {
     try {
       // Transfer bytes from in to out
-      byte[] buf = new byte[1024];
+      byte[] buf = new byte[8192];
       int len;
       while ((len = in.read(buf)) >0) {
         out.write(buf, 0, len);
       }
     } finally {
-      out.close();
+      try {
+        out.close();
+      } finally {
+        in.close();
+      }
+    }
+  }
+
+  /**
+   * Copy the remaining contents of src to dest with FileChannel.transferTo so the bytes
+   * don't pass through a Java buffer
+   * @param src FileChannel to read from
+   * @param dest FileChannel to write to
+   * @throws IOException
+   */
+  public static void transfer(FileChannel src, FileChannel dest) throws IOException {
+    long position = src.position();
+    long size;
+    try {
+      size = src.size();
+    } catch (IOException e) {
+      size = 0;
+    }
+    if (size <= 0) {
+      // Not a regular file (e.g. a pipe from a content provider), so copy through a buffer
+      ByteBuffer buffer = ByteBuffer.allocate(8192);
+      while (src.read(buffer) != -1) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          dest.write(buffer);
+        }
+        buffer.clear();
+      }
+      return;
+    }
+    while (position < size) {
+      long transferred = src.transferTo(position, size - position, dest);
+      if (transferred <= 0) {
+        break;
+      }
+      position += transferred;
     }
-    in.close();
   }
 
   /**
@@ -446,9 +435,23 @@ public final class FileUtils {
    * @return boolean
    */
   public static boolean hasFontExtension(String filename) {
-    String f = filename.toLowerCase();
-    return f.endsWith(TRUETYPEFONT) || f.endsWith(OPENTYPEFONT) ||
-      f.endsWith(WOFFFONT) || f.endsWith(SVGFONT);
+    // Called for each font of each keyboard switch, so avoid allocating a lower-case copy
+    return endsWithIgnoreCase(filename, TRUETYPEFONT) || endsWithIgnoreCase(filename, OPENTYPEFONT) ||
+      endsWithIgnoreCase(filename, WOFFFONT) || endsWithIgnoreCase(filename, SVGFONT);
+  }
+
+  /**
+   * Utility if a given file is a TTF or OTF font, which every Android version can load.
+   * @param filename
+   * @return boolean
+   */
+  public static boolean hasTrueTypeOrOpenTypeExtension(String filename) {
+    return endsWithIgnoreCase(filename, TRUETYPEFONT) || endsWithIgnoreCase(filename, OPENTYPEFONT);
+  }
+
+  private static boolean endsWithIgnoreCase(String s, String suffix) {
+    int offset = s.length() - suffix.length();
+    return offset >= 0 && s.regionMatches(true, offset, suffix, 0, suffix.length());
   }
 
   public static boolean hasSVGViewBox(String filename) {
@@ -0,0 +1,376 @@
+/**
+ * Copyright (C) 2026 SIL International. All rights reserved.
+ */
+package com.keyman.engine.util;
+
+import android.content.Context;
+
+import com.keyman.engine.JSONParser;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Size-bounded disk cache of HTTP responses, shared by the cloud JSON API calls.
+ *
+ * Each entry is a body file and a metadata file (URL, validators, expiry time) named after a hash
+ * of the URL. Both are written to a temporary file and renamed into place, so an interrupted
+ * write never leaves a truncated entry. Once the bodies exceed maxSize bytes in total, the least
+ * recently used entries are evicted.
+ */
+public final class HttpResponseCache {
+  private static final String TAG = "HttpResponseCache";
+
+  public static final String DIRECTORY_NAME = "http";
+  public static final long DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+
+  private static final String BODY_EXTENSION = ".body";
+  private static final String META_EXTENSION = ".meta";
+  private static final String TMP_EXTENSION = ".tmp";
+
+  private static final String KEY_URL = "url";
+  private static final String KEY_ETAG = "etag";
+  private static final String KEY_LAST_MODIFIED = "lastModified";
+  private static final String KEY_EXPIRES = "expires";
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private static HttpResponseCache defaultCache;
+
+  private final File directory;
+  private final long maxSize;
+
+  /**
+   * A cached response
+   */
+  public static final class Entry {
+    private final byte[] body;
+    private final HttpValidators validators;
+    private final long expires;
+
+    private Entry(byte[] body, HttpValidators validators, long expires) {
+      this.body = body;
+      this.validators = validators;
+      this.expires = expires;
+    }
+
+    public byte[] getBody() {
+      return body;
+    }
+
+    public HttpValidators getValidators() {
+      return validators;
+    }
+
+    /**
+     * @return boolean - true if the response can be used without revalidating it
+     */
+    public boolean isFresh() {
+      return System.currentTimeMillis() < expires;
+    }
+  }
+
+  /**
+   * @param directory File - directory for the cache entries. Created if it doesn't exist
+   * @param maxSize long - maximum total size of the cached response bodies in bytes
+   */
+  public HttpResponseCache(File directory, long maxSize) {
+    this.directory = directory;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Create the shared cache in the app's cache directory
+   * @param context Context
+   */
+  public static synchronized void initialize(Context context) {
+    if (defaultCache == null) {
+      defaultCache = new HttpResponseCache(new File(context.getCacheDir(), DIRECTORY_NAME), DEFAULT_MAX_SIZE);
+    }
+  }
+
+  /**
+   * @return HttpResponseCache - the shared cache, or null if it hasn't been initialized
+   */
+  public static synchronized HttpResponseCache getDefault() {
+    return defaultCache;
+  }
+
+  /**
+   * Get a response body, from the cache if it's still fresh. Otherwise the cached copy is
+   * revalidated with a conditional request, and a new response replaces it.
+   * Performs network I/O, so don't call from the main thread.
+   * @param urlStr String - URL to fetch
+   * @return byte[] - the response body, or null if the request failed
+   */
+  public byte[] fetch(String urlStr) {
+    Entry cached = get(urlStr);
+    if (cached != null && cached.isFresh()) {
+      return cached.getBody();
+    }
+
+    Connection connection = DownloadClient.getDefault().newConnection();
+    try {
+      if (connection.initialize(urlStr, (cached != null) ? cached.getValidators() : null)) {
+        InputStream in = connection.getInputStream();
+        if (in == null) {
+          return null;
+        }
+        byte[] body = readFully(in);
+        put(urlStr, body, connection.getResponseValidators(), connection.getMaxAge());
+        return body;
+      } else if (connection.isNotModified() && cached != null) {
+        refresh(urlStr, connection.getMaxAge());
+        return cached.getBody();
+      }
+    } catch (IOException e) {
+      KMLog.LogException(TAG, "Unable to read response for " + urlStr, e);
+    } finally {
+      connection.close();
+    }
+    return null;
+  }
+
+  /**
+   * Get a cached response. Marks the entry as recently used.
+   * @param urlStr String - URL of the response
+   * @return Entry, or null if there's no cached response for the URL
+   */
+  public synchronized Entry get(String urlStr) {
+    String key = getKey(urlStr);
+    File bodyFile = new File(directory, key + BODY_EXTENSION);
+    File metaFile = new File(directory, key + META_EXTENSION);
+    if (!bodyFile.exists() || !metaFile.exists()) {
+      return null;
+    }
+
+    JSONObject meta = new JSONParser().getJSONObjectFromFile(metaFile);
+    if (meta == null || !urlStr.equals(meta.optString(KEY_URL, null))) {
+      return null;
+    }
+
+    byte[] body;
+    try {
+      body = readFully(new FileInputStream(bodyFile));
+    } catch (IOException e) {
+      KMLog.LogException(TAG, "Unable to read cached response for " + urlStr, e);
+      return null;
+    }
+    bodyFile.setLastModified(System.currentTimeMillis());
+
+    HttpValidators validators = new HttpValidators(urlStr, meta.optString(KEY_ETAG, null),
+      meta.optString(KEY_LAST_MODIFIED, null));
+    return new Entry(body, validators, meta.optLong(KEY_EXPIRES, 0));
+  }
+
+  /**
+   * Check if a cached response can be used without revalidating it. Only reads the metadata.
+   * @param urlStr String - URL of the response
+   * @return boolean - true if there's a fresh cached response for the URL
+   */
+  public synchronized boolean isFresh(String urlStr) {
+    String key = getKey(urlStr);
+    File metaFile = new File(directory, key + META_EXTENSION);
+    if (!metaFile.exists() || !new File(directory, key + BODY_EXTENSION).exists()) {
+      return false;
+    }
+
+    JSONObject meta = new JSONParser().getJSONObjectFromFile(metaFile);
+    return meta != null && urlStr.equals(meta.optString(KEY_URL, null)) &&
+      System.currentTimeMillis() < meta.optLong(KEY_EXPIRES, 0);
+  }
+
+  /**
+   * Store a response, replacing any cached response for the URL
+   * @param urlStr String - URL of the response
+   * @param body byte[] - the response body
+   * @param validators HttpValidators of the response, or null
+   * @param maxAge long - milliseconds the response can be used without revalidating it,
+   *               or -1 if it must not be stored
+   */
+  public synchronized void put(String urlStr, byte[] body, HttpValidators validators, long maxAge) {
+    if (maxAge < 0 || body.length > maxSize) {
+      remove(urlStr);
+      return;
+    }
+
+    String key = getKey(urlStr);
+    try {
+      writeAtomically(new File(directory, key + BODY_EXTENSION), body);
+      writeMeta(key, urlStr, validators, System.currentTimeMillis() + maxAge);
+    } catch (IOException | JSONException e) {
+      KMLog.LogException(TAG, "Unable to cache response for " + urlStr, e);
+      remove(urlStr);
+      return;
+    }
+    trim();
+  }
+
+  /**
+   * Renew the expiry time of a cached response after the server reported it's still current
+   * @param urlStr String - URL of the response
+   * @param maxAge long - milliseconds the response can be used without revalidating it
+   */
+  public synchronized void refresh(String urlStr, long maxAge) {
+    Entry cached = get(urlStr);
+    if (cached == null) {
+      return;
+    }
+    try {
+      writeMeta(getKey(urlStr), urlStr, cached.getValidators(), System.currentTimeMillis() + Math.max(0, maxAge));
+    } catch (IOException | JSONException e) {
+      KMLog.LogException(TAG, "Unable to refresh cached response for " + urlStr, e);
+    }
+  }
+
+  /**
+   * Remove a cached response
+   * @param urlStr String - URL of the response
+   */
+  public synchronized void remove(String urlStr) {
+    String key = getKey(urlStr);
+    new File(directory, key + BODY_EXTENSION).delete();
+    new File(directory, key + META_EXTENSION).delete();
+  }
+
+  /**
+   * @return long - total size of the cached response bodies in bytes
+   */
+  public synchronized long size() {
+    long size = 0;
+    for (File file : listBodies()) {
+      size += file.length();
+    }
+    return size;
+  }
+
+  /**
+   * Evict the least recently used entries until the cache fits in maxSize
+   */
+  synchronized void trim() {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+
+    // Leftovers of interrupted writes
+    for (File file : files) {
+      if (file.getName().endsWith(TMP_EXTENSION)) {
+        file.delete();
+      }
+    }
+
+    List<File> bodies = listBodies();
+    long size = 0;
+    for (File file : bodies) {
+      size += file.length();
+    }
+    if (size <= maxSize) {
+      return;
+    }
+
+    Collections.sort(bodies, new Comparator<File>() {
+      @Override
+      public int compare(File f1, File f2) {
+        return Long.compare(f1.lastModified(), f2.lastModified());
+      }
+    });
+    for (File body : bodies) {
+      if (size <= maxSize) {
+        break;
+      }
+      size -= body.length();
+      String name = body.getName();
+      new File(directory, name.substring(0, name.length() - BODY_EXTENSION.length()) + META_EXTENSION).delete();
+      body.delete();
+    }
+  }
+
+  private List<File> listBodies() {
+    File[] files = directory.listFiles();
+    List<File> bodies = new ArrayList<>();
+    if (files != null) {
+      for (File file : files) {
+        if (file.getName().endsWith(BODY_EXTENSION)) {
+          bodies.add(file);
+        }
+      }
+    }
+    return bodies;
+  }
+
+  private void writeMeta(String key, String urlStr, HttpValidators validators, long expires) throws IOException, JSONException {
+    JSONObject meta = new JSONObject();
+    meta.put(KEY_URL, urlStr);
+    if (validators != null) {
+      meta.putOpt(KEY_ETAG, validators.getETag());
+      meta.putOpt(KEY_LAST_MODIFIED, validators.getLastModified());
+    }
+    meta.put(KEY_EXPIRES, expires);
+    writeAtomically(new File(directory, key + META_EXTENSION), meta.toString().getBytes(Charset.forName("UTF-8")));
+  }
+
+  private void writeAtomically(File file, byte[] data) throws IOException {
+    if (!directory.exists()) {
+      directory.mkdirs();
+    }
+
+    File tmpFile = new File(file.getPath() + TMP_EXTENSION);
+    FileOutputStream out = new FileOutputStream(tmpFile);
+    try {
+      out.write(data);
+      out.getFD().sync();
+    } finally {
+      out.close();
+    }
+    if (!tmpFile.renameTo(file)) {
+      file.delete();
+      if (!tmpFile.renameTo(file)) {
+        tmpFile.delete();
+        throw new IOException("Unable to rename " + tmpFile.getName());
+      }
+    }
+  }
+
+  private static String getKey(String urlStr) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      byte[] hash = digest.digest(urlStr.getBytes(Charset.forName("UTF-8")));
+      StringBuilder key = new StringBuilder(hash.length * 2);
+      for (byte b : hash) {
+        key.append(String.format("%02x", b));
+      }
+      return key.toString();
+    } catch (NoSuchAlgorithmException e) {
+      return Integer.toHexString(urlStr.hashCode()) + "-" + urlStr.length();
+    }
+  }
+
+  private static byte[] readFully(InputStream in) throws IOException {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buff = new byte[BUFFER_SIZE];
+      int len;
+      while ((len = in.read(buff)) != -1) {
+        out.write(buff, 0, len);
+      }
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2026 SIL International. All rights reserved.
+ */
+package com.keyman.engine.util;
+
+import com.keyman.engine.JSONParser;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.net.HttpURLConnection;
+
+/**
+ * HTTP cache validators (ETag / Last-Modified) of a cached response, used to make conditional
+ * requests. The validators are persisted in a sidecar file next to the cache file.
+ */
+public final class HttpValidators {
+  private static final String TAG = "HttpValidators";
+
+  public static final String VALIDATORS_EXTENSION = ".validators";
+
+  private static final String KEY_URL = "url";
+  private static final String KEY_ETAG = "etag";
+  private static final String KEY_LAST_MODIFIED = "lastModified";
+
+  private final String url;
+  private final String etag;
+  private final String lastModified;
+
+  public HttpValidators(String url, String etag, String lastModified) {
+    this.url = url;
+    this.etag = etag;
+    this.lastModified = lastModified;
+  }
+
+  public String getUrl() { return url; }
+  public String getETag() { return etag; }
+  public String getLastModified() { return lastModified; }
+
+  /**
+   * @return boolean - true if there is a validator to make a conditional request
+   */
+  public boolean isEmpty() {
+    return (etag == null || etag.isEmpty()) && (lastModified == null || lastModified.isEmpty());
+  }
+
+  /**
+   * Add the conditional request headers to a connection, if the validators are for urlStr
+   * @param connection HttpURLConnection not yet connected
+   * @param urlStr String of the URL being requested
+   */
+  public void applyTo(HttpURLConnection connection, String urlStr) {
+    if (url == null || !url.equals(urlStr)) {
+      return;
+    }
+    if (etag != null && !etag.isEmpty()) {
+      connection.setRequestProperty("If-None-Match", etag);
+    }
+    if (lastModified != null && !lastModified.isEmpty()) {
+      connection.setRequestProperty("If-Modified-Since", lastModified);
+    }
+  }
+
+  /**
+   * Get the validators from a response
+   * @param connection HttpURLConnection with a response
+   * @param urlStr String of the URL requested
+   * @return HttpValidators
+   */
+  public static HttpValidators fromResponse(HttpURLConnection connection, String urlStr) {
+    return new HttpValidators(urlStr, connection.getHeaderField("ETag"),
+      connection.getHeaderField("Last-Modified"));
+  }
+
+  /**
+   * Load the validators stored for a cache file
+   * @param cacheFile File of the cached response
+   * @return HttpValidators or null if there are none, or the cache file is missing
+   */
+  public static HttpValidators load(File cacheFile) {
+    File file = getValidatorsFile(cacheFile);
+    if (!cacheFile.exists() || !file.exists()) {
+      return null;
+    }
+
+    JSONParser parser = new JSONParser();
+    JSONObject json = parser.getJSONObjectFromFile(file);
+    if (json == null) {
+      return null;
+    }
+    return new HttpValidators(json.optString(KEY_URL, null), json.optString(KEY_ETAG, null),
+      json.optString(KEY_LAST_MODIFIED, null));
+  }
+
+  /**
+   * Store the validators for a cache file. Empty validators remove the stored ones.
+   * @param cacheFile File of the cached response
+   */
+  public void save(File cacheFile) {
+    File file = getValidatorsFile(cacheFile);
+    if (isEmpty()) {
+      file.delete();
+      return;
+    }
+
+    try {
+      JSONObject json = new JSONObject();
+      json.put(KEY_URL, url);
+      json.putOpt(KEY_ETAG, etag);
+      json.putOpt(KEY_LAST_MODIFIED, lastModified);
+      FileUtils.saveList(file, json);
+    } catch (JSONException e) {
+      KMLog.LogException(TAG, "Unable to save validators for " + cacheFile.getName(), e);
+    }
+  }
+
+  /**
+   * Remove the validators stored for a cache file
+   * @param cacheFile File of the cached response
+   */
+  public static void delete(File cacheFile) {
+    getValidatorsFile(cacheFile).delete();
+  }
+
+  private static File getValidatorsFile(File cacheFile) {
+    return new File(cacheFile.getPath() + VALIDATORS_EXTENSION);
+  }
+}
@@ -16,6 +16,12 @@ import com.keyman.engine.data.Keyboard;
 import com.keyman.engine.util.DependencyUtil.LibraryType;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.sentry.Breadcrumb;
 import io.sentry.Sentry;
@@ -28,14 +34,123 @@ public final class KMLog {
   private static final String KEYBOARD_COUNT_TAG = "installedKeyboardCount";
   private static final String MODEL_TAG = "modelId";
   private static final String LANGCODE_TAG = "languageCode";
+  private static final String SUPPRESSED_TAG = "suppressedReportCount";
+
+  // Reports are written to logcat on the caller's thread, but sent to Sentry (and shown as
+  // toasts) by a background thread, so logging never blocks input. Reports beyond
+  // MAX_PENDING_REPORTS are dropped.
+  private static final int MAX_PENDING_REPORTS = 256;
+  private static final ConcurrentLinkedQueue<Report> pendingReports = new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger pendingCount = new AtomicInteger();
+  private static final AtomicBoolean drainScheduled = new AtomicBoolean();
+  private static final AtomicInteger droppedCount = new AtomicInteger();
+
+  // Per tag, a burst of 10 reports, then one a minute.  Repeats of a report within 5 minutes
+  // are dropped.  Only used on the report thread
+  private static final LogRateLimiter rateLimiter = new LogRateLimiter(10, 60 * 1000, 5 * 60 * 1000);
 
   // Some of the methods used to generate debug logging information can, themselves,
   // trigger errors that can also trigger the same logging.  We must not get
-  // caught in an infinite loop / stack-overflow; this field helps us avoid states
-  // that would otherwise cause error-looping, etc.
-  private static boolean isLogging = false;
+  // caught in an infinite loop / stack-overflow, so logging from the report thread is ignored.
+  private static volatile Thread reportThread = null;
+
+  // Debug info is only looked up again after the keyboard or installed resources change
+  private static volatile boolean debugInfoStale = true;
+
+  private enum ReportType {
+    INFO,
+    BREADCRUMB,
+    ERROR,
+    EXCEPTION
+  }
+
+  private static final class Report {
+    final ReportType type;
+    final String tag;
+    final String msg;
+    // The exception, or the call site of a breadcrumb
+    final Throwable throwable;
+    final String objName;
+    final String objStr;
+
+    Report(ReportType type, String tag, String msg, Throwable throwable, String objName, String objStr) {
+      this.type = type;
+      this.tag = tag;
+      this.msg = msg;
+      this.throwable = throwable;
+      this.objName = objName;
+      this.objStr = objStr;
+    }
+  }
+
+  // Created on first use
+  private static final class ReportWorker {
+    static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, TAG);
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        reportThread = thread;
+        return thread;
+      }
+    });
+  }
+
+  private static final Runnable drainReports = new Runnable() {
+    @Override
+    public void run() {
+      do {
+        Report report;
+        while ((report = pendingReports.poll()) != null) {
+          pendingCount.decrementAndGet();
+          try {
+            send(report);
+          } catch (Exception e) {
+            Log.e(TAG, "Failed to send report", e);
+          }
+        }
+        drainScheduled.set(false);
+        // Pick up reports queued after the last poll
+      } while (!pendingReports.isEmpty() && drainScheduled.compareAndSet(false, true));
+    }
+  };
+
+  /**
+   * Look up the current keyboard and lexical model again for the next report.
+   * Call when the current keyboard or the installed keyboards or models change.
+   */
+  public static void invalidateDebugInfo() {
+    debugInfoStale = true;
+  }
+
+  private static boolean isReportThread() {
+    return Thread.currentThread() == reportThread;
+  }
+
+  private static void enqueue(Report report) {
+    if (pendingCount.incrementAndGet() > MAX_PENDING_REPORTS) {
+      pendingCount.decrementAndGet();
+      droppedCount.incrementAndGet();
+      return;
+    }
+    pendingReports.offer(report);
+    if (drainScheduled.compareAndSet(false, true)) {
+      ReportWorker.executor.execute(drainReports);
+    }
+  }
+
+  private static boolean isSentryEnabled() {
+    return DependencyUtil.libraryExists(LibraryType.SENTRY) && Sentry.isEnabled();
+  }
 
   private static void tagDebugInfo() {
+    if (!debugInfoStale) {
+      // Sentry keeps the extras from the last lookup
+      return;
+    }
+    debugInfoStale = false;
+
     String kbdId = "";
     String lngCode = "";
     String modelId = "";
@@ -66,25 +181,89 @@ public final class KMLog {
     Sentry.setExtra(MODEL_TAG, modelId);
   }
 
+  // Runs on the report thread
+  private static void send(Report report) {
+    if (report.type == ReportType.BREADCRUMB) {
+      if (isSentryEnabled()) {
+        tagDebugInfo();
+        Sentry.addBreadcrumb(createBreadcrumb(report));
+      }
+      return;
+    }
+
+    if (!rateLimiter.tryAcquire(report.tag, report.msg, System.currentTimeMillis())) {
+      return;
+    }
+
+    if (report.type != ReportType.INFO &&
+        KMManager.getTier(BuildConfig.KEYMAN_ENGINE_VERSION_NAME) != KMManager.Tier.STABLE) {
+      BaseActivity.makeToast(null, report.msg, Toast.LENGTH_LONG);
+    }
+
+    if (!isSentryEnabled()) {
+      return;
+    }
+    tagDebugInfo();
+    Sentry.setExtra(SUPPRESSED_TAG, "" + (rateLimiter.getSuppressedCount() + droppedCount.get()));
+    switch (report.type) {
+      case INFO:
+        Sentry.captureMessage(report.msg, SentryLevel.INFO);
+        break;
+      case ERROR:
+        Sentry.captureMessage(report.msg, SentryLevel.ERROR);
+        break;
+      case EXCEPTION:
+        if (report.objName != null) {
+          Sentry.setExtra(report.objName, report.objStr);
+        }
+        Sentry.addBreadcrumb(report.msg);
+        Sentry.captureException(report.throwable);
+        if (report.objName != null) {
+          // Remove the exception-specific tagged data, lest it also be
+          // tracked on subsequent errors not associated with this report.
+          Sentry.removeExtra(report.objName);
+        }
+        break;
+    }
+  }
+
+  private static Breadcrumb createBreadcrumb(Report report) {
+    Breadcrumb crumb = new Breadcrumb();
+    crumb.setMessage(report.msg);
+    crumb.setLevel(SentryLevel.INFO);
+
+    if (report.throwable != null) {
+      // The call site was captured by LogBreadcrumb, which is the first entry; skip it.
+      StackTraceElement[] rawTrace = report.throwable.getStackTrace();
+      int skipCount = 1;
+
+      // Sentry does limit the size of messages... so let's just
+      // keep 10 entries and call it a day.
+      int limit = Math.min(rawTrace.length, 10 + skipCount);
+      if(rawTrace.length > skipCount) {
+        String[] trace = new String[limit - skipCount];
+        for (int i = skipCount; i < limit; i++) {
+          trace[i-skipCount] = rawTrace[i].toString();
+        }
+        crumb.setData("stacktrace", trace);
+      }
+    }
+    return crumb;
+  }
+
   /**
    * Utility to log info and send to Sentry
    * @param tag String of the caller
    * @param msg String of the info message
    */
   public static void LogInfo(String tag, String msg) {
-    if(isLogging) {
+    if (isReportThread()) {
       return;
     }
-    isLogging = true;
     if (msg != null && !msg.isEmpty()) {
       Log.i(tag, msg);
-
-      if (DependencyUtil.libraryExists(LibraryType.SENTRY) && Sentry.isEnabled()) {
-        tagDebugInfo();
-        Sentry.captureMessage(msg, SentryLevel.INFO);
-      }
+      enqueue(new Report(ReportType.INFO, tag, msg, null, null, null));
     }
-    isLogging = false;
   }
 
   /**
@@ -98,43 +277,19 @@ public final class KMLog {
       return;
     }
 
-    if(isLogging) {
+    if (isReportThread()) {
       return;
     }
-    isLogging = true;
 
     Log.i(tag, msg);
 
-    if (!DependencyUtil.libraryExists(LibraryType.SENTRY) || !Sentry.isEnabled()) {
-      isLogging = false;
+    if (!isSentryEnabled()) {
       return;
     }
 
-    Breadcrumb crumb = new Breadcrumb();
-    crumb.setMessage(msg);
-    crumb.setLevel(SentryLevel.INFO);
-
-    if(addStackTrace) {
-      StackTraceElement[] rawTrace = Thread.currentThread().getStackTrace();
-
-      // The call that gets us the stack-trace above... shows up in the
-      // stack trace, so we'll skip the first few (redundant) entries.
-      int skipCount = 3;
-
-      // Sentry does limit the size of messages... so let's just
-      // keep 10 entries and call it a day.
-      int limit = Math.min(rawTrace.length, 10 + skipCount);
-      if(rawTrace.length > skipCount) {
-        String[] trace = new String[limit - skipCount];
-        for (int i = skipCount; i < limit; i++) {
-          trace[i-skipCount] = rawTrace[i].toString();
-        }
-        crumb.setData("stacktrace", trace);
-      }
-    }
-    tagDebugInfo();
-    Sentry.addBreadcrumb(crumb);
-    isLogging = false;
+    // Only the call site is captured here; the stack trace is formatted on the report thread
+    Throwable callSite = addStackTrace ? new Throwable() : null;
+    enqueue(new Report(ReportType.BREADCRUMB, tag, msg, callSite, null, null));
   }
 
   /**
@@ -143,23 +298,13 @@ public final class KMLog {
    * @param msg String of the error message
    */
   public static void LogError(String tag, String msg) {
-    if(isLogging) {
+    if (isReportThread()) {
       return;
     }
-    isLogging = true;
     if (msg != null && !msg.isEmpty()) {
       Log.e(tag, msg);
-
-      if (KMManager.getTier(BuildConfig.KEYMAN_ENGINE_VERSION_NAME) != KMManager.Tier.STABLE) {
-        BaseActivity.makeToast(null, msg, Toast.LENGTH_LONG);
-      }
-
-      if (DependencyUtil.libraryExists(LibraryType.SENTRY) && Sentry.isEnabled()) {
-        tagDebugInfo();
-        Sentry.captureMessage(msg, SentryLevel.ERROR);
-      }
+      enqueue(new Report(ReportType.ERROR, tag, msg, null, null, null));
     }
-    isLogging = false;
   }
 
   /**
@@ -169,28 +314,7 @@ public final class KMLog {
    * @param e Throwable exception
    */
   public static void LogException(String tag, String msg, Throwable e) {
-    if(isLogging) {
-      return;
-    }
-    isLogging = true;
-    String errorMsg = "";
-    if (msg != null && !msg.isEmpty()) {
-      errorMsg = msg + "\n" + e;
-    } else if (e != null) {
-      errorMsg = e.getMessage();
-    }
-    Log.e(tag, errorMsg, e);
-
-    if (KMManager.getTier(BuildConfig.KEYMAN_ENGINE_VERSION_NAME) != KMManager.Tier.STABLE) {
-      BaseActivity.makeToast(null, errorMsg, Toast.LENGTH_LONG);
-    }
-
-    if (DependencyUtil.libraryExists(LibraryType.SENTRY) && Sentry.isEnabled()) {
-      tagDebugInfo();
-      Sentry.addBreadcrumb(errorMsg);
-      Sentry.captureException(e);
-    }
-    isLogging = false;
+    logException(tag, msg, e, null, null);
   }
 
   /**
@@ -203,25 +327,32 @@ public final class KMLog {
    */
   public static void LogExceptionWithData(String tag, String msg,
                                           String objName, Object obj, Throwable e) {
-    if(isLogging) {
+    if (isReportThread()) {
       return;
     }
-    isLogging = true;
-    if (obj != null && DependencyUtil.libraryExists(LibraryType.SENTRY) && Sentry.isEnabled()) {
-      tagDebugInfo();
-      String objStr = null;
+    String objStr = null;
+    if (obj != null && isSentryEnabled()) {
+      // Format the object now, as it may change before the report is sent
       try {
         objStr = obj.toString();
-        Sentry.setExtra(objName, objStr);
       } catch (Exception innerE) {
         LogException(TAG, "Sentry.setExtra failed for " + objName, innerE);
       }
-      // Report the original exception
-      LogException(tag, msg, e);
-      // And remove the exception-specific tagged data, lest it also be
-      // tracked on subsequent errors not associated with the current call.
-      Sentry.removeExtra(objName);
     }
-    isLogging = false;
+    logException(tag, msg, e, (objStr != null) ? objName : null, objStr);
+  }
+
+  private static void logException(String tag, String msg, Throwable e, String objName, String objStr) {
+    if (isReportThread()) {
+      return;
+    }
+    String errorMsg = "";
+    if (msg != null && !msg.isEmpty()) {
+      errorMsg = msg + "\n" + e;
+    } else if (e != null) {
+      errorMsg = e.getMessage();
+    }
+    Log.e(tag, errorMsg, e);
+    enqueue(new Report(ReportType.EXCEPTION, tag, errorMsg, e, objName, objStr));
   }
 }
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2026 SIL International. All rights reserved.
+ */
+package com.keyman.engine.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Decides which log reports are sent, so an error storm doesn't flood Sentry.
+ *
+ * Each tag may send a burst of reports, then one report per refill interval. A report with the
+ * same tag and message as one sent within the dedup interval is dropped. Not thread-safe:
+ * KMLog only uses it from its report thread.
+ */
+final class LogRateLimiter {
+  private static final int MAX_RECENT_REPORTS = 512;
+
+  private final int burst;
+  private final long refillMillis;
+  private final long dedupMillis;
+
+  private final HashMap<String, Bucket> buckets = new HashMap<>();
+  private final HashMap<String, Long> recentReports = new HashMap<>();
+  private int suppressedCount = 0;
+
+  private static final class Bucket {
+    int tokens;
+    long lastRefill;
+
+    Bucket(int tokens, long lastRefill) {
+      this.tokens = tokens;
+      this.lastRefill = lastRefill;
+    }
+  }
+
+  /**
+   * @param burst int - number of reports a tag can send at once
+   * @param refillMillis long - interval at which a tag can send another report
+   * @param dedupMillis long - interval during which a repeated report is dropped
+   */
+  LogRateLimiter(int burst, long refillMillis, long dedupMillis) {
+    this.burst = burst;
+    this.refillMillis = refillMillis;
+    this.dedupMillis = dedupMillis;
+  }
+
+  /**
+   * @param tag String of the caller
+   * @param msg String of the report message
+   * @param nowMillis long - current time
+   * @return boolean - whether the report may be sent
+   */
+  boolean tryAcquire(String tag, String msg, long nowMillis) {
+    String key = tag + '\n' + msg;
+    Long lastReported = recentReports.get(key);
+    if (lastReported != null && nowMillis - lastReported < dedupMillis) {
+      suppressedCount++;
+      return false;
+    }
+
+    Bucket bucket = buckets.get(tag);
+    if (bucket == null) {
+      bucket = new Bucket(burst, nowMillis);
+      buckets.put(tag, bucket);
+    } else if (nowMillis - bucket.lastRefill >= refillMillis) {
+      long refills = (nowMillis - bucket.lastRefill) / refillMillis;
+      bucket.tokens = (int) Math.min(burst, bucket.tokens + refills);
+      bucket.lastRefill += refills * refillMillis;
+    }
+    if (bucket.tokens == 0) {
+      suppressedCount++;
+      return false;
+    }
+    bucket.tokens--;
+
+    if (recentReports.size() >= MAX_RECENT_REPORTS) {
+      trimRecentReports(nowMillis);
+    }
+    recentReports.put(key, nowMillis);
+    return true;
+  }
+
+  /**
+   * @return int - number of reports dropped so far
+   */
+  int getSuppressedCount() {
+    return suppressedCount;
+  }
+
+  private void trimRecentReports(long nowMillis) {
+    Iterator<Map.Entry<String, Long>> it = recentReports.entrySet().iterator();
+    while (it.hasNext()) {
+      if (nowMillis - it.next().getValue() >= dedupMillis) {
+        it.remove();
+      }
+    }
+    if (recentReports.size() >= MAX_RECENT_REPORTS) {
+      recentReports.clear();
+    }
+  }
+}
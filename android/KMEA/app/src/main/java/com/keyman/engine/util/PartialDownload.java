@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2026 SIL International. All rights reserved.
+ */
+package com.keyman.engine.util;
+
+import com.keyman.engine.JSONParser;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+
+/**
+ * Resume information for an interrupted download, kept in a sidecar file next to the partial
+ * (.tmp) file: the URL, the validator of the response, its total length and the number of
+ * bytes written.
+ */
+final class PartialDownload {
+  private static final String TAG = "PartialDownload";
+
+  static final String RESUME_EXTENSION = ".resume";
+
+  private static final String KEY_URL = "url";
+  private static final String KEY_ETAG = "etag";
+  private static final String KEY_LAST_MODIFIED = "lastModified";
+  private static final String KEY_LENGTH = "length";
+  private static final String KEY_OFFSET = "offset";
+
+  private final String url;
+  private final String etag;
+  private final String lastModified;
+  private final long length;
+  private long offset;
+
+  PartialDownload(String url, HttpValidators validators, long length) {
+    this(url, validators.getETag(), validators.getLastModified(), length, 0);
+  }
+
+  private PartialDownload(String url, String etag, String lastModified, long length, long offset) {
+    this.url = url;
+    this.etag = etag;
+    this.lastModified = lastModified;
+    this.length = length;
+    this.offset = offset;
+  }
+
+  /**
+   * @return String - validator for the If-Range header. ETag is preferred over Last-Modified
+   */
+  String getValidator() {
+    return (etag != null && !etag.isEmpty()) ? etag : lastModified;
+  }
+
+  long getOffset() {
+    return offset;
+  }
+
+  /**
+   * Load the resume information of a partial download of urlStr
+   * @param tmpFile File - partial download
+   * @param urlStr String - URL being downloaded
+   * @return PartialDownload, or null if tmpFile can't be resumed
+   */
+  static PartialDownload load(File tmpFile, String urlStr) {
+    File file = getResumeFile(tmpFile);
+    if (!tmpFile.exists() || !file.exists()) {
+      return null;
+    }
+
+    JSONObject json = new JSONParser().getJSONObjectFromFile(file);
+    if (json == null) {
+      return null;
+    }
+    PartialDownload partial = new PartialDownload(json.optString(KEY_URL, null),
+      json.optString(KEY_ETAG, null), json.optString(KEY_LAST_MODIFIED, null),
+      json.optLong(KEY_LENGTH, -1), json.optLong(KEY_OFFSET, 0));
+
+    // The partial file must be exactly what was recorded, for the same URL
+    String validator = partial.getValidator();
+    if (!urlStr.equals(partial.url) || validator == null || validator.isEmpty() ||
+        partial.offset <= 0 || partial.offset != tmpFile.length() ||
+        (partial.length >= 0 && partial.offset >= partial.length)) {
+      return null;
+    }
+    return partial;
+  }
+
+  /**
+   * Record the resume information with the current length of tmpFile
+   * @param tmpFile File - partial download
+   */
+  void save(File tmpFile) {
+    offset = tmpFile.length();
+    try {
+      JSONObject json = new JSONObject();
+      json.put(KEY_URL, url);
+      json.putOpt(KEY_ETAG, etag);
+      json.putOpt(KEY_LAST_MODIFIED, lastModified);
+      json.put(KEY_LENGTH, length);
+      json.put(KEY_OFFSET, offset);
+      FileUtils.saveList(getResumeFile(tmpFile), json);
+    } catch (JSONException e) {
+      KMLog.LogException(TAG, "Unable to save resume data for " + tmpFile.getName(), e);
+    }
+  }
+
+  /**
+   * Remove the resume information of a partial download
+   * @param tmpFile File - partial download
+   */
+  static void delete(File tmpFile) {
+    if (tmpFile != null) {
+      getResumeFile(tmpFile).delete();
+    }
+  }
+
+  private static File getResumeFile(File tmpFile) {
+    return new File(tmpFile.getPath() + RESUME_EXTENSION);
+  }
+}
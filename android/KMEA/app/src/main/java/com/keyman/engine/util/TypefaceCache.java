@@ -0,0 +1,224 @@
+/**
+ * Copyright (C) 2026 SIL International. All rights reserved.
+ */
+package com.keyman.engine.util;
+
+import android.graphics.Typeface;
+import android.os.Build;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Process-wide cache of Typefaces loaded from font files.
+ *
+ * Typeface.createFromFile parses the font and allocates native font data each time, which is only
+ * released when the Typeface is garbage collected. Entries are keyed by canonical path and
+ * modification time, so an updated font file is reloaded. The least recently used Typefaces are
+ * dropped once the font files of the cached Typefaces exceed maxBytes in total; the most recently
+ * used one is always kept. Font files which fail to load are remembered, so they aren't loaded
+ * (and reported) again until they're modified.
+ */
+public final class TypefaceCache {
+  private static final String TAG = "TypefaceCache";
+
+  public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+  private static TypefaceCache instance = null;
+
+  private final long maxBytes;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final HashSet<String> failedKeys = new HashSet<>();
+  private final FontLoader loader;
+  private long totalBytes = 0;
+  private ExecutorService prewarmExecutor = null;
+
+  private static final class Entry {
+    final Typeface typeface;
+    final long bytes;
+
+    Entry(Typeface typeface, long bytes) {
+      this.typeface = typeface;
+      this.bytes = bytes;
+    }
+  }
+
+  interface FontLoader {
+    Typeface load(File file);
+  }
+
+  private static final FontLoader DEFAULT_LOADER = new FontLoader() {
+    @Override
+    public Typeface load(File file) {
+      return Typeface.createFromFile(file);
+    }
+  };
+
+  /**
+   * @param maxBytes long - maximum total size of the font files of the cached Typefaces
+   */
+  TypefaceCache(long maxBytes) {
+    this(maxBytes, DEFAULT_LOADER);
+  }
+
+  TypefaceCache(long maxBytes, FontLoader loader) {
+    this.maxBytes = maxBytes;
+    this.loader = loader;
+  }
+
+  public static synchronized TypefaceCache getInstance() {
+    if (instance == null) {
+      instance = new TypefaceCache(DEFAULT_MAX_BYTES);
+    }
+    return instance;
+  }
+
+  /**
+   * Get the Typeface of a font file, loading it if it isn't cached
+   * @param file File - the font file
+   * @return Typeface, or null if the file doesn't exist, can't be loaded on this Android
+   * version, or failed to load before
+   * @throws RuntimeException if the font can't be loaded
+   */
+  public Typeface get(File file) {
+    if (!canLoad(file.getName()) || !file.exists()) {
+      return null;
+    }
+
+    String key = getKey(file);
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry != null) {
+        return entry.typeface;
+      }
+      if (failedKeys.contains(key)) {
+        return null;
+      }
+    }
+
+    // Load outside the lock so a slow pre-warm doesn't block lookups of cached fonts
+    Typeface typeface;
+    try {
+      typeface = loader.load(file);
+    } catch (RuntimeException e) {
+      synchronized (this) {
+        failedKeys.add(key);
+      }
+      throw e;
+    }
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry != null) {
+        // Loaded concurrently
+        return entry.typeface;
+      }
+      entries.put(key, new Entry(typeface, file.length()));
+      totalBytes += file.length();
+      trim();
+    }
+    return typeface;
+  }
+
+  /**
+   * Load font files into the cache in the background, so they're ready when needed
+   * @param fontFilenames Collection of font file paths. Only TTF and OTF fonts are loaded
+   */
+  public void prewarm(Collection<String> fontFilenames) {
+    final List<File> files = new ArrayList<>();
+    for (String fontFilename : fontFilenames) {
+      if (fontFilename != null && FileUtils.hasTrueTypeOrOpenTypeExtension(fontFilename)) {
+        files.add(new File(fontFilename));
+      }
+    }
+    if (files.isEmpty()) {
+      return;
+    }
+
+    getPrewarmExecutor().execute(new Runnable() {
+      @Override
+      public void run() {
+        for (File file : files) {
+          try {
+            get(file);
+          } catch (Exception e) {
+            KMLog.LogException(TAG, "Failed to pre-warm Typeface: " + file.getName(), e);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Remove all cached Typefaces
+   */
+  public synchronized void clear() {
+    entries.clear();
+    failedKeys.clear();
+    totalBytes = 0;
+  }
+
+  /**
+   * @return int - number of cached Typefaces
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return long - total size of the font files of the cached Typefaces
+   */
+  public synchronized long getTotalBytes() {
+    return totalBytes;
+  }
+
+  private static boolean canLoad(String fontFilename) {
+    // Ignore .woff files if Android 7.0 / 7.1 (Issue #4896)
+    return !((Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) &&
+      (Build.VERSION.SDK_INT <= Build.VERSION_CODES.N_MR1) &&
+      fontFilename.toLowerCase().endsWith(FileUtils.WOFFFONT));
+  }
+
+  private void trim() {
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (totalBytes > maxBytes && entries.size() > 1 && it.hasNext()) {
+      Entry eldest = it.next().getValue();
+      it.remove();
+      totalBytes -= eldest.bytes;
+    }
+  }
+
+  private synchronized ExecutorService getPrewarmExecutor() {
+    if (prewarmExecutor == null) {
+      prewarmExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, TAG);
+          thread.setDaemon(true);
+          thread.setPriority(Thread.MIN_PRIORITY);
+          return thread;
+        }
+      });
+    }
+    return prewarmExecutor;
+  }
+
+  private static String getKey(File file) {
+    String path;
+    try {
+      path = file.getCanonicalPath();
+    } catch (IOException e) {
+      path = file.getAbsolutePath();
+    }
+    return path + "#" + file.lastModified();
+  }
+}
@@ -10,17 +10,37 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 public class ZipUtils {
   private final static String TAG = "ZipUtils";
+  private final static EngineMetrics.Timer unzipTimer = EngineMetrics.timer("zip.unzip");
+  private final static EngineMetrics.Counter unzipFiles = EngineMetrics.counter("zip.unzip.files");
 
   // Credit to zapi's answer at https://stackoverflow.com/questions/3382996/how-to-unzip-files-programmatically-in-android.
   public static void unzip(File zipFile, File targetDirectory) throws IOException {
-    ZipInputStream zis = new ZipInputStream(
-      new BufferedInputStream(new FileInputStream(zipFile)));
+    unzip(new FileInputStream(zipFile), targetDirectory);
+  }
+
+  /**
+   * Extract a zip stream into targetDirectory in a single pass. Used to extract packages straight
+   * from a downloaded file descriptor without first copying the package into the app cache.
+   * Stored (uncompressed) entries are transferred to the destination FileChannel directly.
+   * @param inputStream InputStream of the zip contents. The stream is closed when done.
+   * @param targetDirectory File of the directory to extract into
+   * @throws IOException
+   */
+  public static void unzip(InputStream inputStream, File targetDirectory) throws IOException {
+    long startTime = unzipTimer.start();
+    ZipInputStream zis = new ZipInputStream(new BufferedInputStream(inputStream));
     try {
+      ReadableByteChannel zipChannel = Channels.newChannel(zis);
+      String targetPath = targetDirectory.getCanonicalPath();
       ZipEntry ze;
       int count;
       byte[] buffer = new byte[8192];
@@ -30,7 +50,7 @@ public class ZipUtils {
         // Check for zip path traversal vulnerability
         // https://support.google.com/faqs/answer/9294009
         String canonicalPath = file.getCanonicalPath();
-        if (!canonicalPath.startsWith(targetDirectory.getCanonicalPath())) {
+        if (!canonicalPath.startsWith(targetPath)) {
           // Security exception
           throw new SecurityException("Zip traversal error");
         }
@@ -41,10 +61,24 @@ public class ZipUtils {
             dir.getAbsolutePath());
         if (ze.isDirectory())
           continue;
+        unzipFiles.increment();
         FileOutputStream fout = new FileOutputStream(file);
         try {
-          while ((count = zis.read(buffer)) != -1)
-            fout.write(buffer, 0, count);
+          if (ze.getMethod() == ZipEntry.STORED && ze.getSize() >= 0) {
+            FileChannel outChannel = fout.getChannel();
+            long size = ze.getSize();
+            long position = 0;
+            while (position < size) {
+              long transferred = outChannel.transferFrom(zipChannel, position, size - position);
+              if (transferred <= 0) {
+                break;
+              }
+              position += transferred;
+            }
+          } else {
+            while ((count = zis.read(buffer)) != -1)
+              fout.write(buffer, 0, count);
+          }
         } finally {
           fout.close();
         }
@@ -55,6 +89,7 @@ public class ZipUtils {
             */
       }
     } finally {
+      unzipTimer.stop(startTime);
       zis.close();
     }
   }
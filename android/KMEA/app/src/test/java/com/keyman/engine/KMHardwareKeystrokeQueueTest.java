@@ -0,0 +1,44 @@
+package com.keyman.engine;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class KMHardwareKeystrokeQueueTest {
+
+  @Test
+  public void test_drainCoalescesRepeats() {
+    KMHardwareKeystrokeQueue queue = new KMHardwareKeystrokeQueue();
+    Assert.assertTrue(queue.isEmpty());
+
+    queue.add(65, 0, 0x2a00, 0);
+    queue.add(65, 0, 0x2a00, 0);
+    queue.add(65, 0, 0x2a00, 0);
+    queue.add(65, 16, 0x2a00, 1);
+    queue.add(65, 0, 0x2a00, 0);
+    Assert.assertFalse(queue.isEmpty());
+
+    Assert.assertEquals(
+      "executeHardwareKeystrokes([65,0,10752,0,3,65,16,10752,1,1,65,0,10752,0,1])",
+      queue.drain());
+    Assert.assertTrue(queue.isEmpty());
+  }
+
+  @Test
+  public void test_drainKeepsOrderBeyondInitialCapacity() {
+    KMHardwareKeystrokeQueue queue = new KMHardwareKeystrokeQueue();
+    StringBuilder expected = new StringBuilder("executeHardwareKeystrokes([");
+    for (int code = 1; code <= 20; code++) {
+      queue.add(code, 0, 0, 0);
+      if (code > 1) {
+        expected.append(',');
+      }
+      expected.append(code).append(",0,0,0,1");
+    }
+    expected.append("])");
+
+    Assert.assertEquals(expected.toString(), queue.drain());
+  }
+}
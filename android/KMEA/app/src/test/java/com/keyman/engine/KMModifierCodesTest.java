@@ -0,0 +1,48 @@
+package com.keyman.engine;
+
+import android.view.KeyEvent;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class KMModifierCodesTest {
+
+  @Test
+  public void test_fromAndroidModifiers() {
+    Assert.assertEquals(0, KMModifierCodes.fromAndroidModifiers(0, true));
+    Assert.assertEquals(KMModifierCodes.SHIFT,
+      KMModifierCodes.fromAndroidModifiers(KeyEvent.META_SHIFT_ON | KeyEvent.META_SHIFT_LEFT_ON, true));
+
+    int leftCtrlRightAlt = KeyEvent.META_CTRL_ON | KeyEvent.META_CTRL_LEFT_ON |
+      KeyEvent.META_ALT_ON | KeyEvent.META_ALT_RIGHT_ON;
+    Assert.assertEquals(KMModifierCodes.LCTRL | KMModifierCodes.RALT,
+      KMModifierCodes.fromAndroidModifiers(leftCtrlRightAlt, true));
+    Assert.assertEquals(KMModifierCodes.CTRL | KMModifierCodes.ALT,
+      KMModifierCodes.fromAndroidModifiers(leftCtrlRightAlt, false));
+
+    int all = KeyEvent.META_SHIFT_ON | KeyEvent.META_CTRL_RIGHT_ON | KeyEvent.META_ALT_LEFT_ON;
+    Assert.assertEquals(KMModifierCodes.SHIFT | KMModifierCodes.RCTRL | KMModifierCodes.LALT,
+      KMModifierCodes.fromAndroidModifiers(all, true));
+
+    // Consistent with the string-keyed lookup
+    Assert.assertEquals((int) KMModifierCodes.get("LALT"), KMModifierCodes.LALT);
+  }
+
+  @Test
+  public void test_hasChiralModifiers() {
+    Assert.assertFalse(KMModifierCodes.hasChiralModifiers(KeyEvent.META_SHIFT_ON));
+    Assert.assertTrue(KMModifierCodes.hasChiralModifiers(KeyEvent.META_CTRL_ON | KeyEvent.META_CTRL_RIGHT_ON));
+    Assert.assertTrue(KMModifierCodes.hasChiralModifiers(KeyEvent.META_ALT_ON | KeyEvent.META_ALT_LEFT_ON));
+  }
+
+  @Test
+  public void test_fromLockStates() {
+    Assert.assertEquals(KMModifierCodes.NO_CAPS | KMModifierCodes.NO_NUM_LOCK | KMModifierCodes.NO_SCROLL_LOCK,
+      KMModifierCodes.fromLockStates(false, false, false));
+    Assert.assertEquals(KMModifierCodes.CAPS | KMModifierCodes.NO_NUM_LOCK | KMModifierCodes.SCROLL_LOCK,
+      KMModifierCodes.fromLockStates(true, false, true));
+  }
+}
@@ -0,0 +1,50 @@
+package com.keyman.engine;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class KMScanCodeMapTest {
+  private static final int KEY_A = 0x1E;
+  private static final int KEY_KP0 = 0x52;
+  private static final int KEY_KPASTERISK = 0x37;
+  private static final int KEY_KPENTER = 0x60;
+  private static final int KEY_KPSLASH = 0x62;
+  private static final int KEY_RO = 0x59;
+  private static final int KEY_YEN = 0x7C;
+  private static final int KEY_F1 = 0x3B;
+  private static final int KEY_VOLUMEUP = 0x73;
+
+  @Test
+  public void test_getKeymanKeyCode() {
+    Assert.assertEquals('A', KMScanCodeMap.getKeymanKeyCode(KEY_A, false));
+    Assert.assertEquals(226, KMScanCodeMap.getKeymanKeyCode(KEY_YEN, false));
+    Assert.assertEquals(193, KMScanCodeMap.getKeymanKeyCode(KEY_RO, false));
+
+    // Keys left to Android
+    Assert.assertEquals(0, KMScanCodeMap.getKeymanKeyCode(KEY_F1, false));
+    Assert.assertEquals(0, KMScanCodeMap.getKeymanKeyCode(KEY_VOLUMEUP, false));
+    Assert.assertEquals(0, KMScanCodeMap.getKeymanKeyCode(-1, false));
+    Assert.assertEquals(0, KMScanCodeMap.getKeymanKeyCode(0x1000, false));
+  }
+
+  @Test
+  public void test_numberPad() {
+    Assert.assertEquals(96, KMScanCodeMap.getKeymanKeyCode(KEY_KP0, true));
+    Assert.assertEquals(110, KMScanCodeMap.getKeymanKeyCode(KMScanCodeMap.KEY_KPDOT, true));
+    Assert.assertEquals(13, KMScanCodeMap.getKeymanKeyCode(KEY_KPENTER, true));
+
+    // Navigation keys without num lock
+    Assert.assertEquals(0, KMScanCodeMap.getKeymanKeyCode(KEY_KP0, false));
+    Assert.assertEquals(0, KMScanCodeMap.getKeymanKeyCode(KMScanCodeMap.KEY_KP7, false));
+    Assert.assertEquals(0, KMScanCodeMap.getKeymanKeyCode(KMScanCodeMap.KEY_KPDOT, false));
+
+    // Operators don't depend on num lock
+    Assert.assertEquals(106, KMScanCodeMap.getKeymanKeyCode(KEY_KPASTERISK, false));
+    Assert.assertEquals(109, KMScanCodeMap.getKeymanKeyCode(KMScanCodeMap.KEY_KPMINUS, false));
+    Assert.assertEquals(107, KMScanCodeMap.getKeymanKeyCode(KMScanCodeMap.KEY_KPPLUS, false));
+    Assert.assertEquals(111, KMScanCodeMap.getKeymanKeyCode(KEY_KPSLASH, false));
+  }
+}
@@ -0,0 +1,216 @@
+package com.keyman.engine.cloud;
+
+import android.util.Log;
+
+import com.keyman.engine.packages.PackageBatchInstaller;
+import com.keyman.engine.packages.PackageProcessor;
+import com.keyman.engine.util.DownloadClient;
+import com.keyman.engine.util.HttpValidators;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Update-check and install benchmarks against MockApiServer. Besides checking the results, each
+ * benchmark fails if it exceeds a generous time limit, and appends its timings to the file named
+ * by the kmeaBenchmarkReport system property so regressions can be compared between builds.
+ * The download and install throughput benchmark only runs with -PkmeaBenchmarks.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CloudBenchmarkTest {
+  private static final String TAG = "CloudBenchmarkTest";
+  private static final File TEST_RESOURCE_ROOT = new File("test_resources");
+  private static final File TEST_DOWNLOAD_ROOT = new File(TEST_RESOURCE_ROOT, "temp");
+  private static final File TEST_GFF_KMP_FILE = new File(TEST_RESOURCE_ROOT, "v14" + File.separator + "gff_amh_7_test_json.kmp");
+  private static final File TEST_EURO_LATIN_KMP_FILE = new File(TEST_RESOURCE_ROOT, "v14" + File.separator + "sil_euro_latin.kmp");
+
+  private static final int KEYBOARD_COUNT = 200;
+  private static final int UPDATE_CHECK_ITERATIONS = 20;
+
+  // Upper bounds in milliseconds, far above the expected timings so only regressions fail
+  private static final long MAX_UPDATE_CHECK_MS = 5000;
+  private static final long MAX_REVALIDATION_MS = 1000;
+  private static final long MAX_DOWNLOAD_MS = 30000;
+  private static final long MAX_INSTALL_MS = 30000;
+
+  private MockApiServer server;
+  private DownloadClient client;
+
+  @Before
+  public void startServer() throws IOException {
+    server = new MockApiServer();
+    server.addKeyboardPackage("gff_amh_7", "2.0", TEST_GFF_KMP_FILE);
+    server.addKeyboardPackage("sil_euro_latin", "2.0", TEST_EURO_LATIN_KMP_FILE);
+    for (int i = 0; i < KEYBOARD_COUNT; i++) {
+      server.addKeyboard("keyboard_" + i, "1." + i);
+    }
+    client = new DownloadClient(DownloadClient.DEFAULT_MAX_PARALLEL, 5000, 5000);
+    TEST_DOWNLOAD_ROOT.mkdirs();
+  }
+
+  @After
+  public void stopServer() throws IOException {
+    server.shutdown();
+    FileUtils.deleteDirectory(TEST_DOWNLOAD_ROOT);
+  }
+
+  private String getPackageVersionUrl(int first, int count) {
+    StringBuilder url = new StringBuilder(server.getBaseUrl()).append("/package-version?platform=android");
+    for (int i = first; i < first + count; i++) {
+      url.append("&keyboard=keyboard_").append(i);
+    }
+    return url.toString();
+  }
+
+  private static void report(String benchmark, String result) throws IOException {
+    String line = "Benchmark " + benchmark + ": " + result;
+    Log.i(TAG, line);
+    String reportPath = System.getProperty("kmeaBenchmarkReport");
+    if (reportPath != null && !reportPath.isEmpty()) {
+      FileUtils.writeStringToFile(new File(reportPath), line + System.lineSeparator(),
+        StandardCharsets.UTF_8, true);
+    }
+  }
+
+  @Test
+  public void test_updateCheckRevalidation() throws IOException {
+    server.setLatency(20);
+    String url = getPackageVersionUrl(0, KEYBOARD_COUNT);
+    File cacheFile = new File(TEST_DOWNLOAD_ROOT, CloudDataJsonUtil.JSON_Resources_Cache_Filename);
+
+    long start = System.nanoTime();
+    CloudDataJsonUtil.ConditionalFetch fetch = CloudDataJsonUtil.fetchJSONObjectIfModified(url, cacheFile);
+    long firstMs = (System.nanoTime() - start) / 1000000;
+    Assert.assertEquals(CloudDataJsonUtil.FETCH_MODIFIED, fetch.status);
+    Assert.assertEquals(KEYBOARD_COUNT, fetch.jsonObject.optJSONObject("keyboards").length());
+    com.keyman.engine.util.FileUtils.saveList(cacheFile, fetch.jsonObject);
+    fetch.validators.save(cacheFile);
+
+    long bytesBefore = server.getBytesSent();
+    start = System.nanoTime();
+    for (int i = 0; i < UPDATE_CHECK_ITERATIONS; i++) {
+      fetch = CloudDataJsonUtil.fetchJSONObjectIfModified(url, cacheFile);
+      Assert.assertEquals(CloudDataJsonUtil.FETCH_NOT_MODIFIED, fetch.status);
+    }
+    long revalidateMs = (System.nanoTime() - start) / 1000000 / UPDATE_CHECK_ITERATIONS;
+
+    Assert.assertEquals(UPDATE_CHECK_ITERATIONS, server.getNotModifiedCount());
+    Assert.assertEquals(bytesBefore, server.getBytesSent());
+    Assert.assertTrue("First update check took " + firstMs + " ms", firstMs < MAX_UPDATE_CHECK_MS);
+    Assert.assertTrue("Revalidation took " + revalidateMs + " ms", revalidateMs < MAX_REVALIDATION_MS);
+    report("update check", "first " + firstMs + " ms, revalidation " + revalidateMs + " ms");
+    HttpValidators.delete(cacheFile);
+  }
+
+  @Test
+  public void test_chunkedUpdateCheck() throws IOException {
+    server.setLatency(20);
+    int chunk = KEYBOARD_COUNT / 4;
+    CloudApiTypes.CloudApiParam[] params = new CloudApiTypes.CloudApiParam[4];
+    for (int i = 0; i < params.length; i++) {
+      params[i] = new CloudApiTypes.CloudApiParam(CloudApiTypes.ApiTarget.PackageVersion,
+        getPackageVersionUrl(i * chunk, chunk)).setType(CloudApiTypes.JSONType.Object);
+    }
+
+    long start = System.nanoTime();
+    CloudDataJsonUtil.ConditionalFetch fetch = CloudDataJsonUtil.fetchJSONObjects(params);
+    long elapsedMs = (System.nanoTime() - start) / 1000000;
+
+    Assert.assertEquals(CloudDataJsonUtil.FETCH_MODIFIED, fetch.status);
+    JSONObject keyboards = fetch.jsonObject.optJSONObject("keyboards");
+    Assert.assertEquals(KEYBOARD_COUNT, keyboards.length());
+    Assert.assertEquals("1.199", keyboards.optJSONObject("keyboard_199").optString("version"));
+    Assert.assertTrue("Chunked update check took " + elapsedMs + " ms", elapsedMs < MAX_UPDATE_CHECK_MS);
+    report("chunked update check", params.length + " queries in " + elapsedMs + " ms");
+  }
+
+  @Test
+  public void test_downloadAndInstallThroughput() throws Exception {
+    Assume.assumeTrue("Run with -PkmeaBenchmarks", Boolean.getBoolean("kmeaBenchmarks"));
+    server.setLatency(50);
+    server.setBandwidth(2 * 1024 * 1024);
+
+    long start = System.nanoTime();
+    List<Future<File>> downloads = new ArrayList<>();
+    downloads.add(client.submit(server.getPackageUrl("gff_amh_7.kmp"), TEST_DOWNLOAD_ROOT, "gff_amh_7.kmp"));
+    downloads.add(client.submit(server.getPackageUrl("sil_euro_latin.kmp"), TEST_DOWNLOAD_ROOT, "sil_euro_latin.kmp"));
+
+    List<PackageBatchInstaller.Entry> entries = new ArrayList<>();
+    long bytes = 0;
+    for (Future<File> download : downloads) {
+      File kmpFile = download.get();
+      Assert.assertNotNull(kmpFile);
+      bytes += kmpFile.length();
+      entries.add(new PackageBatchInstaller.Entry(kmpFile, null, null));
+    }
+    long downloadMs = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+    start = System.nanoTime();
+    PackageBatchInstaller installer = new PackageBatchInstaller(TEST_DOWNLOAD_ROOT,
+      PackageProcessor.PP_TARGET_KEYBOARDS);
+    List<Map<String, String>> installed = installer.install(entries);
+    long installMs = (System.nanoTime() - start) / 1000000;
+
+    Assert.assertEquals(2, installed.size());
+    Assert.assertEquals(TEST_GFF_KMP_FILE.length() + TEST_EURO_LATIN_KMP_FILE.length(), bytes);
+    Assert.assertTrue("Download took " + downloadMs + " ms", downloadMs < MAX_DOWNLOAD_MS);
+    Assert.assertTrue("Install took " + installMs + " ms", installMs < MAX_INSTALL_MS);
+    report("download and install", bytes / 1024 + " KB downloaded in " + downloadMs + " ms (" +
+      (bytes * 1000 / 1024 / downloadMs) + " KB/s), installed in " + installMs + " ms");
+  }
+
+  @Test
+  public void test_downloadFollowsRedirect() throws IOException {
+    File file = client.download(server.getBaseUrl() + "/redirect/packages/sil_euro_latin.kmp",
+      TEST_DOWNLOAD_ROOT, "sil_euro_latin.kmp");
+
+    Assert.assertNotNull(file);
+    Assert.assertEquals(TEST_EURO_LATIN_KMP_FILE.length(), file.length());
+    Assert.assertEquals(2, server.getRequestCount());
+  }
+
+  @Test
+  public void test_downloadResumesAfterDroppedConnection() throws IOException {
+    String url = server.getPackageUrl("sil_euro_latin.kmp");
+    server.dropNextResponseAfter(100000);
+    File file = null;
+    try {
+      file = client.download(url, TEST_DOWNLOAD_ROOT, "sil_euro_latin.kmp");
+    } catch (IOException e) {
+      // Connection reset mid-transfer
+    }
+    Assert.assertNull(file);
+    Assert.assertTrue(new File(TEST_DOWNLOAD_ROOT, "sil_euro_latin.kmp.tmp").exists());
+
+    file = client.download(url, TEST_DOWNLOAD_ROOT, "sil_euro_latin.kmp");
+
+    Assert.assertNotNull(file);
+    Assert.assertEquals(TEST_EURO_LATIN_KMP_FILE.length(), file.length());
+    Assert.assertEquals(1, server.getPartialContentCount());
+    Assert.assertEquals(TEST_EURO_LATIN_KMP_FILE.length(), server.getBytesSent());
+  }
+
+  @Test
+  public void test_downloadServerError() throws IOException {
+    server.failNextRequests(1, 503);
+    Assert.assertNull(client.download(server.getPackageUrl("gff_amh_7.kmp"), TEST_DOWNLOAD_ROOT, "gff_amh_7.kmp"));
+    Assert.assertFalse(new File(TEST_DOWNLOAD_ROOT, "gff_amh_7.kmp.tmp").exists());
+
+    Assert.assertNotNull(client.download(server.getPackageUrl("gff_amh_7.kmp"), TEST_DOWNLOAD_ROOT, "gff_amh_7.kmp"));
+  }
+}
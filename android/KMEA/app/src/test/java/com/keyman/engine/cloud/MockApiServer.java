@@ -0,0 +1,469 @@
+package com.keyman.engine.cloud;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process HTTP/1.1 stand-in for the api.keyman.com endpoints, so cloud and download code can be
+ * tested and benchmarked without a live network.
+ *
+ *   /package-version?keyboard=..&model=..  versions of the registered keyboards and models
+ *   /model?q=bcp47:languageID              lexical model metadata for a language
+ *   /packages/filename                     package downloads, with ETag and Range support
+ *   /redirect/path                         302 to /path
+ *
+ * Latency, bandwidth and failures can be changed while the server runs. Connections are kept
+ * alive between requests, like the real server.
+ */
+public class MockApiServer {
+  private static final int CHUNK_SIZE = 4096;
+
+  private static class Model {
+    final String languageID;
+    final String version;
+
+    Model(String languageID, String version) {
+      this.languageID = languageID;
+      this.version = version;
+    }
+  }
+
+  private final ServerSocket serverSocket;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  private final Map<String, String> keyboardVersions = new ConcurrentHashMap<>();
+  private final Map<String, Model> models = new ConcurrentHashMap<>();
+  private final Map<String, byte[]> packages = new ConcurrentHashMap<>();
+
+  private volatile int latencyMs = 0;
+  private volatile long bytesPerSecond = 0;
+  private volatile int failureStatus = 500;
+  private final AtomicInteger failuresRemaining = new AtomicInteger(0);
+  private final AtomicLong dropNextResponseAfter = new AtomicLong(-1);
+
+  private final AtomicInteger requestCount = new AtomicInteger(0);
+  private final AtomicInteger notModifiedCount = new AtomicInteger(0);
+  private final AtomicInteger partialContentCount = new AtomicInteger(0);
+  private final AtomicLong bytesSent = new AtomicLong(0);
+
+  public MockApiServer() throws IOException {
+    serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        acceptConnections();
+      }
+    });
+  }
+
+  public String getBaseUrl() {
+    return "http://127.0.0.1:" + serverSocket.getLocalPort();
+  }
+
+  public String getPackageUrl(String filename) {
+    return getBaseUrl() + "/packages/" + filename;
+  }
+
+  public void shutdown() {
+    try {
+      serverSocket.close();
+    } catch (IOException e) {
+      // Ignore
+    }
+    executor.shutdownNow();
+  }
+
+  // Catalog contents
+
+  public void addKeyboard(String keyboardID, String version) {
+    keyboardVersions.put(keyboardID, version);
+  }
+
+  public void addKeyboardPackage(String keyboardID, String version, File kmpFile) throws IOException {
+    addKeyboard(keyboardID, version);
+    packages.put(keyboardID + ".kmp", Files.readAllBytes(kmpFile.toPath()));
+  }
+
+  public void addLexicalModelPackage(String modelID, String languageID, String version, File kmpFile) throws IOException {
+    models.put(modelID, new Model(languageID, version));
+    packages.put(modelID + ".model.kmp", Files.readAllBytes(kmpFile.toPath()));
+  }
+
+  // Network conditions
+
+  /**
+   * @param latencyMs int - delay before each response
+   */
+  public void setLatency(int latencyMs) {
+    this.latencyMs = latencyMs;
+  }
+
+  /**
+   * @param bytesPerSecond long - throughput of each response body, or 0 for unlimited
+   */
+  public void setBandwidth(long bytesPerSecond) {
+    this.bytesPerSecond = bytesPerSecond;
+  }
+
+  /**
+   * Answer the next requests with an error status
+   * @param count int - number of requests to fail
+   * @param status int - HTTP status to respond with
+   */
+  public void failNextRequests(int count, int status) {
+    failureStatus = status;
+    failuresRemaining.set(count);
+  }
+
+  /**
+   * Close the connection part way through the next response body
+   * @param bytes long - number of body bytes to send first
+   */
+  public void dropNextResponseAfter(long bytes) {
+    dropNextResponseAfter.set(bytes);
+  }
+
+  // Statistics
+
+  public int getRequestCount() {
+    return requestCount.get();
+  }
+
+  public int getNotModifiedCount() {
+    return notModifiedCount.get();
+  }
+
+  public int getPartialContentCount() {
+    return partialContentCount.get();
+  }
+
+  public long getBytesSent() {
+    return bytesSent.get();
+  }
+
+  private void acceptConnections() {
+    while (!serverSocket.isClosed()) {
+      try {
+        final Socket socket = serverSocket.accept();
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            serve(socket);
+          }
+        });
+      } catch (IOException e) {
+        // Server closed
+        return;
+      }
+    }
+  }
+
+  private void serve(Socket socket) {
+    try {
+      InputStream in = new BufferedInputStream(socket.getInputStream());
+      OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+      String requestLine;
+      while ((requestLine = readLine(in)) != null && !requestLine.isEmpty()) {
+        Map<String, String> headers = new HashMap<>();
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+          int colon = line.indexOf(':');
+          if (colon > 0) {
+            headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+          }
+        }
+        requestCount.incrementAndGet();
+
+        if (latencyMs > 0) {
+          Thread.sleep(latencyMs);
+        }
+
+        String[] parts = requestLine.split(" ");
+        if (parts.length < 2 || !respond(parts[1], headers, out)) {
+          return;
+        }
+        out.flush();
+      }
+    } catch (IOException | InterruptedException e) {
+      // Client went away or server shut down
+    } finally {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // Ignore
+      }
+    }
+  }
+
+  /**
+   * @return boolean - false if the connection should be closed
+   */
+  private boolean respond(String target, Map<String, String> headers, OutputStream out) throws IOException, InterruptedException {
+    if (failuresRemaining.get() > 0 && failuresRemaining.getAndDecrement() > 0) {
+      return writeResponse(out, failureStatus, new LinkedHashMap<String, String>(), new byte[0], 0);
+    }
+
+    URI uri;
+    try {
+      uri = new URI(target);
+    } catch (URISyntaxException e) {
+      return writeResponse(out, 400, new LinkedHashMap<String, String>(), new byte[0], 0);
+    }
+    String path = uri.getPath();
+    Map<String, String> query = parseQuery(uri.getRawQuery());
+
+    try {
+      if (path.equals("/package-version")) {
+        return writeJSON(out, headers, buildPackageVersion(uri.getRawQuery()).toString());
+      } else if (path.equals("/model")) {
+        return writeJSON(out, headers, buildModelMetadata(query.get("q")).toString());
+      } else if (path.startsWith("/packages/")) {
+        return writePackage(out, headers, path.substring("/packages/".length()));
+      } else if (path.startsWith("/redirect/")) {
+        Map<String, String> responseHeaders = new LinkedHashMap<>();
+        String location = path.substring("/redirect".length());
+        if (uri.getRawQuery() != null) {
+          location += "?" + uri.getRawQuery();
+        }
+        responseHeaders.put("Location", location);
+        return writeResponse(out, 302, responseHeaders, new byte[0], 0);
+      }
+    } catch (JSONException e) {
+      return writeResponse(out, 500, new LinkedHashMap<String, String>(), new byte[0], 0);
+    }
+    return writeResponse(out, 404, new LinkedHashMap<String, String>(), new byte[0], 0);
+  }
+
+  private JSONObject buildPackageVersion(String rawQuery) throws JSONException {
+    JSONObject keyboards = new JSONObject();
+    JSONObject lexicalModels = new JSONObject();
+    if (rawQuery != null) {
+      for (String term : rawQuery.split("&")) {
+        int equals = term.indexOf('=');
+        if (equals < 0) {
+          continue;
+        }
+        String name = term.substring(0, equals);
+        String id = decode(term.substring(equals + 1));
+        if (name.equals("keyboard")) {
+          keyboards.put(id, buildPackageInfo(keyboardVersions.get(id), getPackageUrl(id + ".kmp")));
+        } else if (name.equals("model")) {
+          Model model = models.get(id);
+          lexicalModels.put(id, buildPackageInfo((model != null) ? model.version : null,
+            getPackageUrl(id + ".model.kmp")));
+        }
+      }
+    }
+
+    JSONObject json = new JSONObject();
+    if (keyboards.length() > 0) {
+      json.put("keyboards", keyboards);
+    }
+    if (lexicalModels.length() > 0) {
+      json.put("models", lexicalModels);
+    }
+    return json;
+  }
+
+  private static JSONObject buildPackageInfo(String version, String kmpUrl) throws JSONException {
+    JSONObject info = new JSONObject();
+    if (version == null) {
+      info.put("error", "not found");
+    } else {
+      info.put("version", version);
+      info.put("kmp", kmpUrl);
+    }
+    return info;
+  }
+
+  private JSONArray buildModelMetadata(String q) throws JSONException {
+    JSONArray array = new JSONArray();
+    String languageID = (q != null && q.startsWith("bcp47:")) ? q.substring("bcp47:".length()) : null;
+    for (Map.Entry<String, Model> entry : models.entrySet()) {
+      if (entry.getValue().languageID.equalsIgnoreCase(languageID)) {
+        JSONObject model = new JSONObject();
+        model.put("id", entry.getKey());
+        model.put("version", entry.getValue().version);
+        model.put("languages", new JSONArray().put(entry.getValue().languageID));
+        model.put("packageFilename", getPackageUrl(entry.getKey() + ".model.kmp"));
+        array.put(model);
+      }
+    }
+    return array;
+  }
+
+  private boolean writeJSON(OutputStream out, Map<String, String> headers, String json) throws IOException, InterruptedException {
+    byte[] body = json.getBytes(StandardCharsets.UTF_8);
+    String etag = getETag(body);
+    Map<String, String> responseHeaders = new LinkedHashMap<>();
+    responseHeaders.put("Content-Type", "application/json");
+    responseHeaders.put("ETag", etag);
+    if (etag.equals(headers.get("if-none-match"))) {
+      notModifiedCount.incrementAndGet();
+      return writeResponse(out, 304, responseHeaders, new byte[0], 0);
+    }
+    return writeResponse(out, 200, responseHeaders, body, 0);
+  }
+
+  private boolean writePackage(OutputStream out, Map<String, String> headers, String filename) throws IOException, InterruptedException {
+    byte[] body = packages.get(filename);
+    if (body == null) {
+      return writeResponse(out, 404, new LinkedHashMap<String, String>(), new byte[0], 0);
+    }
+
+    String etag = getETag(body);
+    Map<String, String> responseHeaders = new LinkedHashMap<>();
+    responseHeaders.put("Content-Type", "application/octet-stream");
+    responseHeaders.put("ETag", etag);
+    responseHeaders.put("Accept-Ranges", "bytes");
+
+    String range = headers.get("range");
+    String ifRange = headers.get("if-range");
+    if (range != null && range.startsWith("bytes=") && range.endsWith("-") &&
+        (ifRange == null || ifRange.equals(etag))) {
+      long start = Long.parseLong(range.substring("bytes=".length(), range.length() - 1));
+      if (start >= body.length) {
+        responseHeaders.put("Content-Range", "bytes */" + body.length);
+        return writeResponse(out, 416, responseHeaders, new byte[0], 0);
+      }
+      partialContentCount.incrementAndGet();
+      responseHeaders.put("Content-Range", "bytes " + start + "-" + (body.length - 1) + "/" + body.length);
+      return writeResponse(out, 206, responseHeaders, body, (int) start);
+    }
+    return writeResponse(out, 200, responseHeaders, body, 0);
+  }
+
+  /**
+   * Write a response, sending body from offset at the configured bandwidth
+   * @return boolean - false if the connection was dropped
+   */
+  private boolean writeResponse(OutputStream out, int status, Map<String, String> headers,
+                                byte[] body, int offset) throws IOException, InterruptedException {
+    int length = body.length - offset;
+    StringBuilder head = new StringBuilder();
+    head.append("HTTP/1.1 ").append(status).append(' ').append(getReason(status)).append("\r\n");
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+    }
+    head.append("Content-Length: ").append(length).append("\r\n");
+    head.append("Connection: keep-alive\r\n\r\n");
+    out.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+
+    long dropAfter = (length > 0) ? dropNextResponseAfter.getAndSet(-1) : -1;
+    long limit = (dropAfter >= 0) ? Math.min(dropAfter, length) : length;
+    long start = System.currentTimeMillis();
+    long sent = 0;
+    try {
+      while (sent < limit) {
+        int chunk = (int) Math.min(CHUNK_SIZE, limit - sent);
+        out.write(body, offset + (int) sent, chunk);
+        sent += chunk;
+        bytesSent.addAndGet(chunk);
+
+        long rate = bytesPerSecond;
+        if (rate > 0) {
+          out.flush();
+          long due = start + (sent * 1000 / rate);
+          long wait = due - System.currentTimeMillis();
+          if (wait > 0) {
+            Thread.sleep(wait);
+          }
+        }
+      }
+    } catch (SocketException e) {
+      // Client stopped reading
+      return false;
+    }
+
+    if (dropAfter >= 0) {
+      out.flush();
+      return false;
+    }
+    return true;
+  }
+
+  private static String getETag(byte[] body) {
+    return "\"" + Integer.toHexString(Arrays.hashCode(body)) + "-" + body.length + "\"";
+  }
+
+  private static String getReason(int status) {
+    switch (status) {
+      case 200: return "OK";
+      case 206: return "Partial Content";
+      case 302: return "Found";
+      case 304: return "Not Modified";
+      case 400: return "Bad Request";
+      case 404: return "Not Found";
+      case 416: return "Range Not Satisfiable";
+      case 500: return "Internal Server Error";
+      case 503: return "Service Unavailable";
+      default: return "Status";
+    }
+  }
+
+  private static Map<String, String> parseQuery(String rawQuery) {
+    Map<String, String> query = new HashMap<>();
+    if (rawQuery == null) {
+      return query;
+    }
+    for (String term : rawQuery.split("&")) {
+      int equals = term.indexOf('=');
+      if (equals > 0) {
+        query.put(term.substring(0, equals), decode(term.substring(equals + 1)));
+      }
+    }
+    return query;
+  }
+
+  private static String decode(String value) {
+    try {
+      return URLDecoder.decode(value, "UTF-8");
+    } catch (IOException e) {
+      return value;
+    }
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b;
+    while ((b = in.read()) != -1) {
+      if (b == '\n') {
+        break;
+      }
+      if (b != '\r') {
+        line.write(b);
+      }
+    }
+    if (b == -1 && line.size() == 0) {
+      return null;
+    }
+    return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+  }
+}
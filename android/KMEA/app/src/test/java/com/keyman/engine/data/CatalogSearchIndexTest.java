@@ -0,0 +1,74 @@
+package com.keyman.engine.data;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class CatalogSearchIndexTest {
+  private Keyboard khmer;
+  private Keyboard euroLatinFrench;
+  private Keyboard euroLatinEnglish;
+  private Keyboard vietnamese;
+  private CatalogSearchIndex<Keyboard> index;
+
+  private static Keyboard keyboard(String keyboardID, String keyboardName, String languageID, String languageName) {
+    return new Keyboard(keyboardID, keyboardID, keyboardName, languageID, languageName, "1.0",
+      null, null, false, null, null);
+  }
+
+  @Before
+  public void createIndex() {
+    khmer = keyboard("khmer_angkor", "Khmer Angkor", "km", "Khmer");
+    euroLatinFrench = keyboard("sil_euro_latin", "EuroLatin (SIL)", "fr", "Français");
+    euroLatinEnglish = keyboard("sil_euro_latin", "EuroLatin (SIL)", "en", "English");
+    vietnamese = keyboard("vietnamese_telex", "Vietnamese Telex", "vi", "Tiếng Việt");
+    index = new CatalogSearchIndex<>(Arrays.asList(khmer, euroLatinFrench, euroLatinEnglish, vietnamese));
+  }
+
+  @Test
+  public void test_prefixAndDiacriticInsensitive() {
+    Assert.assertEquals(Arrays.asList(euroLatinFrench), index.search("franc", 0));
+    Assert.assertEquals(Arrays.asList(vietnamese), index.search("TIENG viet", 0));
+    Assert.assertEquals(Arrays.asList(vietnamese), index.search("Việt", 0));
+  }
+
+  @Test
+  public void test_allWordsMustMatch() {
+    Assert.assertEquals(Arrays.asList(euroLatinEnglish), index.search("eurolatin eng", 0));
+    Assert.assertTrue(index.search("khmer latin", 0).isEmpty());
+    Assert.assertTrue(index.search("  ", 0).isEmpty());
+  }
+
+  @Test
+  public void test_ranking() {
+    // Language name matches rank above resource name matches
+    Keyboard khmerUnicode = keyboard("basic_kbdkhmr", "Khmer", "km", "Cambodian");
+    index = new CatalogSearchIndex<>(Arrays.asList(khmerUnicode, khmer));
+    Assert.assertEquals(Arrays.asList(khmer, khmerUnicode), index.search("khm", 0));
+
+    // Language tags are searchable, and ties are ordered by language name
+    index = new CatalogSearchIndex<>(Arrays.asList(euroLatinFrench, euroLatinEnglish));
+    List<Keyboard> results = index.search("sil", 0);
+    Assert.assertEquals(Arrays.asList(euroLatinEnglish, euroLatinFrench), results);
+    Assert.assertEquals(Arrays.asList(euroLatinEnglish), index.search("sil", 1));
+    Assert.assertEquals(Arrays.asList(euroLatinFrench), index.search("fr", 0));
+  }
+
+  @Test
+  public void test_datasetIndexIsRebuiltOnChange() {
+    Dataset dataset = new Dataset(androidx.test.core.app.ApplicationProvider.getApplicationContext());
+    dataset.keyboards.add(khmer);
+    CatalogSearchIndex<Keyboard> first = dataset.keyboards.getSearchIndex();
+    Assert.assertSame(first, dataset.keyboards.getSearchIndex());
+
+    dataset.keyboards.add(vietnamese);
+    Assert.assertNotSame(first, dataset.keyboards.getSearchIndex());
+    Assert.assertEquals(Arrays.asList(vietnamese), dataset.keyboards.getSearchIndex().search("viet", 0));
+  }
+}
@@ -0,0 +1,104 @@
+package com.keyman.engine.data;
+
+import android.database.DataSetObserver;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.keyman.engine.data.adapters.NestedAdapter;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+
+@RunWith(RobolectricTestRunner.class)
+public class DatasetTest {
+  private Dataset dataset;
+  private int changeCount;
+
+  private static Keyboard keyboard(String keyboardID, String languageID, String version) {
+    return new Keyboard(keyboardID, keyboardID, keyboardID, languageID, languageID, version,
+      null, null, false, null, null);
+  }
+
+  @Before
+  public void createDataset() {
+    dataset = new Dataset(ApplicationProvider.getApplicationContext());
+    changeCount = 0;
+    dataset.registerDataSetObserver(new DataSetObserver() {
+      @Override
+      public void onChanged() {
+        changeCount++;
+      }
+    });
+  }
+
+  @Test
+  public void test_replaceAllAppliesDiff() {
+    Keyboard khmer = keyboard("khmer_angkor", "km", "1.0");
+    Keyboard sil_euro_latin = keyboard("sil_euro_latin", "en", "1.0");
+    dataset.keyboards.addAll(Arrays.asList(khmer, sil_euro_latin));
+    changeCount = 0;
+
+    Keyboard updatedKhmer = keyboard("khmer_angkor", "km", "1.1");
+    Keyboard cameroon = keyboard("sil_cameroon_qwerty", "bfd", "1.0");
+    Assert.assertTrue(dataset.keyboards.replaceAll(Arrays.asList(updatedKhmer, cameroon)));
+
+    Assert.assertEquals(2, dataset.keyboards.getCount());
+    Assert.assertEquals(0, dataset.keyboards.getPosition(updatedKhmer));
+    Assert.assertSame(updatedKhmer, dataset.keyboards.getItem(0));
+    Assert.assertEquals("1.1", dataset.keyboards.getItem(0).getVersion());
+    Assert.assertSame(cameroon, dataset.keyboards.getItem(1));
+
+    // The removed keyboard's language is no longer tracked
+    Assert.assertEquals(2, dataset.asList().size());
+    Assert.assertTrue(dataset.keyboardFilter.selectFrom(dataset.keyboards, "en").isEmpty());
+    Assert.assertEquals(1, dataset.keyboardFilter.selectFrom(dataset.keyboards, "km").size());
+    Assert.assertEquals(1, changeCount);
+  }
+
+  @Test
+  public void test_replaceAllWithoutChanges() {
+    Keyboard khmer = keyboard("khmer_angkor", "km", "1.0");
+    dataset.keyboards.add(khmer);
+    changeCount = 0;
+
+    Assert.assertFalse(dataset.keyboards.replaceAll(Arrays.asList(khmer)));
+    Assert.assertEquals(1, dataset.keyboards.getCount());
+    Assert.assertEquals(0, changeCount);
+  }
+
+  @Test
+  public void test_nestedAdaptersApplyChangesInPlace() {
+    Keyboard khmer = keyboard("khmer_angkor", "km", "1.0");
+    Keyboard basic = keyboard("basic_kbdkhmr", "km", "1.0");
+    dataset.keyboards.add(khmer);
+
+    NestedAdapter<Keyboard, Dataset.Keyboards, Void> all =
+      new NestedAdapter<>(ApplicationProvider.getApplicationContext(), 0, dataset.keyboards);
+    NestedAdapter<Keyboard, Dataset.Keyboards, String> khmerOnly =
+      new NestedAdapter<>(ApplicationProvider.getApplicationContext(), 0, dataset.keyboards, dataset.keyboardFilter, "km");
+
+    dataset.keyboards.addAll(Arrays.asList(keyboard("sil_euro_latin", "en", "1.0"), basic));
+
+    // Source order is kept by the default filter; the language filter inserts by name
+    Assert.assertEquals(dataset.keyboards.asList(), all.asList());
+    Assert.assertEquals(Arrays.asList(basic, khmer), khmerOnly.asList());
+
+    Keyboard updatedKhmer = keyboard("khmer_angkor", "km", "1.1");
+    dataset.keyboards.replaceAll(Arrays.asList(updatedKhmer, basic));
+
+    Assert.assertEquals(Arrays.asList(updatedKhmer, basic), all.asList());
+    Assert.assertSame(updatedKhmer, all.getItem(0));
+    Assert.assertEquals(Arrays.asList(basic, updatedKhmer), khmerOnly.asList());
+    Assert.assertSame(updatedKhmer, khmerOnly.getItem(1));
+
+    dataset.keyboards.remove(basic);
+
+    Assert.assertEquals(Arrays.asList(updatedKhmer), all.asList());
+    Assert.assertEquals(Arrays.asList(updatedKhmer), khmerOnly.asList());
+  }
+}
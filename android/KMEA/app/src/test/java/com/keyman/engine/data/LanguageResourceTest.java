@@ -0,0 +1,45 @@
+package com.keyman.engine.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class LanguageResourceTest {
+  @Test
+  public void test_getKey() {
+    Keyboard khmer = TestKeyboards.keyboard("khmer_angkor", "km");
+    Assert.assertEquals("km_khmer_angkor", khmer.getKey());
+    Assert.assertSame(khmer.getKey(), khmer.getKey());
+
+    LexicalModel model = new LexicalModel("nrc.en.mtnt", "nrc.en.mtnt", "MTNT", "en", "English",
+      "1.0", null, null);
+    Assert.assertEquals("nrc.en.mtnt_en_nrc.en.mtnt", model.getKey());
+  }
+
+  @Test
+  public void test_setLanguageResetsKey() {
+    Keyboard keyboard = TestKeyboards.keyboard("sil_euro_latin", "en");
+    int hash = keyboard.hashCode();
+    Assert.assertEquals("en_sil_euro_latin", keyboard.getKey());
+
+    keyboard.setLanguage("fr", "French");
+    Assert.assertEquals("fr_sil_euro_latin", keyboard.getKey());
+    Assert.assertNotEquals(hash, keyboard.hashCode());
+  }
+
+  @Test
+  public void test_hashCode() {
+    // Consistent with the case-insensitive language comparison in equals()
+    Keyboard keyboard = TestKeyboards.keyboard("sil_euro_latin", "en");
+    Keyboard other = TestKeyboards.keyboard("sil_euro_latin", "en");
+    other.setLanguage("EN", "English");
+    Assert.assertEquals(keyboard, other);
+    Assert.assertEquals(keyboard.hashCode(), other.hashCode());
+
+    // Swapping resource and language IDs doesn't collide
+    Assert.assertNotEquals(TestKeyboards.keyboard("ab", "cd").hashCode(),
+      TestKeyboards.keyboard("cd", "ab").hashCode());
+  }
+}
@@ -0,0 +1,17 @@
+package com.keyman.engine.data;
+
+/**
+ * Keyboard fixtures for the data tests
+ */
+final class TestKeyboards {
+  private TestKeyboards() {
+  }
+
+  /**
+   * @return Keyboard in a package with the same ID as the keyboard
+   */
+  static Keyboard keyboard(String keyboardID, String languageID) {
+    return new Keyboard(keyboardID, keyboardID, keyboardID, languageID, languageID, "1.0",
+      null, null, false, null, null);
+  }
+}
@@ -0,0 +1,138 @@
+package com.keyman.engine.packages;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.keyman.engine.KMManager;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+@RunWith(RobolectricTestRunner.class)
+public class BundledPackageBootstrapTest {
+  private static final File TEST_RESOURCE_ROOT = new File("test_resources");
+  private static final File TEST_EXTRACTION_ROOT = new File(TEST_RESOURCE_ROOT, "temp");
+
+  private static final String TEST_GFF_KMP = "gff_amh_7_test_json.kmp";
+  private static final String TEST_EN_CUSTOM_MODEL_KMP = "example.en.custom.model.kmp";
+
+  private final HashMap<String, File> assetFiles = new HashMap<>();
+  private final List<Runnable> backgroundTasks = new ArrayList<>();
+
+  private final BundledPackageBootstrap.AssetSource assets = new BundledPackageBootstrap.AssetSource() {
+    @Override
+    public String[] list() {
+      return assetFiles.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public InputStream open(String assetFile) throws IOException {
+      return new FileInputStream(assetFiles.get(assetFile));
+    }
+  };
+
+  // Holds the background installs until the test runs them
+  private final Executor backgroundExecutor = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      backgroundTasks.add(command);
+    }
+  };
+
+  @Before
+  public void setUp() {
+    TEST_EXTRACTION_ROOT.mkdirs();
+    assetFiles.put(TEST_GFF_KMP, new File(TEST_RESOURCE_ROOT, "v14" + File.separator + TEST_GFF_KMP));
+    assetFiles.put(TEST_EN_CUSTOM_MODEL_KMP, new File(TEST_RESOURCE_ROOT, "packages" +
+      File.separator + "en.custom" + File.separator + TEST_EN_CUSTOM_MODEL_KMP));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    BundledPackageBootstrap.removeRequiredPackage(TEST_GFF_KMP);
+    FileUtils.deleteDirectory(TEST_EXTRACTION_ROOT);
+  }
+
+  @Test
+  public void test_requiredPackageInstalledBeforeStartReturns() {
+    BundledPackageBootstrap.addRequiredPackage(TEST_GFF_KMP);
+    BundledPackageBootstrap bootstrap = new BundledPackageBootstrap(
+      ApplicationProvider.getApplicationContext(), TEST_EXTRACTION_ROOT, assets, backgroundExecutor);
+
+    bootstrap.start();
+
+    Assert.assertEquals(BundledPackageBootstrap.State.INSTALLED, bootstrap.getState(TEST_GFF_KMP));
+    Assert.assertTrue(new File(TEST_EXTRACTION_ROOT, "packages" + File.separator + "gff_amh_7_test_json").exists());
+
+    // Packages which aren't required are left to the background executor
+    Assert.assertEquals(BundledPackageBootstrap.State.PENDING, bootstrap.getState(TEST_EN_CUSTOM_MODEL_KMP));
+    Assert.assertFalse(bootstrap.isComplete());
+    Assert.assertEquals(1, backgroundTasks.size());
+
+    backgroundTasks.get(0).run();
+    Assert.assertEquals(BundledPackageBootstrap.State.INSTALLED, bootstrap.getState(TEST_EN_CUSTOM_MODEL_KMP));
+    Assert.assertTrue(bootstrap.isComplete());
+  }
+
+  @Test
+  public void test_defaultDictionaryInstalledBeforeStartReturns() {
+    // The default dictionary is registered straight after KMManager.initialize()
+    assetFiles.put(KMManager.KMDefault_DictionaryKMP, assetFiles.remove(TEST_EN_CUSTOM_MODEL_KMP));
+    BundledPackageBootstrap bootstrap = new BundledPackageBootstrap(
+      ApplicationProvider.getApplicationContext(), TEST_EXTRACTION_ROOT, assets, backgroundExecutor);
+
+    bootstrap.start();
+
+    Assert.assertEquals(BundledPackageBootstrap.State.INSTALLED, bootstrap.getState(KMManager.KMDefault_DictionaryKMP));
+    Assert.assertEquals(BundledPackageBootstrap.State.PENDING, bootstrap.getState(TEST_GFF_KMP));
+    Assert.assertEquals(1, backgroundTasks.size());
+  }
+
+  @Test
+  public void test_interruptedCopyIsNotTreatedAsInstalled() throws IOException, JSONException {
+    // A copy interrupted after the rename leaves the .kmp with the PENDING state
+    File kmpFile = new File(TEST_EXTRACTION_ROOT, TEST_GFF_KMP);
+    FileUtils.copyFile(assetFiles.get(TEST_GFF_KMP), kmpFile);
+    JSONObject states = new JSONObject();
+    states.put(TEST_GFF_KMP, BundledPackageBootstrap.State.PENDING.name());
+    FileUtils.writeStringToFile(new File(TEST_EXTRACTION_ROOT, BundledPackageBootstrap.KMFilename_BootstrapState),
+      states.toString(), "UTF-8");
+    BundledPackageBootstrap bootstrap = new BundledPackageBootstrap(
+      ApplicationProvider.getApplicationContext(), TEST_EXTRACTION_ROOT, assets, backgroundExecutor);
+
+    bootstrap.start();
+
+    Assert.assertEquals(BundledPackageBootstrap.State.PENDING, bootstrap.getState(TEST_GFF_KMP));
+    for (Runnable task : backgroundTasks) {
+      task.run();
+    }
+    Assert.assertEquals(BundledPackageBootstrap.State.INSTALLED, bootstrap.getState(TEST_GFF_KMP));
+    Assert.assertTrue(new File(TEST_EXTRACTION_ROOT, "packages" + File.separator + "gff_amh_7_test_json").exists());
+  }
+
+  @Test
+  public void test_packagesInstalledInBackgroundWhenNotRequired() {
+    BundledPackageBootstrap bootstrap = new BundledPackageBootstrap(
+      ApplicationProvider.getApplicationContext(), TEST_EXTRACTION_ROOT, assets, backgroundExecutor);
+
+    bootstrap.start();
+
+    Assert.assertEquals(BundledPackageBootstrap.State.PENDING, bootstrap.getState(TEST_GFF_KMP));
+    Assert.assertEquals(2, backgroundTasks.size());
+  }
+}
@@ -0,0 +1,94 @@
+package com.keyman.engine.packages;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@RunWith(RobolectricTestRunner.class)
+public class PackageBatchInstallerTest {
+  private static final File TEST_RESOURCE_ROOT = new File("test_resources");
+  private static final File TEST_EXTRACTION_ROOT = new File(TEST_RESOURCE_ROOT, "temp");
+
+  private static final File TEST_GFF_KMP_FILE = new File(TEST_RESOURCE_ROOT, "v14" + File.separator + "gff_amh_7_test_json.kmp");
+  private static final File TEST_GFF_KMP_FILE_ALT = new File(TEST_RESOURCE_ROOT, "v15" + File.separator + "gff_amh_7_test_json.kmp");
+  private static final File TEST_EURO_LATIN_KMP_FILE = new File(TEST_RESOURCE_ROOT, "v14" + File.separator + "sil_euro_latin.kmp");
+  private static final File TEST_EN_CUSTOM_MODEL_KMP_FILE = new File(TEST_RESOURCE_ROOT, "packages" +
+    File.separator + "en.custom" + File.separator + "example.en.custom.model.kmp");
+
+  @After
+  public void eraseTestPackages() throws IOException {
+    FileUtils.deleteDirectory(TEST_EXTRACTION_ROOT);
+  }
+
+  @Test
+  public void test_installKeyboardPackages() {
+    PackageBatchInstaller installer = new PackageBatchInstaller(TEST_EXTRACTION_ROOT,
+      PackageProcessor.PP_TARGET_KEYBOARDS);
+    List<PackageBatchInstaller.Entry> entries = new ArrayList<>();
+    entries.add(new PackageBatchInstaller.Entry(TEST_GFF_KMP_FILE, null, null));
+    entries.add(new PackageBatchInstaller.Entry(TEST_EURO_LATIN_KMP_FILE, null, "fr"));
+
+    List<Map<String, String>> installed = installer.install(entries);
+
+    Assert.assertEquals(2, installed.size());
+    Assert.assertEquals("gff_amh_7", installed.get(0).get("kbId"));
+    Assert.assertEquals("sil_euro_latin", installed.get(1).get("kbId"));
+    Assert.assertEquals("fr", installed.get(1).get("langId"));
+    Assert.assertTrue(new File(TEST_EXTRACTION_ROOT, "packages" + File.separator + "gff_amh_7_test_json").exists());
+    Assert.assertTrue(new File(TEST_EXTRACTION_ROOT, "packages" + File.separator + "sil_euro_latin").exists());
+  }
+
+  @Test
+  public void test_installFromStream() throws IOException {
+    PackageBatchInstaller installer = new PackageBatchInstaller(TEST_EXTRACTION_ROOT,
+      PackageProcessor.PP_TARGET_KEYBOARDS);
+    List<PackageBatchInstaller.Entry> entries = new ArrayList<>();
+    entries.add(new PackageBatchInstaller.Entry(new File("gff_amh_7_test_json.kmp"),
+      new FileInputStream(TEST_GFF_KMP_FILE), null));
+
+    List<Map<String, String>> installed = installer.install(entries);
+
+    Assert.assertEquals(1, installed.size());
+    Assert.assertEquals("gff_amh_7", installed.get(0).get("kbId"));
+  }
+
+  @Test
+  public void test_installSkipsDuplicatePackages() {
+    PackageBatchInstaller installer = new PackageBatchInstaller(TEST_EXTRACTION_ROOT,
+      PackageProcessor.PP_TARGET_KEYBOARDS);
+    List<PackageBatchInstaller.Entry> entries = new ArrayList<>();
+    entries.add(new PackageBatchInstaller.Entry(TEST_GFF_KMP_FILE, null, null));
+    entries.add(new PackageBatchInstaller.Entry(TEST_GFF_KMP_FILE_ALT, null, null));
+
+    List<Map<String, String>> installed = installer.install(entries);
+
+    // The last entry for the package ID is installed
+    Assert.assertEquals(1, installed.size());
+    PackageProcessor PP = new PackageProcessor(TEST_EXTRACTION_ROOT);
+    File packagePath = new File(TEST_EXTRACTION_ROOT, "packages" + File.separator + "gff_amh_7_test_json");
+    Assert.assertEquals("1.5", PackageProcessor.getPackageVersion(PP.loadPackageInfo(packagePath)));
+  }
+
+  @Test
+  public void test_installRejectsWrongTarget() {
+    PackageBatchInstaller installer = new PackageBatchInstaller(TEST_EXTRACTION_ROOT,
+      PackageProcessor.PP_TARGET_KEYBOARDS);
+    List<PackageBatchInstaller.Entry> entries = new ArrayList<>();
+    entries.add(new PackageBatchInstaller.Entry(TEST_EN_CUSTOM_MODEL_KMP_FILE, null, null));
+
+    List<Map<String, String>> installed = installer.install(entries);
+
+    Assert.assertTrue(installed.isEmpty());
+    Assert.assertFalse(new File(TEST_EXTRACTION_ROOT, "packages" + File.separator + ".example.en.custom.temp").exists());
+  }
+}
@@ -0,0 +1,66 @@
+package com.keyman.engine.packages;
+
+import com.keyman.engine.KMManager;
+import com.keyman.engine.data.Keyboard;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class StorageCompactorTest {
+  private static final File TEST_RESOURCE_ROOT = new File("test_resources");
+  private static final File TEST_EXTRACTION_ROOT = new File(TEST_RESOURCE_ROOT, "temp");
+  private static final File TEST_CLOUD_DIR = new File(TEST_EXTRACTION_ROOT, KMManager.KMDefault_UndefinedPackageID);
+
+  // Past the minimum age of files the compactor deletes
+  private static final long LATER = System.currentTimeMillis() + 24 * 60 * 60 * 1000;
+
+  @Before
+  public void setUp() throws IOException {
+    TEST_CLOUD_DIR.mkdirs();
+    for (String name : new String[] { "khmer_angkor-1.0.js", "khmer_angkor-1.1.js",
+        "Mondulkiri-R.ttf", "KhmerOS.ttf", "Unused.ttf" }) {
+      FileOutputStream out = new FileOutputStream(new File(TEST_CLOUD_DIR, name));
+      out.write(1);
+      out.close();
+    }
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(TEST_EXTRACTION_ROOT);
+  }
+
+  @Test
+  public void test_keepsFontsOfFontSpecs() {
+    List<Keyboard> keyboards = new ArrayList<>();
+    keyboards.add(new Keyboard(KMManager.KMDefault_UndefinedPackageID, "khmer_angkor", "Khmer Angkor",
+      "km", "Khmer", "1.1", null, null, false,
+      "{\"family\":\"Mondulkiri\",\"source\":[\"Mondulkiri-R.woff\",\"Mondulkiri-R.ttf\"]}",
+      "KhmerOS.ttf"));
+    List<HashMap<String, String>> lexicalModels = new ArrayList<>();
+    StorageCompactor compactor = new StorageCompactor(TEST_EXTRACTION_ROOT, new HashSet<String>(),
+      keyboards, lexicalModels, LATER);
+
+    Assert.assertTrue(compactor.compactInternal() > 0);
+
+    Assert.assertTrue(new File(TEST_CLOUD_DIR, "Mondulkiri-R.ttf").exists());
+    Assert.assertTrue(new File(TEST_CLOUD_DIR, "KhmerOS.ttf").exists());
+    Assert.assertTrue(new File(TEST_CLOUD_DIR, "khmer_angkor-1.1.js").exists());
+    Assert.assertFalse(new File(TEST_CLOUD_DIR, "Unused.ttf").exists());
+    Assert.assertFalse(new File(TEST_CLOUD_DIR, "khmer_angkor-1.0.js").exists());
+  }
+}
@@ -0,0 +1,55 @@
+package com.keyman.engine.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class EngineMetricsTest {
+
+  @Test
+  public void test_counter() {
+    EngineMetrics.Counter counter = EngineMetrics.counter("test.counter");
+    Assert.assertSame(counter, EngineMetrics.counter("test.counter"));
+    long start = counter.get();
+
+    counter.increment();
+    counter.add(2);
+    Assert.assertEquals(start + 3, counter.get());
+    Assert.assertEquals(Long.valueOf(start + 3), EngineMetrics.snapshot().getCounters().get("test.counter"));
+  }
+
+  @Test
+  public void test_bucketsCoverValues() {
+    long[] values = { 0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456789L, Long.MAX_VALUE };
+    for (long value : values) {
+      int index = EngineMetrics.Timer.bucketIndex(value);
+      Assert.assertTrue(value <= EngineMetrics.Timer.bucketUpperBound(index));
+      if (index > 0) {
+        Assert.assertTrue(value > EngineMetrics.Timer.bucketUpperBound(index - 1));
+      }
+    }
+  }
+
+  @Test
+  public void test_timerPercentiles() {
+    EngineMetrics.Timer timer = EngineMetrics.timer("test.timer");
+    // 1..100 ms
+    for (int ms = 1; ms <= 100; ms++) {
+      timer.recordNanos(ms * 1000000L);
+    }
+
+    EngineMetrics.TimerSnapshot snapshot = EngineMetrics.snapshot().getTimers().get("test.timer");
+    Assert.assertEquals(100, snapshot.getCount());
+    Assert.assertEquals(50500, snapshot.getMeanMicros());
+    Assert.assertEquals(100000, snapshot.getMaxMicros());
+    // Within the 12.5% bucket resolution
+    Assert.assertEquals(50000, snapshot.getP50Micros(), 50000 * 0.125);
+    Assert.assertEquals(90000, snapshot.getP90Micros(), 90000 * 0.125);
+    Assert.assertEquals(99000, snapshot.getP99Micros(), 99000 * 0.125);
+
+    String dump = EngineMetrics.snapshot().toString();
+    Assert.assertTrue(dump.contains("test.timer: count=100 mean=50500"));
+  }
+}
@@ -0,0 +1,80 @@
+package com.keyman.engine.util;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+
+@RunWith(RobolectricTestRunner.class)
+public class HttpResponseCacheTest {
+  private static final String TEST_URL = "https://api.keyman.com/model?q=bcp47:km";
+  private static final String OTHER_URL = "https://api.keyman.com/model?q=bcp47:en";
+
+  private File cacheDir;
+
+  @Before
+  public void createCacheDir() {
+    cacheDir = new File(ApplicationProvider.getApplicationContext().getCacheDir(), "test_http");
+  }
+
+  @After
+  public void deleteCacheDir() throws IOException {
+    FileUtils.deleteDirectory(cacheDir);
+  }
+
+  @Test
+  public void test_putAndGet() {
+    HttpResponseCache cache = new HttpResponseCache(cacheDir, 1024);
+    cache.put(TEST_URL, "[]".getBytes(), new HttpValidators(TEST_URL, "\"abc123\"", null), 60000);
+
+    HttpResponseCache.Entry entry = cache.get(TEST_URL);
+    Assert.assertNotNull(entry);
+    Assert.assertEquals("[]", new String(entry.getBody()));
+    Assert.assertEquals("\"abc123\"", entry.getValidators().getETag());
+    Assert.assertTrue(entry.isFresh());
+    Assert.assertNull(cache.get(OTHER_URL));
+  }
+
+  @Test
+  public void test_noCacheIsStale() {
+    HttpResponseCache cache = new HttpResponseCache(cacheDir, 1024);
+    cache.put(TEST_URL, "[]".getBytes(), new HttpValidators(TEST_URL, "\"abc123\"", null), 0);
+
+    HttpResponseCache.Entry entry = cache.get(TEST_URL);
+    Assert.assertNotNull(entry);
+    Assert.assertFalse(entry.isFresh());
+  }
+
+  @Test
+  public void test_noStoreRemovesEntry() {
+    HttpResponseCache cache = new HttpResponseCache(cacheDir, 1024);
+    cache.put(TEST_URL, "[]".getBytes(), null, 60000);
+    cache.put(TEST_URL, "[]".getBytes(), null, -1);
+
+    Assert.assertNull(cache.get(TEST_URL));
+  }
+
+  @Test
+  public void test_trimEvictsLeastRecentlyUsed() {
+    HttpResponseCache cache = new HttpResponseCache(cacheDir, 150);
+    cache.put(TEST_URL, new byte[100], null, 60000);
+    // Make the first entry clearly older than the second
+    File[] files = cacheDir.listFiles();
+    for (File file : files) {
+      file.setLastModified(System.currentTimeMillis() - 60000);
+    }
+    cache.put(OTHER_URL, new byte[100], null, 60000);
+
+    Assert.assertNull(cache.get(TEST_URL));
+    Assert.assertNotNull(cache.get(OTHER_URL));
+    Assert.assertEquals(100, cache.size());
+  }
+}
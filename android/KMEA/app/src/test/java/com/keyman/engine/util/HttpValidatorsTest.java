@@ -0,0 +1,81 @@
+package com.keyman.engine.util;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+@RunWith(RobolectricTestRunner.class)
+public class HttpValidatorsTest {
+  private static final String TEST_URL = "https://api.keyman.com/package-version?platform=android&keyboard=khmer_angkor";
+
+  private File cacheFile;
+
+  @Before
+  public void createCacheFile() throws IOException {
+    cacheFile = new File(ApplicationProvider.getApplicationContext().getCacheDir(), "test_cache.json");
+    FileOutputStream out = new FileOutputStream(cacheFile);
+    out.write("{}".getBytes());
+    out.close();
+  }
+
+  @After
+  public void deleteCacheFile() {
+    HttpValidators.delete(cacheFile);
+    cacheFile.delete();
+  }
+
+  @Test
+  public void test_saveAndLoad() {
+    new HttpValidators(TEST_URL, "\"abc123\"", "Mon, 19 Oct 2026 00:00:00 GMT").save(cacheFile);
+
+    HttpValidators validators = HttpValidators.load(cacheFile);
+    Assert.assertNotNull(validators);
+    Assert.assertEquals(TEST_URL, validators.getUrl());
+    Assert.assertEquals("\"abc123\"", validators.getETag());
+    Assert.assertEquals("Mon, 19 Oct 2026 00:00:00 GMT", validators.getLastModified());
+  }
+
+  @Test
+  public void test_loadWithoutCacheFile() {
+    new HttpValidators(TEST_URL, "\"abc123\"", null).save(cacheFile);
+    cacheFile.delete();
+
+    Assert.assertNull(HttpValidators.load(cacheFile));
+  }
+
+  @Test
+  public void test_saveEmptyRemovesValidators() {
+    new HttpValidators(TEST_URL, "\"abc123\"", null).save(cacheFile);
+    new HttpValidators(TEST_URL, null, null).save(cacheFile);
+
+    Assert.assertNull(HttpValidators.load(cacheFile));
+  }
+
+  @Test
+  public void test_applyTo() throws IOException {
+    HttpValidators validators = new HttpValidators(TEST_URL, "\"abc123\"", "Mon, 19 Oct 2026 00:00:00 GMT");
+
+    HttpURLConnection connection = (HttpURLConnection) new URL(TEST_URL).openConnection();
+    validators.applyTo(connection, TEST_URL);
+    Assert.assertEquals("\"abc123\"", connection.getRequestProperty("If-None-Match"));
+    Assert.assertEquals("Mon, 19 Oct 2026 00:00:00 GMT", connection.getRequestProperty("If-Modified-Since"));
+
+    // Validators for a different query aren't used
+    String otherUrl = TEST_URL + "&keyboard=sil_euro_latin";
+    connection = (HttpURLConnection) new URL(otherUrl).openConnection();
+    validators.applyTo(connection, otherUrl);
+    Assert.assertNull(connection.getRequestProperty("If-None-Match"));
+    Assert.assertNull(connection.getRequestProperty("If-Modified-Since"));
+  }
+}
@@ -0,0 +1,43 @@
+package com.keyman.engine.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class LogRateLimiterTest {
+
+  @Test
+  public void test_dropsRepeatedReports() {
+    LogRateLimiter limiter = new LogRateLimiter(10, 1000, 5000);
+    Assert.assertTrue(limiter.tryAcquire("Tag", "error", 0));
+    Assert.assertFalse(limiter.tryAcquire("Tag", "error", 4999));
+    Assert.assertTrue(limiter.tryAcquire("Tag", "other error", 4999));
+    Assert.assertTrue(limiter.tryAcquire("OtherTag", "error", 4999));
+
+    // Repeats are sent again after the dedup interval
+    Assert.assertTrue(limiter.tryAcquire("Tag", "error", 5000));
+    Assert.assertEquals(1, limiter.getSuppressedCount());
+  }
+
+  @Test
+  public void test_limitsReportsPerTag() {
+    LogRateLimiter limiter = new LogRateLimiter(3, 1000, 0);
+    for (int i = 0; i < 3; i++) {
+      Assert.assertTrue(limiter.tryAcquire("Tag", "error " + i, 0));
+    }
+    Assert.assertFalse(limiter.tryAcquire("Tag", "error 3", 999));
+    // Other tags have their own limit
+    Assert.assertTrue(limiter.tryAcquire("OtherTag", "error", 999));
+
+    // One report per refill interval, up to the burst
+    Assert.assertTrue(limiter.tryAcquire("Tag", "error 4", 1000));
+    Assert.assertFalse(limiter.tryAcquire("Tag", "error 5", 1000));
+    Assert.assertTrue(limiter.tryAcquire("Tag", "error 6", 10000));
+    Assert.assertTrue(limiter.tryAcquire("Tag", "error 7", 10000));
+    Assert.assertTrue(limiter.tryAcquire("Tag", "error 8", 10000));
+    Assert.assertFalse(limiter.tryAcquire("Tag", "error 9", 10000));
+    Assert.assertEquals(3, limiter.getSuppressedCount());
+  }
+}
@@ -0,0 +1,113 @@
+package com.keyman.engine.util;
+
+import android.graphics.Typeface;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+@RunWith(RobolectricTestRunner.class)
+public class TypefaceCacheTest {
+  private File fontDir;
+
+  @Before
+  public void createFontDir() {
+    fontDir = new File(ApplicationProvider.getApplicationContext().getCacheDir(), "test_fonts");
+    fontDir.mkdirs();
+  }
+
+  @After
+  public void deleteFontDir() throws IOException {
+    org.apache.commons.io.FileUtils.deleteDirectory(fontDir);
+  }
+
+  private File createFont(String filename, int size) throws IOException {
+    File file = new File(fontDir, filename);
+    FileOutputStream out = new FileOutputStream(file);
+    out.write(new byte[size]);
+    out.close();
+    return file;
+  }
+
+  @Test
+  public void test_getCachesByPathAndModifiedTime() throws IOException {
+    TypefaceCache cache = new TypefaceCache(TypefaceCache.DEFAULT_MAX_BYTES);
+    File font = createFont("font.ttf", 100);
+
+    Typeface typeface = cache.get(font);
+    Assert.assertNotNull(typeface);
+    Assert.assertSame(typeface, cache.get(new File(fontDir, "../test_fonts/font.ttf")));
+    Assert.assertEquals(1, cache.size());
+
+    // An updated font file is loaded again
+    font.setLastModified(font.lastModified() - 60000);
+    Assert.assertNotSame(typeface, cache.get(font));
+
+    Assert.assertNull(cache.get(new File(fontDir, "missing.ttf")));
+  }
+
+  @Test
+  public void test_evictsLeastRecentlyUsed() throws IOException {
+    TypefaceCache cache = new TypefaceCache(250);
+    File font1 = createFont("font1.ttf", 100);
+    File font2 = createFont("font2.ttf", 100);
+    File font3 = createFont("font3.ttf", 100);
+
+    Typeface typeface1 = cache.get(font1);
+    cache.get(font2);
+    Assert.assertSame(typeface1, cache.get(font1));
+    cache.get(font3);
+
+    // font2 was the least recently used
+    Assert.assertEquals(2, cache.size());
+    Assert.assertEquals(200, cache.getTotalBytes());
+    Assert.assertSame(typeface1, cache.get(font1));
+
+    // A font larger than the limit is still kept while it's the most recent
+    File large = createFont("large.ttf", 300);
+    Typeface largeTypeface = cache.get(large);
+    Assert.assertEquals(1, cache.size());
+    Assert.assertSame(largeTypeface, cache.get(large));
+  }
+
+  @Test
+  public void test_remembersFailedLoads() throws IOException {
+    final int[] loads = { 0 };
+    TypefaceCache cache = new TypefaceCache(TypefaceCache.DEFAULT_MAX_BYTES, new TypefaceCache.FontLoader() {
+      @Override
+      public Typeface load(File file) {
+        loads[0]++;
+        throw new RuntimeException("native typeface cannot be made");
+      }
+    });
+    File font = createFont("broken.ttf", 100);
+
+    try {
+      cache.get(font);
+      Assert.fail("Expected the first load to fail");
+    } catch (RuntimeException e) {
+      // Reported by the caller
+    }
+    Assert.assertNull(cache.get(font));
+    Assert.assertEquals(1, loads[0]);
+
+    // An updated font file is loaded again
+    font.setLastModified(font.lastModified() - 60000);
+    try {
+      cache.get(font);
+      Assert.fail("Expected the updated font to be loaded");
+    } catch (RuntimeException e) {
+      // Reported by the caller
+    }
+    Assert.assertEquals(2, loads[0]);
+  }
+}
@@ -51,6 +51,8 @@ final class FVShared {
     private static final String FVKeyboardHelpLink = "https://help.keyman.com/keyboard/";
 
     public static final String FVDefault_PackageID = "fv_all";
+    // Bundled package with the keyboard list, read as soon as the engine is initialized
+    public static final String FVDefault_PackageKMP = FVDefault_PackageID + ".kmp";
     public static final String TAG = "FVShared";
 
     /// Describes a keyboard used in FirstVoices Keyboards
@@ -312,6 +314,7 @@ final class FVShared {
       PackageProcessor kmpProcessor = new PackageProcessor(resourceRoot);
 
       // Recreate active keyboards list
+      List<Keyboard> keyboardsToAdd = new ArrayList<>();
       for (FVRegion region : regionList) {
         for (FVKeyboard keyboard : region.keyboards) {
           if (loadedKeyboards.contains(keyboard.id)) {
@@ -323,11 +326,12 @@ final class FVShared {
             if (kbd != null) {
               kbd.setDisplayName(keyboard.name);
               // TODO: Override fonts to NotoSansCanadianAboriginal.ttf
-              KMManager.addKeyboard(context, kbd);
+              keyboardsToAdd.add(kbd);
             }
           }
         }
       }
+      KMManager.addKeyboards(context, keyboardsToAdd);
 
       activeKbList = KMManager.getKeyboardsList(context);
       if ((activeKbList != null) && (activeKbList.size() > 0)) {
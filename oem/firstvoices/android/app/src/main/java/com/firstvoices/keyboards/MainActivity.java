@@ -55,6 +55,7 @@ public class MainActivity extends BaseActivity implements OnKeyboardDownloadEven
         if (BuildConfig.DEBUG) {
           KMManager.setDebugMode(true);
         }
+        KMManager.addRequiredBundledPackage(FVShared.FVDefault_PackageKMP);
         KMManager.initialize(getApplicationContext(), KMManager.KeyboardType.KEYBOARD_TYPE_INAPP);
 
         FVShared.getInstance().initialize(this);
@@ -61,6 +61,7 @@ public class SystemKeyboard extends InputMethodService implements OnKeyboardEven
         KMManager.setCanRemoveKeyboard(false);
         KMManager.setShouldCheckKeyboardUpdates(false);
         KMManager.setKeyboardPickerFont(Typeface.createFromAsset(getAssets(), "fonts/NotoSansCanadianAboriginal.ttf"));
+        KMManager.addRequiredBundledPackage(FVShared.FVDefault_PackageKMP);
         KMManager.initialize(getApplicationContext(), KeyboardType.KEYBOARD_TYPE_SYSTEM);
         DefaultLanguageResource.install(this);
 